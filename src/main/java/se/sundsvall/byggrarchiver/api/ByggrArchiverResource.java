@@ -2,6 +2,7 @@ package se.sundsvall.byggrarchiver.api;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_PROBLEM_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.zalando.problem.Problem;
 import org.zalando.problem.violations.ConstraintViolationProblem;
 import se.sundsvall.byggrarchiver.api.model.ArchiveHistoryResponse;
@@ -68,18 +70,50 @@ class ByggrArchiverResource {
 		return ResponseEntity.ok(byggrArchiverService.findAllBatchHistories(municipalityId));
 	}
 
+	@GetMapping("/batch-jobs/{batchHistoryId}")
+	@ApiResponse(responseCode = "404", description = "Not found", content = @Content(mediaType = APPLICATION_PROBLEM_JSON_VALUE, schema = @Schema(implementation = Problem.class)))
+	ResponseEntity<BatchHistoryResponse> getBatchJob(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable final String municipalityId,
+		@PathVariable("batchHistoryId") final Long batchHistoryId) {
+		return ResponseEntity.ok(byggrArchiverService.getBatchHistory(batchHistoryId, municipalityId));
+	}
+
+	@GetMapping(path = "/batch-jobs/{batchHistoryId}/events", produces = {
+		TEXT_EVENT_STREAM_VALUE, APPLICATION_PROBLEM_JSON_VALUE
+	})
+	@ApiResponse(responseCode = "200", description = "OK - Stream of progress events until the batch has finished", content = @Content(mediaType = TEXT_EVENT_STREAM_VALUE))
+	@ApiResponse(responseCode = "404", description = "Not found", content = @Content(mediaType = APPLICATION_PROBLEM_JSON_VALUE, schema = @Schema(implementation = Problem.class)))
+	ResponseEntity<SseEmitter> getBatchJobEvents(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable final String municipalityId,
+		@PathVariable("batchHistoryId") final Long batchHistoryId) {
+		return ResponseEntity.ok(byggrArchiverService.streamBatchEvents(batchHistoryId, municipalityId));
+	}
+
 	@PostMapping("/batch-jobs")
+	@ApiResponse(responseCode = "202", description = "Accepted - The batch is running in the background")
 	public ResponseEntity<BatchHistoryResponse> postBatchJob(
 		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable final String municipalityId,
+		@Parameter(name = "async", description = "Run the batch in the background and return at once") @RequestParam(value = "async", defaultValue = "false") final boolean async,
 		@Valid @StartBeforeEnd @NotNull(message = "Request body must not be null") @RequestBody final BatchJob batchJob) {
+		if (async) {
+			return ResponseEntity.accepted().body(byggrArchiverService.startBatch(batchJob.getStart(), batchJob.getEnd(), municipalityId));
+		}
+
 		return ResponseEntity.ok(byggrArchiverService.runBatch(batchJob.getStart(), batchJob.getEnd(), BatchTrigger.MANUAL, municipalityId));
 	}
 
 	@PostMapping("/batch-jobs/{batchHistoryId}/rerun")
+	@ApiResponse(responseCode = "202", description = "Accepted - The batch is running in the background")
 	@ApiResponse(responseCode = "404", description = "Not found", content = @Content(mediaType = APPLICATION_PROBLEM_JSON_VALUE, schema = @Schema(implementation = Problem.class)))
+	@ApiResponse(responseCode = "409", description = "Conflict - The batch is already running", content = @Content(mediaType = APPLICATION_PROBLEM_JSON_VALUE, schema = @Schema(implementation = Problem.class)))
 	ResponseEntity<BatchHistoryResponse> reRunBatchJob(
 		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable final String municipalityId,
-		@PathVariable("batchHistoryId") final Long batchHistoryId) {
+		@PathVariable("batchHistoryId") final Long batchHistoryId,
+		@Parameter(name = "async", description = "Run the batch in the background and return at once") @RequestParam(value = "async", defaultValue = "false") final boolean async) {
+		if (async) {
+			return ResponseEntity.accepted().body(byggrArchiverService.startReRunBatch(batchHistoryId, municipalityId));
+		}
+
 		final var result = byggrArchiverService.reRunBatch(batchHistoryId, municipalityId);
 
 		return ResponseEntity.ok((result));
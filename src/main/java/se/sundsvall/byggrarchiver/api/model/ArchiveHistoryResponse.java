@@ -24,6 +24,12 @@ public class ArchiveHistoryResponse {
 
 	private String documentType;
 
+	private String fileExtension;
+
+	private Long fileSize;
+
+	private String contentHash;
+
 	private String archiveId;
 
 	private String archiveUrl;
@@ -41,13 +47,14 @@ public class ArchiveHistoryResponse {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		final ArchiveHistoryResponse that = (ArchiveHistoryResponse) o;
-		return Objects.equals(documentId, that.documentId) && Objects.equals(caseId, that.caseId) && Objects.equals(documentName, that.documentName) && Objects.equals(documentType, that.documentType) && Objects.equals(archiveId, that.archiveId) && Objects
+		return Objects.equals(documentId, that.documentId) && Objects.equals(caseId, that.caseId) && Objects.equals(documentName, that.documentName) && Objects.equals(documentType, that.documentType) && Objects.equals(fileExtension, that.fileExtension)
+			&& Objects.equals(fileSize, that.fileSize) && Objects.equals(contentHash, that.contentHash) && Objects.equals(archiveId, that.archiveId) && Objects
 			.equals(archiveUrl, that.archiveUrl) && archiveStatus == that.archiveStatus && Objects.equals(timestamp, that.timestamp) && Objects.equals(batchHistory, that.batchHistory);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(documentId, caseId, documentName, documentType, archiveId, archiveUrl, archiveStatus, timestamp, batchHistory);
+		return Objects.hash(documentId, caseId, documentName, documentType, fileExtension, fileSize, contentHash, archiveId, archiveUrl, archiveStatus, timestamp, batchHistory);
 	}
 
 	@Override
@@ -57,6 +64,9 @@ public class ArchiveHistoryResponse {
 			", caseId='" + caseId + '\'' +
 			", documentName='" + documentName + '\'' +
 			", documentType='" + documentType + '\'' +
+			", fileExtension='" + fileExtension + '\'' +
+			", fileSize=" + fileSize +
+			", contentHash='" + contentHash + '\'' +
 			", archiveId='" + archiveId + '\'' +
 			", archiveUrl='" + archiveUrl + '\'' +
 			", archiveStatus=" + archiveStatus +
@@ -24,12 +24,16 @@ public class BatchHistoryResponse {
 
 	private LocalDate end;
 
+	private LocalDateTime startAfter;
+
 	private ArchiveStatus archiveStatus;
 
 	private BatchTrigger batchTrigger;
 
 	private LocalDateTime timestamp;
 
+	private BatchProgressResponse progress;
+
 	@Override
 	public boolean equals(final Object o) {
 		if (this == o)
@@ -37,7 +41,8 @@ public class BatchHistoryResponse {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		final BatchHistoryResponse that = (BatchHistoryResponse) o;
-		return Objects.equals(id, that.id) && Objects.equals(start, that.start) && Objects.equals(end, that.end) && archiveStatus == that.archiveStatus && batchTrigger == that.batchTrigger && Objects.equals(timestamp, that.timestamp);
+		return Objects.equals(id, that.id) && Objects.equals(start, that.start) && Objects.equals(end, that.end) && Objects.equals(startAfter, that.startAfter) && archiveStatus == that.archiveStatus && batchTrigger == that.batchTrigger && Objects.equals(timestamp, that.timestamp)
+			&& Objects.equals(progress, that.progress);
 	}
 
 	@Override
@@ -46,7 +51,7 @@ public class BatchHistoryResponse {
 
 		return Objects.hash(id, start
 
-			, end, archiveStatus, batchTrigger, timestamp);
+			, end, startAfter, archiveStatus, batchTrigger, timestamp, progress);
 	}
 
 	@Override
@@ -55,9 +60,11 @@ public class BatchHistoryResponse {
 			"id=" + id +
 			", start=" + start +
 			", end=" + end +
+			", startAfter=" + startAfter +
 			", archiveStatus=" + archiveStatus +
 			", batchTrigger=" + batchTrigger +
 			", timestamp=" + timestamp +
+			", progress=" + progress +
 			'}';
 	}
 
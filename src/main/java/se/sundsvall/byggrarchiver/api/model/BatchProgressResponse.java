@@ -0,0 +1,54 @@
+package se.sundsvall.byggrarchiver.api.model;
+
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@Builder(setterPrefix = "with")
+@NoArgsConstructor
+@AllArgsConstructor()
+public class BatchProgressResponse {
+
+	private Boolean running;
+
+	private Long pagesScanned;
+
+	private Long documentsArchived;
+
+	private Long documentsFailed;
+
+	private Long bytesUploaded;
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		final BatchProgressResponse that = (BatchProgressResponse) o;
+		return Objects.equals(running, that.running) && Objects.equals(pagesScanned, that.pagesScanned) && Objects.equals(documentsArchived, that.documentsArchived) && Objects.equals(documentsFailed, that.documentsFailed) && Objects.equals(
+			bytesUploaded, that.bytesUploaded);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(running, pagesScanned, documentsArchived, documentsFailed, bytesUploaded);
+	}
+
+	@Override
+	public String toString() {
+		return "BatchProgressResponse{" +
+			"running=" + running +
+			", pagesScanned=" + pagesScanned +
+			", documentsArchived=" + documentsArchived +
+			", documentsFailed=" + documentsFailed +
+			", bytesUploaded=" + bytesUploaded +
+			'}';
+	}
+
+}
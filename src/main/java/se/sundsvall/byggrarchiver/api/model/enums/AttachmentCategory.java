@@ -1,6 +1,11 @@
 package se.sundsvall.byggrarchiver.api.model.enums;
 
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toUnmodifiableMap;
+
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
 import lombok.Getter;
 
 @Getter
@@ -266,6 +271,9 @@ public enum AttachmentCategory {
 	SIGNATURE("SIGNATURE", "Namnunderskrift"),
 	POWER_OF_ATTORNEY("POWER_OF_ATTORNEY", "Fullmakt");
 
+	private static final Map<String, AttachmentCategory> CATEGORIES_BY_CODE = Arrays.stream(values())
+		.collect(toUnmodifiableMap(AttachmentCategory::getCode, identity()));
+
 	private final String code;
 
 	private final String description;
@@ -283,9 +291,20 @@ public enum AttachmentCategory {
 	}
 
 	public static AttachmentCategory fromCode(final String code) {
-		return Arrays.stream(AttachmentCategory.values())
-			.filter(attachmentCategory -> attachmentCategory.code.equals(code))
-			.findFirst()
+		return findByCode(code)
 			.orElseThrow(() -> new IllegalArgumentException("No attachment category '" + code + "'"));
 	}
+
+	/**
+	 * @param  code            the code of the category, i.e. the "handlingstyp" in ByggR
+	 * @param  defaultCategory the category to use if no category has the code
+	 * @return                 the category with the code, or the default category
+	 */
+	public static AttachmentCategory fromCode(final String code, final AttachmentCategory defaultCategory) {
+		return findByCode(code).orElse(defaultCategory);
+	}
+
+	private static Optional<AttachmentCategory> findByCode(final String code) {
+		return Optional.ofNullable(code).map(CATEGORIES_BY_CODE::get);
+	}
 }
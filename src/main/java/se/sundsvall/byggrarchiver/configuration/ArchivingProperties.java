@@ -0,0 +1,205 @@
+package se.sundsvall.byggrarchiver.configuration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties("archiving")
+public record ArchivingProperties(
+
+	@Valid @NotNull @DefaultValue Concurrency concurrency,
+
+	@Valid @NotNull @DefaultValue Pipeline pipeline,
+
+	@Valid @NotNull @DefaultValue Prefetch prefetch,
+
+	@Valid @NotNull @DefaultValue Partitioning partitioning,
+
+	@Valid @NotNull @DefaultValue AdaptiveWindow adaptiveWindow,
+
+	@Valid @NotNull @DefaultValue Jobs jobs,
+
+	@Valid @NotNull @DefaultValue Metadata metadata,
+
+	@Valid @NotNull @DefaultValue ArchivedFilter archivedFilter,
+
+	@Valid @NotNull @DefaultValue ByteBudget byteBudget) {
+
+	public enum ExecutorType {
+		VIRTUAL,
+		POOLED
+	}
+
+	public enum MetadataRendererType {
+		JAXB,
+		STREAMING
+	}
+
+	/**
+	 * Settings for archiving the documents of a batch concurrently.
+	 *
+	 * @param enabled                if documents should be archived concurrently, otherwise they are archived one by one
+	 * @param executorType           if each document should be handled by a virtual thread or by a fixed thread pool
+	 * @param poolSize               number of threads in the pool when executorType is POOLED
+	 * @param maxConcurrentDocuments default number of documents that can be archived at the same time for a municipality
+	 * @param municipalityLimits     number of documents that can be archived at the same time, per municipality id
+	 */
+	public record Concurrency(
+
+		@DefaultValue("false") boolean enabled,
+
+		@NotNull @DefaultValue("VIRTUAL") ExecutorType executorType,
+
+		@Min(1) @DefaultValue("16") int poolSize,
+
+		@Min(1) @DefaultValue("4") int maxConcurrentDocuments,
+
+		@NotNull @DefaultValue Map<String, @Min(1) Integer> municipalityLimits) {
+
+		public int limitFor(final String municipalityId) {
+			return municipalityLimits.getOrDefault(municipalityId, maxConcurrentDocuments);
+		}
+	}
+
+	/**
+	 * Settings for archiving documents in a staged pipeline, where documents are fetched from ByggR, transformed into
+	 * archive requests and uploaded to Archive by separate workers. Takes precedence over {@link Concurrency} when
+	 * enabled.
+	 *
+	 * @param enabled          if documents should be archived in a staged pipeline
+	 * @param fetchWorkers     number of workers fetching documents from ByggR
+	 * @param transformWorkers number of workers creating archive requests
+	 * @param uploadWorkers    number of workers uploading documents to Archive
+	 * @param queueCapacity    max number of documents waiting between two stages
+	 */
+	public record Pipeline(
+
+		@DefaultValue("false") boolean enabled,
+
+		@Min(1) @DefaultValue("4") int fetchWorkers,
+
+		@Min(1) @DefaultValue("2") int transformWorkers,
+
+		@Min(1) @DefaultValue("4") int uploadWorkers,
+
+		@Min(1) @DefaultValue("8") int queueCapacity) {}
+
+	/**
+	 * Settings for reading the pages of updated cases from ByggR ahead of the page being archived.
+	 *
+	 * @param depth number of pages to read ahead in the background, 0 reads each page when it is needed
+	 */
+	public record Prefetch(
+
+		@Min(0) @DefaultValue("0") int depth) {}
+
+	/**
+	 * Settings for splitting a long time window into partitions that are harvested concurrently. The partitions are sized
+	 * by the number of updated cases in ByggR, so that each partition gets about the same amount of work.
+	 *
+	 * @param enabled           if long time windows should be partitioned
+	 * @param minWindow         time windows of this length or shorter are never partitioned
+	 * @param maxPartitions     max number of partitions, and thereby partitions harvested at the same time
+	 * @param casesPerPartition wanted number of updated cases in each partition
+	 */
+	public record Partitioning(
+
+		@DefaultValue("false") boolean enabled,
+
+		@NotNull @DefaultValue("P7D") Duration minWindow,
+
+		@Min(1) @DefaultValue("4") int maxPartitions,
+
+		@Min(1) @DefaultValue("500") int casesPerPartition) {}
+
+	/**
+	 * Settings for stepping over time ranges without updated cases. When a page from ByggR is empty the lower bound is
+	 * moved one step ahead, where the step is doubled for as long as GetUpdatedArendenCount finds no cases in it, and
+	 * shrunk again when cases are found.
+	 *
+	 * @param enabled       if the step should adapt to the number of updated cases, otherwise it is always one hour
+	 * @param minStep       the shortest step, which is taken without asking for the number of updated cases
+	 * @param maxStep       the longest step
+	 * @param largePageSize number of cases in a page that resets the step to minStep
+	 */
+	public record AdaptiveWindow(
+
+		@DefaultValue("false") boolean enabled,
+
+		@NotNull @DefaultValue("PT1H") Duration minStep,
+
+		@NotNull @DefaultValue("P7D") Duration maxStep,
+
+		@Min(1) @DefaultValue("100") int largePageSize) {}
+
+	/**
+	 * Settings for batch jobs that are started through the API and run in the background.
+	 *
+	 * @param poolSize           number of batch jobs that can run at the same time, further jobs wait for a free thread
+	 * @param eventStreamTimeout how long a stream of progress events is kept open
+	 */
+	public record Jobs(
+
+		@Min(1) @DefaultValue("2") int poolSize,
+
+		@NotNull @DefaultValue("PT1H") Duration eventStreamTimeout) {}
+
+	/**
+	 * Settings for rendering the metadata XML that is sent to Archive with each document.
+	 *
+	 * @param renderer           how the metadata is rendered, marshalled by JAXB or written straight to the output
+	 * @param marshallerPoolSize max number of idle marshallers kept for reuse, more are created when needed
+	 */
+	public record Metadata(
+
+		@NotNull @DefaultValue("JAXB") MetadataRendererType renderer,
+
+		@Min(1) @DefaultValue("16") int marshallerPoolSize) {}
+
+	/**
+	 * Settings for an in-memory filter of the documents that have an archive history. The filter is loaded from the
+	 * database when the application has started, and is used to leave out cases without archived documents when looking
+	 * up which documents are already archived.
+	 *
+	 * @param enabled                  if the filter should be used, otherwise all cases are looked up
+	 * @param expectedDocuments        number of documents the filter is sized for
+	 * @param falsePositiveProbability wanted probability that a document that is not archived is looked up anyway, when
+	 *                                 the filter holds the expected number of documents
+	 * @param refreshOverlap           how far back documents archived by other instances are looked for, before the last
+	 *                                 refresh, when the filter is refreshed at the start of a batch
+	 */
+	public record ArchivedFilter(
+
+		@DefaultValue("false") boolean enabled,
+
+		@Min(1) @DefaultValue("1000000") long expectedDocuments,
+
+		@Positive @DecimalMax(value = "1.0", inclusive = false) @DefaultValue("0.01") double falsePositiveProbability,
+
+		@NotNull @DefaultValue("PT5M") Duration refreshOverlap) {}
+
+	/**
+	 * Settings for bounding the number of bytes of documents that are being archived at the same time. Each document
+	 * reserves its size from the budget, and waits while the budget is used up.
+	 *
+	 * @param enabled             if documents should reserve their size from the budget
+	 * @param maxInFlight         the budget, shared by all batches and municipalities
+	 * @param reservedPerDocument size reserved for a document before it is fetched, when its actual size is not known yet
+	 */
+	public record ByteBudget(
+
+		@DefaultValue("false") boolean enabled,
+
+		@NotNull @DefaultValue("1GB") DataSize maxInFlight,
+
+		@NotNull @DefaultValue("16MB") DataSize reservedPerDocument) {}
+}
@@ -5,7 +5,7 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @EnableConfigurationProperties({
-	LongTermArchiveProperties.class, EmailProperties.class
+	LongTermArchiveProperties.class, EmailProperties.class, ArchivingProperties.class
 })
 class PropertiesConfiguration {
 
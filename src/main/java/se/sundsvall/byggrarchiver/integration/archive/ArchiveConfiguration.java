@@ -2,6 +2,7 @@ package se.sundsvall.byggrarchiver.integration.archive;
 
 import static se.sundsvall.byggrarchiver.integration.archive.ArchiveIntegration.INTEGRATION_NAME;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.cloud.openfeign.FeignBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
@@ -16,8 +17,11 @@ class ArchiveConfiguration {
 
 	private final ArchiveProperties archiveProperties;
 
-	ArchiveConfiguration(final ArchiveProperties archiveProperties) {
+	private final ObjectMapper objectMapper;
+
+	ArchiveConfiguration(final ArchiveProperties archiveProperties, final ObjectMapper objectMapper) {
 		this.archiveProperties = archiveProperties;
+		this.objectMapper = objectMapper;
 	}
 
 	@Bean
@@ -29,6 +33,7 @@ class ArchiveConfiguration {
 				.clientSecret(archiveProperties.oauth2().clientSecret())
 				.authorizationGrantType(new AuthorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS.getValue()))
 				.build())
+			.withEncoder(new ArchiveRequestEncoder(objectMapper))
 			.withErrorDecoder(new ProblemErrorDecoder(INTEGRATION_NAME))
 			.composeCustomizersToOne();
 	}
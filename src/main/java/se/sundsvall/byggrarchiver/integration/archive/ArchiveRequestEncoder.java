@@ -0,0 +1,129 @@
+package se.sundsvall.byggrarchiver.integration.archive;
+
+import static java.lang.Math.toIntExact;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import generated.se.sundsvall.archive.ByggRArchiveRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes requests to Archive without holding the attachment as a base64 string. A request with a
+ * {@link StreamedAttachment} is written field by field with a generator of its own, and the content of the attachment
+ * is base64-encoded straight into the request body, which is allocated once with its final size. Other requests are
+ * written as JSON as they are.
+ */
+final class ArchiveRequestEncoder implements Encoder {
+
+	// Not configured by the application, so that the body is exactly the fields written below
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final ObjectMapper objectMapper;
+
+	ArchiveRequestEncoder(final ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void encode(final Object object, final Type bodyType, final RequestTemplate template) {
+		if (!(object instanceof final ByggRArchiveRequest archiveRequest)) {
+			throw new EncodeException("Unable to encode " + bodyType + " as a request to Archive");
+		}
+
+		try {
+			template.body(encode(archiveRequest), UTF_8);
+		} catch (final IOException e) {
+			throw new EncodeException("Unable to encode the request to Archive", e);
+		}
+	}
+
+	byte[] encode(final ByggRArchiveRequest archiveRequest) throws IOException {
+		if (!(archiveRequest.getAttachment() instanceof final StreamedAttachment attachment)) {
+			return objectMapper.writeValueAsBytes(archiveRequest);
+		}
+
+		// The request is first written with an empty file, which gives the size of the body with the encoded content
+		final var emptyFileRequest = new ByteArrayOutputStream();
+		try (final var generator = JSON_FACTORY.createGenerator(emptyFileRequest)) {
+			writeRequest(generator, archiveRequest, attachment, null);
+		}
+
+		final var encodedSize = 4 * ((attachment.size() + 2) / 3);
+		final var body = new byte[toIntExact(emptyFileRequest.size() + encodedSize)];
+
+		final var bodyStream = new FixedArrayOutputStream(body);
+		try (final var content = attachment.openStream(); final var generator = JSON_FACTORY.createGenerator(bodyStream)) {
+			writeRequest(generator, archiveRequest, attachment, content);
+		}
+		if (bodyStream.position != body.length) {
+			throw new IOException("The content of the attachment is not of the expected size " + attachment.size());
+		}
+		return body;
+	}
+
+	/**
+	 * Writes the request, with the content base64-encoded as the file of the attachment, or with an empty file if there
+	 * is no content.
+	 */
+	private static void writeRequest(final JsonGenerator generator, final ByggRArchiveRequest archiveRequest, final StreamedAttachment attachment,
+		final InputStream content) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("metadata", archiveRequest.getMetadata());
+		generator.writeObjectFieldStart("attachment");
+		generator.writeStringField("name", attachment.getName());
+		generator.writeStringField("extension", attachment.getExtension());
+		generator.writeFieldName("file");
+		if (content == null) {
+			generator.writeString("");
+		} else {
+			// Fails if the content is smaller than its size
+			generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, content, toIntExact(attachment.size()));
+			if (content.read() >= 0) {
+				throw new IOException("The content of the attachment is larger than its size " + attachment.size());
+			}
+		}
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes into an array, without growing it.
+	 */
+	private static final class FixedArrayOutputStream extends OutputStream {
+
+		private final byte[] array;
+
+		private int position;
+
+		private FixedArrayOutputStream(final byte[] array) {
+			this.array = array;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (position >= array.length) {
+				throw new IOException("The request to Archive is larger than its size");
+			}
+			array[position++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			if (length > (array.length - position)) {
+				throw new IOException("The request to Archive is larger than its size");
+			}
+			System.arraycopy(bytes, offset, array, position, length);
+			position += length;
+		}
+	}
+}
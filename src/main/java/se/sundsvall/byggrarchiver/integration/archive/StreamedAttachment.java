@@ -0,0 +1,42 @@
+package se.sundsvall.byggrarchiver.integration.archive;
+
+import generated.se.sundsvall.archive.Attachment;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Attachment whose content is read from its source and base64-encoded when the request to Archive is encoded, instead
+ * of being held as a base64 string in {@link #getFile()}.
+ */
+public class StreamedAttachment extends Attachment {
+
+	private final ContentSource contentSource;
+
+	private final long size;
+
+	/**
+	 * @param contentSource source of the content, opened each time the request is encoded
+	 * @param size          size of the content in bytes
+	 */
+	public StreamedAttachment(final ContentSource contentSource, final long size) {
+		this.contentSource = contentSource;
+		this.size = size;
+	}
+
+	public InputStream openStream() throws IOException {
+		return contentSource.openStream();
+	}
+
+	/**
+	 * @return the size of the content in bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	@FunctionalInterface
+	public interface ContentSource {
+
+		InputStream openStream() throws IOException;
+	}
+}
@@ -5,6 +5,8 @@ import static se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportCo
 import generated.se.sundsvall.arendeexport.GetDocument;
 import generated.se.sundsvall.arendeexport.GetDocumentResponse;
 import generated.se.sundsvall.arendeexport.GetUpdatedArenden;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCount;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCountResponse;
 import generated.se.sundsvall.arendeexport.GetUpdatedArendenResponse;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import org.springframework.cloud.openfeign.FeignClient;
@@ -21,6 +23,11 @@ public interface ArendeExportClient {
 	})
 	GetUpdatedArendenResponse getUpdatedArenden(GetUpdatedArenden request);
 
+	@PostMapping(consumes = TEXT_XML_UTF8, produces = TEXT_XML_UTF8, headers = {
+		"SOAPAction=www.tekis.se/ServiceContract/V4/IExportArenden/GetUpdatedArendenCount"
+	})
+	GetUpdatedArendenCountResponse getUpdatedArendenCount(GetUpdatedArendenCount request);
+
 	@PostMapping(consumes = TEXT_XML_UTF8, produces = TEXT_XML_UTF8, headers = {
 		"SOAPAction=www.tekis.se/ServiceContract/V4/IExportArenden/GetDocument"
 	})
@@ -1,5 +1,6 @@
 package se.sundsvall.byggrarchiver.integration.arendeexport;
 
+import feign.codec.Decoder;
 import feign.jaxb.JAXBContextFactory;
 import feign.soap.SOAPDecoder;
 import feign.soap.SOAPEncoder;
@@ -27,11 +28,19 @@ public class ArendeExportConfiguration {
 	@Bean
 	FeignBuilderCustomizer feignBuilderCustomizer(final ArendeExportProperties properties) {
 		return FeignMultiCustomizer.create()
-			.withDecoder(new SOAPDecoder(JAXB_FACTORY))
+			.withDecoder(decoder(properties.documentSpool()))
 			.withEncoder(SOAP_ENCODER_BUILDER.build())
 			.withErrorDecoder(new SOAPErrorDecoder())
 			.withRequestTimeoutsInSeconds(properties.connectTimeout(), properties.readTimeout())
 			.composeCustomizersToOne();
 	}
 
+	private static Decoder decoder(final ArendeExportProperties.DocumentSpool documentSpool) {
+		final var soapDecoder = new SOAPDecoder(JAXB_FACTORY);
+		if (!documentSpool.enabled()) {
+			return soapDecoder;
+		}
+		return new GetDocumentResponseDecoder(JAXB_FACTORY, soapDecoder, documentSpool.directoryPath());
+	}
+
 }
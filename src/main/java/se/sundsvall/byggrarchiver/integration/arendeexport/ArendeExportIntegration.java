@@ -5,6 +5,7 @@ import generated.se.sundsvall.arendeexport.BatchFilter;
 import generated.se.sundsvall.arendeexport.Dokument;
 import generated.se.sundsvall.arendeexport.GetDocument;
 import generated.se.sundsvall.arendeexport.GetUpdatedArenden;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCount;
 import jakarta.xml.ws.soap.SOAPFaultException;
 import java.util.List;
 import org.slf4j.Logger;
@@ -36,6 +37,18 @@ public class ArendeExportIntegration {
 		}
 	}
 
+	public int getUpdatedArendenCount(final BatchFilter filter) {
+		try {
+			final var request = new GetUpdatedArendenCount();
+			request.setFilter(filter);
+			return arendeExportClient.getUpdatedArendenCount(request).getGetUpdatedArendenCountResult();
+		} catch (final SOAPFaultException e) {
+			LOG.warn("ArendeExport integration failed ('GetUpdatedArendenCount')", e);
+
+			throw Problem.valueOf(Status.SERVICE_UNAVAILABLE, "ArendeExport integration failed ('GetUpdatedArendenCount')");
+		}
+	}
+
 	public List<Dokument> getDocument(final String dokId) {
 		try {
 			final var getDocument = new GetDocument();
@@ -1,10 +1,34 @@
 package se.sundsvall.byggrarchiver.integration.arendeexport;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import java.nio.file.Path;
+import java.util.Optional;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
 
 @Validated
 @ConfigurationProperties("integration.arendeexport")
-record ArendeExportProperties(int connectTimeout, int readTimeout) {
+record ArendeExportProperties(int connectTimeout, int readTimeout, @Valid @NotNull @DefaultValue DocumentSpool documentSpool) {
 
+	/**
+	 * Settings for decoding the content of documents fetched with GetDocument to temporary files, instead of holding it in
+	 * memory.
+	 *
+	 * @param enabled   if the content of documents should be decoded to temporary files
+	 * @param directory directory of the temporary files, the default temporary-file directory if not set
+	 */
+	record DocumentSpool(
+
+		@DefaultValue("false") boolean enabled,
+
+		String directory) {
+
+		Path directoryPath() {
+			return Optional.ofNullable(directory)
+				.map(Path::of)
+				.orElse(null);
+		}
+	}
 }
@@ -0,0 +1,293 @@
+package se.sundsvall.byggrarchiver.integration.arendeexport;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.jaxb.JAXBContextFactory;
+import generated.se.sundsvall.arendeexport.DokumentFil;
+import generated.se.sundsvall.arendeexport.GetDocumentResponse;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import jakarta.xml.soap.SOAPConstants;
+import jakarta.xml.soap.SOAPException;
+import jakarta.xml.soap.SOAPFactory;
+import jakarta.xml.ws.soap.SOAPFaultException;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes the response of GetDocument without holding the content of the documents in memory. The SOAP envelope is
+ * parsed as a stream, and the base64 content of each filBuffer element is decoded to a temporary file as it is read,
+ * while the rest of the response is unmarshalled as usual. The file of each document with content is replaced by a
+ * {@link SpooledDokumentFil}, along with the size and hash of the content.
+ *
+ * Responses of other operations are decoded by the delegate.
+ */
+final class GetDocumentResponseDecoder implements Decoder {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GetDocumentResponseDecoder.class);
+
+	private static final String FIL_BUFFER = "filBuffer";
+
+	private static final String SPOOL_FILE_PREFIX = "getdocument-";
+
+	// Number of base64 characters decoded at a time, a multiple of 4 so that only the last chunk can hold padding
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	private final JAXBContextFactory jaxbContextFactory;
+
+	private final Decoder delegate;
+
+	private final Path directory;
+
+	private final XMLInputFactory xmlInputFactory;
+
+	/**
+	 * @param directory directory of the temporary files, the default temporary-file directory if null
+	 */
+	GetDocumentResponseDecoder(final JAXBContextFactory jaxbContextFactory, final Decoder delegate, final Path directory) {
+		this.jaxbContextFactory = jaxbContextFactory;
+		this.delegate = delegate;
+		this.directory = directory;
+		this.xmlInputFactory = XMLInputFactory.newFactory();
+		this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+	}
+
+	@Override
+	public Object decode(final Response response, final Type type) throws IOException {
+		if (type != GetDocumentResponse.class) {
+			return delegate.decode(response, type);
+		}
+		if (response.status() == 404) {
+			return Util.emptyValueOf(type);
+		}
+		if (response.body() == null) {
+			return null;
+		}
+
+		final var spooledFiles = new ArrayList<Path>();
+		var decoded = false;
+		try (final var body = response.body().asInputStream()) {
+			final var getDocumentResponse = decode(xmlInputFactory.createXMLStreamReader(body), spooledFiles);
+			decoded = true;
+			return getDocumentResponse;
+		} catch (final XMLStreamException | JAXBException | SOAPException | IllegalArgumentException e) {
+			throw new DecodeException(response.status(), e.toString(), response.request(), e);
+		} finally {
+			if (!decoded) {
+				spooledFiles.forEach(GetDocumentResponseDecoder::delete);
+			}
+		}
+	}
+
+	private GetDocumentResponse decode(final XMLStreamReader reader, final List<Path> spooledFiles) throws XMLStreamException, JAXBException, SOAPException, IOException {
+		try {
+			moveToBodyContent(reader);
+			if (SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE.equals(reader.getNamespaceURI()) && "Fault".equals(reader.getLocalName())) {
+				throw toSOAPFaultException(reader);
+			}
+
+			final var spoolingReader = new SpoolingReader(reader, spooledFiles);
+			final var fils = new IdentityHashMap<DokumentFil, SpooledFile>();
+			final var unmarshaller = jaxbContextFactory.createUnmarshaller(GetDocumentResponse.class);
+			unmarshaller.setListener(new Unmarshaller.Listener() {
+
+				@Override
+				public void afterUnmarshal(final Object target, final Object parent) {
+					// The filBuffer of a file ends before the file itself
+					if ((target instanceof final DokumentFil fil) && (spoolingReader.lastSpooledFile != null)) {
+						fils.put(fil, spoolingReader.lastSpooledFile);
+						spoolingReader.lastSpooledFile = null;
+					}
+				}
+			});
+
+			final var getDocumentResponse = unmarshaller.unmarshal(spoolingReader, GetDocumentResponse.class).getValue();
+			replaceSpooledFils(getDocumentResponse, fils);
+			return getDocumentResponse;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void replaceSpooledFils(final GetDocumentResponse getDocumentResponse, final Map<DokumentFil, SpooledFile> fils) {
+		getDocumentResponse.getGetDocumentResult().forEach(dokument -> {
+			final var spooledFile = fils.remove(dokument.getFil());
+			if (spooledFile != null) {
+				dokument.setFil(new SpooledDokumentFil(dokument.getFil(), spooledFile.path(), spooledFile.size(), spooledFile.contentHash()));
+			}
+		});
+
+		// Not expected, but content that no document refers to must not be left behind
+		fils.values().forEach(spooledFile -> delete(spooledFile.path()));
+	}
+
+	private static void moveToBodyContent(final XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			if ((reader.next() == START_ELEMENT) && SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE.equals(reader.getNamespaceURI()) && "Body".equals(reader.getLocalName())) {
+				if (reader.nextTag() != START_ELEMENT) {
+					throw new XMLStreamException("The SOAP body is empty", reader.getLocation());
+				}
+				return;
+			}
+		}
+		throw new XMLStreamException("The response has no SOAP body");
+	}
+
+	private static SOAPFaultException toSOAPFaultException(final XMLStreamReader reader) throws XMLStreamException, SOAPException {
+		var faultCode = new QName(SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, "Server");
+		var faultString = "";
+
+		while (reader.nextTag() == START_ELEMENT) {
+			switch (reader.getLocalName()) {
+				case "faultcode" -> {
+					final var namespaceContext = reader.getNamespaceContext();
+					final var value = reader.getElementText().trim();
+					final var separator = value.indexOf(':');
+					faultCode = (separator < 0) ? new QName(value) : new QName(namespaceContext.getNamespaceURI(value.substring(0, separator)), value.substring(separator + 1));
+				}
+				case "faultstring" -> faultString = reader.getElementText();
+				default -> skipElement(reader);
+			}
+		}
+
+		return new SOAPFaultException(SOAPFactory.newInstance(SOAPConstants.SOAP_1_1_PROTOCOL).createFault(faultString, faultCode));
+	}
+
+	private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+		for (var depth = 1; depth > 0;) {
+			final var event = reader.next();
+			if (event == START_ELEMENT) {
+				depth++;
+			} else if (event == END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static void delete(final Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (final IOException e) {
+			LOG.warn("Unable to delete the spooled file {}", path, e);
+		}
+	}
+
+	private record SpooledFile(Path path, long size, String contentHash) {}
+
+	/**
+	 * Reader that hands an empty filBuffer element to JAXB, after decoding its content to a temporary file.
+	 */
+	private final class SpoolingReader extends StreamReaderDelegate {
+
+		private final List<Path> spooledFiles;
+
+		private boolean inFilBuffer;
+
+		private SpooledFile lastSpooledFile;
+
+		private SpoolingReader(final XMLStreamReader reader, final List<Path> spooledFiles) {
+			super(reader);
+			this.spooledFiles = spooledFiles;
+		}
+
+		@Override
+		public int next() throws XMLStreamException {
+			if (inFilBuffer) {
+				inFilBuffer = false;
+				lastSpooledFile = spool();
+				return getEventType();
+			}
+
+			final var event = super.next();
+			inFilBuffer = (event == START_ELEMENT) && FIL_BUFFER.equals(getLocalName());
+			return event;
+		}
+
+		// Decodes the content of the current filBuffer element to a temporary file, and ends at its end element
+		private SpooledFile spool() throws XMLStreamException {
+			try {
+				final var path = (directory != null) ? Files.createTempFile(Files.createDirectories(directory), SPOOL_FILE_PREFIX, null) : Files.createTempFile(SPOOL_FILE_PREFIX, null);
+				spooledFiles.add(path);
+
+				// The content is hashed as it is written, so that it doesn't have to be read again to be hashed
+				try (final var outputStream = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(path)), SpooledDokumentFil.newContentDigest())) {
+					final var size = decodeBase64(outputStream);
+					return new SpooledFile(path, size, HexFormat.of().formatHex(outputStream.getMessageDigest().digest()));
+				}
+			} catch (final IOException e) {
+				throw new XMLStreamException("Unable to spool the content of the document", e);
+			}
+		}
+
+		private long decodeBase64(final OutputStream outputStream) throws XMLStreamException, IOException {
+			final var decoder = Base64.getDecoder();
+			final var characters = new char[CHUNK_SIZE];
+			final var encoded = new byte[CHUNK_SIZE];
+			final var decoded = new byte[(CHUNK_SIZE / 4) * 3];
+			var encodedLength = 0;
+			var size = 0L;
+
+			for (var event = getParent().next(); event != END_ELEMENT; event = getParent().next()) {
+				if ((event != CHARACTERS) && (event != CDATA) && (event != SPACE)) {
+					continue;
+				}
+
+				var read = characters.length;
+				for (var start = 0; read == characters.length; start += read) {
+					read = getParent().getTextCharacters(start, characters, 0, characters.length);
+
+					for (var i = 0; i < read; i++) {
+						// Line breaks and indentation are allowed in base64Binary
+						if (Character.isWhitespace(characters[i])) {
+							continue;
+						}
+						if (characters[i] > 0x7f) {
+							throw new IllegalArgumentException("Illegal base64 character " + characters[i]);
+						}
+
+						encoded[encodedLength++] = (byte) characters[i];
+						if (encodedLength == encoded.length) {
+							final var length = decoder.decode(encoded, decoded);
+							outputStream.write(decoded, 0, length);
+							size += length;
+							encodedLength = 0;
+						}
+					}
+				}
+			}
+
+			final var last = decoder.decode(Arrays.copyOf(encoded, encodedLength));
+			outputStream.write(last);
+			return size + last.length;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package se.sundsvall.byggrarchiver.integration.arendeexport;
+
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.DokumentFil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The file of a document fetched with GetDocument, whose content has been decoded to a temporary file instead of being
+ * held in memory. The content is read with {@link #openStream()}, and the temporary file is deleted when the file is
+ * closed.
+ */
+public class SpooledDokumentFil extends DokumentFil implements AutoCloseable {
+
+	/**
+	 * Algorithm of the hash of the content, computed while the content is spooled.
+	 */
+	public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpooledDokumentFil.class);
+
+	private final Path path;
+
+	private final long size;
+
+	private final String contentHash;
+
+	SpooledDokumentFil(final DokumentFil fil, final Path path, final long size, final String contentHash) {
+		this.filAndelse = fil.getFilAndelse();
+		this.docSplitToken = fil.getDocSplitToken();
+		this.path = path;
+		this.size = size;
+		this.contentHash = contentHash;
+	}
+
+	public InputStream openStream() throws IOException {
+		return Files.newInputStream(path);
+	}
+
+	/**
+	 * Reads the first bytes of the content, to tell its format without reading all of it.
+	 *
+	 * @param  length the max number of bytes to read
+	 * @return        the first bytes of the content, fewer than length if the content is shorter
+	 */
+	public byte[] readHeader(final int length) throws IOException {
+		try (final var inputStream = openStream()) {
+			return inputStream.readNBytes(length);
+		}
+	}
+
+	/**
+	 * @return the size of the content in bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return the hex-encoded {@value #CONTENT_HASH_ALGORITHM} hash of the content
+	 */
+	public String contentHash() {
+		return contentHash;
+	}
+
+	Path path() {
+		return path;
+	}
+
+	/**
+	 * Reads the whole content into memory, for callers that need it as an array. Use {@link #openStream()} when possible.
+	 */
+	@Override
+	public byte[] getFilBuffer() {
+		try {
+			return Files.readAllBytes(path);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			Files.deleteIfExists(path);
+		} catch (final IOException e) {
+			LOG.warn("Unable to delete the spooled file {}", path, e);
+		}
+	}
+
+	static MessageDigest newContentDigest() {
+		try {
+			return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+			// Every implementation of the Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Deletes the temporary files of the documents that have been spooled.
+	 */
+	public static void closeAll(final Collection<Dokument> dokumentList) {
+		dokumentList.stream()
+			.filter(dokument -> dokument.getFil() instanceof SpooledDokumentFil)
+			.forEach(dokument -> ((SpooledDokumentFil) dokument.getFil()).close());
+	}
+}
@@ -1,26 +1,68 @@
 package se.sundsvall.byggrarchiver.integration.db;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.ArchiveStatusCount;
 
 @Transactional
 @CircuitBreaker(name = "archiveHistoryRepository")
 public interface ArchiveHistoryRepository extends JpaRepository<ArchiveHistory, Long> {
 
-	Optional<ArchiveHistory> getArchiveHistoryByDocumentIdAndCaseIdAndMunicipalityId(String documentId, String caseId, String municipalityId);
+	List<ArchivedDocument> getArchivedDocumentsByCaseIdInAndMunicipalityId(Collection<String> caseIds, String municipalityId);
+
+	/**
+	 * Streams the ids of all documents with an archive history. Must be consumed within a transaction.
+	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+	Stream<ArchivedDocument> streamArchivedDocumentsBy();
+
+	/**
+	 * Streams the ids of the documents with an archive history that was saved at or after the timestamp. Must be consumed
+	 * within a transaction.
+	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+	Stream<ArchivedDocument> streamArchivedDocumentsByTimestampGreaterThanEqual(LocalDateTime timestamp);
 
 	List<ArchiveHistory> getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(Long batchHistoryId, String municipalityId);
 
 	@Query("select a from ArchiveHistory a where (:archiveStatus is null or a.archiveStatus = :archiveStatus) and (:batchHistoryId is null or a.batchHistory.id = :batchHistoryId) and (:municipalityId is null or a.municipalityId = :municipalityId)")
 	List<ArchiveHistory> getArchiveHistoriesByArchiveStatusAndBatchHistoryIdAndMunicipalityId(@Param("archiveStatus") ArchiveStatus archiveStatus, @Param("batchHistoryId") Long batchHistoryId, @Param("municipalityId") String municipalityId);
 
-	void deleteArchiveHistoriesByCaseIdAndArchiveStatus(String caseId, ArchiveStatus archiveStatus);
+	@Query("select new se.sundsvall.byggrarchiver.integration.db.model.ArchiveStatusCount(a.batchHistory.id, a.archiveStatus, count(a)) from ArchiveHistory a where a.batchHistory.id = :batchHistoryId and a.municipalityId = :municipalityId group by a.batchHistory.id, a.archiveStatus")
+	List<ArchiveStatusCount> countArchiveHistoriesByBatchHistoryIdAndMunicipalityId(@Param("batchHistoryId") Long batchHistoryId, @Param("municipalityId") String municipalityId);
+
+	@Query("select new se.sundsvall.byggrarchiver.integration.db.model.ArchiveStatusCount(a.batchHistory.id, a.archiveStatus, count(a)) from ArchiveHistory a where a.batchHistory.id in :batchHistoryIds and a.municipalityId = :municipalityId group by a.batchHistory.id, a.archiveStatus")
+	List<ArchiveStatusCount> countArchiveHistoriesByBatchHistoryIdInAndMunicipalityId(@Param("batchHistoryIds") Collection<Long> batchHistoryIds, @Param("municipalityId") String municipalityId);
+
+	/**
+	 * Deletes the archive histories with the status, of all the cases, in one statement. The archive histories that the
+	 * batch has saved since the run started are kept, since the run may still be archiving their documents, while those
+	 * of earlier runs of the batch are deleted, so that their documents are archived again.
+	 *
+	 * @return the number of deleted archive histories
+	 */
+	@Modifying
+	@Query("delete from ArchiveHistory a where a.caseId in :caseIds and a.archiveStatus = :archiveStatus and not (a.batchHistory.id = :batchHistoryId and a.timestamp >= :runStarted)")
+	int deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(@Param("caseIds") Collection<String> caseIds, @Param("archiveStatus") ArchiveStatus archiveStatus,
+		@Param("batchHistoryId") Long batchHistoryId, @Param("runStarted") LocalDateTime runStarted);
+
+	/**
+	 * The ids of a document that has an archive history, without loading the rest of the archive history.
+	 */
+	record ArchivedDocument(String caseId, String documentId) {}
 
 }
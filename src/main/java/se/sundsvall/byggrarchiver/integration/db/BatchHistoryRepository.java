@@ -1,8 +1,13 @@
 package se.sundsvall.byggrarchiver.integration.db;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
@@ -15,4 +20,10 @@ public interface BatchHistoryRepository extends JpaRepository<BatchHistory, Long
 
 	List<BatchHistory> findBatchHistoriesByArchiveStatusAndMunicipalityId(ArchiveStatus archiveStatus, String municipalityId);
 
+	Optional<BatchHistory> findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(ArchiveStatus archiveStatus, String municipalityId);
+
+	@Modifying
+	@Query("update BatchHistory b set b.checkpoint = :checkpoint where b.id = :id")
+	void updateCheckpoint(@Param("id") Long id, @Param("checkpoint") LocalDateTime checkpoint);
+
 }
@@ -0,0 +1,12 @@
+package se.sundsvall.byggrarchiver.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+import se.sundsvall.byggrarchiver.integration.db.model.HighWaterMark;
+
+@Transactional
+@CircuitBreaker(name = "highWaterMarkRepository")
+public interface HighWaterMarkRepository extends JpaRepository<HighWaterMark, String> {
+
+}
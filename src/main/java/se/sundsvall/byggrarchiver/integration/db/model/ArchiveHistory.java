@@ -37,7 +37,8 @@ import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 @AllArgsConstructor
 @Table(name = "archive_history", indexes = {
 	@Index(name = "archive_history_municipality_id_idx", columnList = "municipalityId"),
-	@Index(name = "archive_history_archive_status_idx", columnList = "archiveStatus")
+	@Index(name = "archive_history_archive_status_idx", columnList = "archiveStatus"),
+	@Index(name = "archive_history_timestamp_idx", columnList = "timestamp")
 })
 public class ArchiveHistory {
 
@@ -53,6 +54,12 @@ public class ArchiveHistory {
 
 	private String documentType;
 
+	private String fileExtension;
+
+	private Long fileSize;
+
+	private String contentHash;
+
 	private String archiveId;
 
 	private String archiveUrl;
@@ -84,12 +91,13 @@ public class ArchiveHistory {
 			return false;
 		final ArchiveHistory that = (ArchiveHistory) o;
 		return Objects.equals(documentId, that.documentId) && Objects.equals(caseId, that.caseId) && Objects.equals(municipalityId, that.municipalityId) && Objects.equals(documentName, that.documentName) && Objects.equals(documentType, that.documentType)
+			&& Objects.equals(fileExtension, that.fileExtension) && Objects.equals(fileSize, that.fileSize) && Objects.equals(contentHash, that.contentHash)
 			&& Objects.equals(archiveId, that.archiveId) && Objects.equals(archiveUrl, that.archiveUrl) && archiveStatus == that.archiveStatus && Objects.equals(timestamp, that.timestamp) && Objects.equals(batchHistory, that.batchHistory);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(documentId, caseId, municipalityId, documentName, documentType, archiveId, archiveUrl, archiveStatus, timestamp, batchHistory);
+		return Objects.hash(documentId, caseId, municipalityId, documentName, documentType, fileExtension, fileSize, contentHash, archiveId, archiveUrl, archiveStatus, timestamp, batchHistory);
 	}
 
 	@Override
@@ -100,6 +108,9 @@ public class ArchiveHistory {
 			", municipalityId='" + municipalityId + '\'' +
 			", documentName='" + documentName + '\'' +
 			", documentType='" + documentType + '\'' +
+			", fileExtension='" + fileExtension + '\'' +
+			", fileSize=" + fileSize +
+			", contentHash='" + contentHash + '\'' +
 			", archiveId='" + archiveId + '\'' +
 			", archiveUrl='" + archiveUrl + '\'' +
 			", archiveStatus=" + archiveStatus +
@@ -0,0 +1,8 @@
+package se.sundsvall.byggrarchiver.integration.db.model;
+
+import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
+
+/**
+ * The number of archive histories of a batch with a status.
+ */
+public record ArchiveStatusCount(Long batchHistoryId, ArchiveStatus archiveStatus, Long count) {}
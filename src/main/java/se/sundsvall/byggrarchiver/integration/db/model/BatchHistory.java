@@ -51,6 +51,9 @@ public class BatchHistory {
 	@Column(nullable = false)
 	private LocalDate end;
 
+	@Column
+	private LocalDateTime startAfter;
+
 	@Column(nullable = false, columnDefinition = "varchar(255)")
 	@Enumerated(EnumType.STRING)
 	private ArchiveStatus archiveStatus;
@@ -59,6 +62,10 @@ public class BatchHistory {
 	@Enumerated(EnumType.STRING)
 	private BatchTrigger batchTrigger;
 
+	@Schema(accessMode = Schema.AccessMode.READ_ONLY)
+	@Column
+	private LocalDateTime checkpoint;
+
 	@Schema(accessMode = Schema.AccessMode.READ_ONLY)
 	@Column(nullable = false)
 	private LocalDateTime timestamp;
@@ -76,13 +83,13 @@ public class BatchHistory {
 		if (o == null || getClass() != o.getClass())
 			return false;
 		final BatchHistory that = (BatchHistory) o;
-		return Objects.equals(id, that.id) && Objects.equals(municipalityId, that.municipalityId) && Objects.equals(start, that.start) && Objects.equals(end, that.end) && archiveStatus == that.archiveStatus && batchTrigger == that.batchTrigger && Objects
-			.equals(timestamp, that.timestamp);
+		return Objects.equals(id, that.id) && Objects.equals(municipalityId, that.municipalityId) && Objects.equals(start, that.start) && Objects.equals(end, that.end) && Objects.equals(startAfter, that.startAfter) && archiveStatus == that.archiveStatus && batchTrigger == that.batchTrigger && Objects
+			.equals(checkpoint, that.checkpoint) && Objects.equals(timestamp, that.timestamp);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, municipalityId, start, end, archiveStatus, batchTrigger, timestamp);
+		return Objects.hash(id, municipalityId, start, end, startAfter, archiveStatus, batchTrigger, checkpoint, timestamp);
 	}
 
 	@Override
@@ -92,8 +99,10 @@ public class BatchHistory {
 			", municipalityId='" + municipalityId + '\'' +
 			", start=" + start +
 			", end=" + end +
+			", startAfter=" + startAfter +
 			", archiveStatus=" + archiveStatus +
 			", batchTrigger=" + batchTrigger +
+			", checkpoint=" + checkpoint +
 			", timestamp=" + timestamp +
 			'}';
 	}
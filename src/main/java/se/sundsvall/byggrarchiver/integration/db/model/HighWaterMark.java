@@ -0,0 +1,71 @@
+package se.sundsvall.byggrarchiver.integration.db.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * How far the changes in ByggR have been fully processed for a municipality. Scheduled batches start from here.
+ */
+@Entity
+@Builder(setterPrefix = "with")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "high_water_mark")
+public class HighWaterMark {
+
+	@Id
+	@Column(nullable = false)
+	private String municipalityId;
+
+	@Column(nullable = false)
+	private LocalDateTime processedUntil;
+
+	@Column(nullable = false)
+	private LocalDateTime timestamp;
+
+	@PrePersist
+	@PreUpdate
+	protected void onPersist() {
+		timestamp = LocalDateTime.now(ZoneId.systemDefault()).truncatedTo(ChronoUnit.MICROS);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		final HighWaterMark that = (HighWaterMark) o;
+		return Objects.equals(municipalityId, that.municipalityId) && Objects.equals(processedUntil, that.processedUntil) && Objects.equals(timestamp, that.timestamp);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(municipalityId, processedUntil, timestamp);
+	}
+
+	@Override
+	public String toString() {
+		return "HighWaterMark{" +
+			"municipalityId='" + municipalityId + '\'' +
+			", processedUntil=" + processedUntil +
+			", timestamp=" + timestamp +
+			'}';
+	}
+
+}
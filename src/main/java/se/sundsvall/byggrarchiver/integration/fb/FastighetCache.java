@@ -0,0 +1,129 @@
+package se.sundsvall.byggrarchiver.integration.fb;
+
+import generated.sokigo.fb.FastighetDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded cache of properties looked up in FB, by fnr. The least recently used property is evicted when the cache is
+ * full, and a property is looked up again when its time to live has passed. That FB has no property with a fnr is
+ * cached too, with a time to live of its own.
+ */
+final class FastighetCache {
+
+	static final String CACHE_METRIC = "archiver.fb.cache";
+
+	static final String CACHE_SIZE_METRIC = "archiver.fb.cache.size";
+
+	private final FbIntegrationProperties.Cache properties;
+
+	private final Clock clock;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final Map<Integer, CachedFastighet> cachedByFnr;
+
+	FastighetCache(final FbIntegrationProperties.Cache properties, final Clock clock, final MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.clock = clock;
+		this.cachedByFnr = new LinkedHashMap<>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, CachedFastighet> eldest) {
+				return size() > properties.maxSize();
+			}
+		};
+		this.hits = Counter.builder(CACHE_METRIC)
+			.description("Number of property lookups in the FB cache")
+			.tag("result", "hit")
+			.register(meterRegistry);
+		this.misses = Counter.builder(CACHE_METRIC)
+			.description("Number of property lookups in the FB cache")
+			.tag("result", "miss")
+			.register(meterRegistry);
+		Gauge.builder(CACHE_SIZE_METRIC, this, FastighetCache::size)
+			.description("Number of properties in the FB cache")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * @param  fnr the fnr to look up
+	 * @return     the cached lookup, where an empty property means that FB has no property with the fnr, or empty if the
+	 *             fnr is not cached
+	 */
+	Optional<CachedFastighet> get(final Integer fnr) {
+		if (!properties.enabled()) {
+			return Optional.empty();
+		}
+
+		final CachedFastighet cached;
+		synchronized (cachedByFnr) {
+			cached = cachedByFnr.get(fnr);
+			if ((cached != null) && !cached.expires().isAfter(clock.instant())) {
+				cachedByFnr.remove(fnr);
+				misses.increment();
+				return Optional.empty();
+			}
+		}
+
+		if (cached == null) {
+			misses.increment();
+			return Optional.empty();
+		}
+
+		hits.increment();
+		return Optional.of(cached);
+	}
+
+	/**
+	 * Tells whether a fnr is cached, without counting it as a lookup.
+	 *
+	 * @param  fnr the fnr to look for
+	 * @return     true if the fnr is cached and has not expired
+	 */
+	boolean contains(final Integer fnr) {
+		if (!properties.enabled()) {
+			return false;
+		}
+
+		synchronized (cachedByFnr) {
+			final var cached = cachedByFnr.get(fnr);
+			return (cached != null) && cached.expires().isAfter(clock.instant());
+		}
+	}
+
+	/**
+	 * @param fnr          the fnr that was looked up
+	 * @param fastighetDto the property, or null if FB has no property with the fnr
+	 */
+	void put(final Integer fnr, final FastighetDto fastighetDto) {
+		if (!properties.enabled()) {
+			return;
+		}
+
+		final var timeToLive = (fastighetDto != null) ? properties.timeToLive() : properties.emptyTimeToLive();
+		synchronized (cachedByFnr) {
+			cachedByFnr.put(fnr, new CachedFastighet(fastighetDto, clock.instant().plus(timeToLive)));
+		}
+	}
+
+	int size() {
+		synchronized (cachedByFnr) {
+			return cachedByFnr.size();
+		}
+	}
+
+	/**
+	 * @param fastighetDto the property, or null if FB has no property with the fnr
+	 * @param expires      when the property must be looked up again
+	 */
+	record CachedFastighet(FastighetDto fastighetDto, Instant expires) {}
+}
@@ -1,9 +1,18 @@
 package se.sundsvall.byggrarchiver.integration.fb;
 
+import static java.util.stream.Collectors.groupingBy;
+
 import generated.se.sundsvall.arendeexport.ArendeFastighet;
 import generated.se.sundsvall.bygglov.FastighetTyp;
 import generated.sokigo.fb.FastighetDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.zalando.problem.AbstractThrowableProblem;
@@ -15,18 +24,72 @@ import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
 @EnableConfigurationProperties(FbIntegrationProperties.class)
 public class FbIntegration {
 
+	private static final Logger LOG = LoggerFactory.getLogger(FbIntegration.class);
+
+	// Number of fnrs that are looked up in one request to FB
+	static final int PRELOAD_CHUNK_SIZE = 100;
+
 	private final FbClient fbClient;
 
-	public FbIntegration(final FbClient fbClient) {
+	private final FastighetCache fastighetCache;
+
+	public FbIntegration(final FbClient fbClient, final FbIntegrationProperties fbIntegrationProperties, final MeterRegistry meterRegistry) {
 		this.fbClient = fbClient;
+		this.fastighetCache = new FastighetCache(fbIntegrationProperties.cache(), Clock.systemUTC(), meterRegistry);
+	}
+
+	/**
+	 * Looks up the properties of many fnrs that are not cached with a few bulk requests. The properties are cached, and
+	 * are served by {@link #getFastighet(List, PreloadedProperties)} with the returned preloaded properties without
+	 * further requests to FB, also when the cache is disabled. Fnrs that could not be preloaded are still looked up one at
+	 * a time.
+	 *
+	 * @param  fnrs the fnrs to look up
+	 * @return      the properties that were looked up, to be used for the documents the fnrs were looked up for
+	 */
+	public PreloadedProperties preload(final Collection<Integer> fnrs) {
+		final var uncachedFnrs = fnrs.stream()
+			.filter(Objects::nonNull)
+			.distinct()
+			.filter(fnr -> !fastighetCache.contains(fnr))
+			.toList();
+
+		final var propertiesByFnr = new HashMap<Integer, FastighetDto>();
+
+		for (var fromIndex = 0; fromIndex < uncachedFnrs.size(); fromIndex += PRELOAD_CHUNK_SIZE) {
+			final var chunk = uncachedFnrs.subList(fromIndex, Math.min(fromIndex + PRELOAD_CHUNK_SIZE, uncachedFnrs.size()));
+
+			final List<FastighetDto> fastighetDtoList;
+			try {
+				fastighetDtoList = fbClient.getPropertyInfoByFnr(chunk).getData();
+			} catch (final AbstractThrowableProblem e) {
+				LOG.warn("Unable to preload {} properties from FB, they will be looked up one at a time", chunk.size(), e);
+				continue;
+			}
+
+			final var fastighetDtosByFnr = fastighetDtoList.stream()
+				.filter(fastighetDto -> fastighetDto.getFnr() != null)
+				.collect(groupingBy(FastighetDto::getFnr));
+
+			for (final var fnr : chunk) {
+				final var found = fastighetDtosByFnr.getOrDefault(fnr, List.of());
+				// More than one property for a fnr is an error, which the single lookup reports
+				if (found.size() <= 1) {
+					final var fastighetDto = found.isEmpty() ? null : found.getFirst();
+					fastighetCache.put(fnr, fastighetDto);
+					propertiesByFnr.put(fnr, fastighetDto);
+				}
+			}
+		}
+		return new PreloadedProperties(propertiesByFnr);
 	}
 
-	public FastighetTyp getFastighet(final List<ArendeFastighet> arendeFastighetList) throws ApplicationException {
+	public FastighetTyp getFastighet(final List<ArendeFastighet> arendeFastighetList, final PreloadedProperties preloadedProperties) throws ApplicationException {
 		final var fastighet = new FastighetTyp();
 
 		for (final var arendeFastighet : arendeFastighetList) {
 			if ((arendeFastighet != null) && arendeFastighet.isArHuvudObjekt()) {
-				final var fastighetDto = getPropertyInfoByFnr(arendeFastighet.getFastighet().getFnr());
+				final var fastighetDto = getPropertyInfoByFnr(arendeFastighet.getFastighet().getFnr(), preloadedProperties);
 
 				if (fastighetDto != null) {
 					fastighet.setFastighetsbeteckning(fastighetDto.getKommun() + " " + fastighetDto.getBeteckning());
@@ -40,6 +103,19 @@ public class FbIntegration {
 	}
 
 	public FastighetDto getPropertyInfoByFnr(final Integer fnr) throws ApplicationException {
+		return getPropertyInfoByFnr(fnr, PreloadedProperties.none());
+	}
+
+	private FastighetDto getPropertyInfoByFnr(final Integer fnr, final PreloadedProperties preloadedProperties) throws ApplicationException {
+		if (preloadedProperties.contains(fnr)) {
+			return preloadedProperties.get(fnr);
+		}
+
+		final var cached = fastighetCache.get(fnr);
+		if (cached.isPresent()) {
+			return cached.get().fastighetDto();
+		}
+
 		final List<FastighetDto> fastighetDtoList;
 		try {
 			fastighetDtoList = fbClient.getPropertyInfoByFnr(List.of(fnr)).getData();
@@ -48,12 +124,13 @@ public class FbIntegration {
 		}
 
 		if (fastighetDtoList.isEmpty()) {
+			fastighetCache.put(fnr, null);
 			return null;
 		} else if (fastighetDtoList.size() > 1) {
 			throw new ApplicationException("The response from fbService.getPropertyInfoByFnr([" + fnr + "]) contained more than one FastighetDto, that should not happen");
 		} else {
+			fastighetCache.put(fnr, fastighetDtoList.get(0));
 			return fastighetDtoList.get(0);
 		}
 	}
-
 }
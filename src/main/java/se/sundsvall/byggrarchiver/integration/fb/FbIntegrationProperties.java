@@ -1,7 +1,12 @@
 package se.sundsvall.byggrarchiver.integration.fb;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
 
 @Validated
@@ -14,6 +19,25 @@ record FbIntegrationProperties(
 
 	@NotBlank String password,
 
-	@NotBlank String database) {
+	@NotBlank String database,
 
+	@Valid @NotNull @DefaultValue Cache cache) {
+
+	/**
+	 * Settings for the cache of properties looked up in FB.
+	 *
+	 * @param enabled         whether properties are cached
+	 * @param maxSize         number of properties to cache, the least recently used property is evicted when full
+	 * @param timeToLive      how long a property is cached
+	 * @param emptyTimeToLive how long it is cached that FB has no property with a fnr
+	 */
+	record Cache(
+
+		@DefaultValue("true") boolean enabled,
+
+		@Min(1) @DefaultValue("10000") int maxSize,
+
+		@NotNull @DefaultValue("PT24H") Duration timeToLive,
+
+		@NotNull @DefaultValue("PT1H") Duration emptyTimeToLive) {}
 }
@@ -0,0 +1,41 @@
+package se.sundsvall.byggrarchiver.integration.fb;
+
+import generated.sokigo.fb.FastighetDto;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties looked up in FB with bulk requests for a page of cases, by fnr. Held by the page only, so that the
+ * properties are served without further requests to FB whether the cache is enabled or not.
+ */
+public final class PreloadedProperties {
+
+	private static final PreloadedProperties NONE = new PreloadedProperties(new HashMap<>());
+
+	// A null value means that FB has no property with the fnr
+	private final Map<Integer, FastighetDto> propertiesByFnr;
+
+	PreloadedProperties(final HashMap<Integer, FastighetDto> propertiesByFnr) {
+		this.propertiesByFnr = Collections.unmodifiableMap(propertiesByFnr);
+	}
+
+	/**
+	 * @return preloaded properties without any properties, for lookups outside of a page
+	 */
+	public static PreloadedProperties none() {
+		return NONE;
+	}
+
+	boolean contains(final Integer fnr) {
+		return propertiesByFnr.containsKey(fnr);
+	}
+
+	/**
+	 * @param  fnr a fnr that is preloaded
+	 * @return     the property, or null if FB has no property with the fnr
+	 */
+	FastighetDto get(final Integer fnr) {
+		return propertiesByFnr.get(fnr);
+	}
+}
@@ -3,15 +3,12 @@ package se.sundsvall.byggrarchiver.integration.messaging;
 import static generated.se.sundsvall.messaging.MessageStatus.SENT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.ofNullable;
-import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
 import static se.sundsvall.byggrarchiver.integration.messaging.MessagingMapper.toEmailRequest;
 import static se.sundsvall.dept44.util.ResourceUtils.asString;
 
 import generated.se.sundsvall.messaging.EmailRequest;
 import java.util.Base64;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,14 +53,11 @@ public class MessagingIntegration {
 		sendEmail(emailRequest, municipalityId);
 	}
 
-	public void sendStatusMail(final List<ArchiveHistory> archiveHistories, final Long batchId, final String municipalityId) {
-		var counts = archiveHistories.stream()
-			.collect(Collectors.partitioningBy(archiveHistory -> archiveHistory.getArchiveStatus().equals(COMPLETED), Collectors.counting()));
-
+	public void sendStatusMail(final long countCompleted, final long countNotCompleted, final Long batchId, final String municipalityId) {
 		var values = Map.of(
 			"batchId", String.valueOf(batchId),
-			"countCompleted", String.valueOf(counts.get(true)),
-			"countNotCompleted", String.valueOf(counts.get(false)));
+			"countCompleted", String.valueOf(countCompleted),
+			"countNotCompleted", String.valueOf(countNotCompleted));
 		var htmlMessage = toBase64(replace(asString(statusHtmlTemplate), values));
 		var emailRequest = toEmailRequest(emailProperties.status(), "Arkiveringsstatus", htmlMessage);
 
@@ -3,23 +3,17 @@ package se.sundsvall.byggrarchiver.service;
 import static java.util.Optional.ofNullable;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.NOT_COMPLETED;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.setFileInformation;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArendeFastighetList;
-import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArkivbildarStruktur;
-import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArkivobjektArendeTyp;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toByggRArchiveRequest;
-import static se.sundsvall.byggrarchiver.util.Constants.F_2_BYGGLOV;
-import static se.sundsvall.byggrarchiver.util.Constants.HANTERA_BYGGLOV;
 
+import feign.codec.EncodeException;
 import generated.se.sundsvall.archive.ArchiveResponse;
+import generated.se.sundsvall.archive.ByggRArchiveRequest;
 import generated.se.sundsvall.arendeexport.Arende2;
 import generated.se.sundsvall.arendeexport.Dokument;
 import generated.se.sundsvall.arendeexport.Handling;
-import generated.se.sundsvall.bygglov.ArkivobjektListaArendenTyp;
-import generated.se.sundsvall.bygglov.LeveransobjektTyp;
-import generated.se.sundsvall.bygglov.ObjectFactory;
-import jakarta.xml.bind.JAXBContext;
-import java.io.StringWriter;
-import java.time.LocalDate;
+import generated.se.sundsvall.bygglov.FastighetTyp;
 import java.util.Map;
 import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
@@ -30,8 +24,12 @@ import se.sundsvall.byggrarchiver.integration.archive.ArchiveIntegration;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.integration.fb.FbIntegration;
+import se.sundsvall.byggrarchiver.integration.fb.PreloadedProperties;
 import se.sundsvall.byggrarchiver.integration.messaging.MessagingIntegration;
 import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+import se.sundsvall.byggrarchiver.service.filetype.FileTypeDetector;
+import se.sundsvall.byggrarchiver.service.metadata.CaseMetadata;
+import se.sundsvall.byggrarchiver.service.metadata.MetadataRenderer;
 import se.sundsvall.dept44.exception.ClientProblem;
 
 @Service
@@ -49,23 +47,58 @@ public class ArchiveAttachmentService {
 
 	private final FbIntegration fbIntegration;
 
+	private final MetadataRenderer metadataRenderer;
+
+	private final FileTypeDetector fileTypeDetector;
+
 	LongTermArchiveProperties longTermArchiveProperties;
 
 	public ArchiveAttachmentService(final LongTermArchiveProperties longTermArchiveProperties, final ArchiveHistoryRepository archiveHistoryRepository,
-		final MessagingIntegration messagingIntegration, final ArchiveIntegration archiveIntegration, final FbIntegration fbIntegration) {
+		final MessagingIntegration messagingIntegration, final ArchiveIntegration archiveIntegration, final FbIntegration fbIntegration,
+		final MetadataRenderer metadataRenderer, final FileTypeDetector fileTypeDetector) {
 		this.longTermArchiveProperties = longTermArchiveProperties;
 		this.archiveHistoryRepository = archiveHistoryRepository;
 		this.messagingIntegration = messagingIntegration;
 		this.archiveIntegration = archiveIntegration;
 		this.fbIntegration = fbIntegration;
+		this.metadataRenderer = metadataRenderer;
+		this.fileTypeDetector = fileTypeDetector;
+	}
+
+	/**
+	 * Resolves the metadata that is the same for all documents of a case, including its property in FB. The result is
+	 * meant to be reused for all documents of the case.
+	 *
+	 * @param preloadedProperties properties preloaded for the page of the case
+	 */
+	public CaseMetadata createCaseMetadata(final Arende2 arende, final PreloadedProperties preloadedProperties) throws ApplicationException {
+		return metadataRenderer.prepare(arende, getFastighet(arende, preloadedProperties));
 	}
 
-	public ArchiveHistory archiveAttachment(final Arende2 arende, final Handling handling, final Dokument document, final ArchiveHistory archiveHistory, final String municipalityId) throws ApplicationException {
+	public ArchiveHistory archiveAttachment(final CaseMetadata caseMetadata, final Handling handling, final Dokument document, final ArchiveHistory archiveHistory, final String municipalityId) throws ApplicationException {
+		final var archiveRequest = createArchiveRequest(caseMetadata, handling, document);
+		setFileInformation(archiveHistory, document);
+		return sendToArchive(archiveRequest, archiveHistory, municipalityId);
+	}
+
+	/**
+	 * Creates the request to Archive, containing the document and its metadata.
+	 */
+	public ByggRArchiveRequest createArchiveRequest(final CaseMetadata caseMetadata, final Handling handling, final Dokument document) throws ApplicationException {
+		fileTypeDetector.detectExtension(document);
+		return toByggRArchiveRequest(document, metadataRenderer.render(caseMetadata, handling, document));
+	}
+
+	/**
+	 * Sends a request created by {@link #createArchiveRequest(CaseMetadata, Handling, Dokument)} to Archive and saves the
+	 * outcome on the archive history.
+	 */
+	public ArchiveHistory sendToArchive(final ByggRArchiveRequest archiveRequest, final ArchiveHistory archiveHistory, final String municipalityId) {
 
 		// Request to Archive
 		ArchiveResponse archiveResponse = null;
 		try {
-			archiveResponse = archiveIntegration.archive(toByggRArchiveRequest(document, createMetadata(arende, handling, document)), municipalityId);
+			archiveResponse = archiveIntegration.archive(archiveRequest, municipalityId);
 		} catch (final ClientProblem e) {
 			LOG.error("Request to Archive failed. Continue with the rest.", e);
 
@@ -74,6 +107,9 @@ public class ArchiveAttachmentService {
 
 				messagingIntegration.sendExtensionErrorEmail(archiveHistory, municipalityId);
 			}
+		} catch (final EncodeException e) {
+			// The content of the document could not be read from its spooled file while the request was written
+			LOG.error("Unable to write the request to Archive for document with ID: {}. Continue with the rest.", archiveHistory.getDocumentId(), e);
 		}
 
 		if ((archiveResponse != null) && (archiveResponse.getArchiveId() != null)) {
@@ -104,51 +140,12 @@ public class ArchiveAttachmentService {
 		return new StringSubstitutor(values).replace(ARCHIVE_URL_QUERY);
 	}
 
-	private ArkivobjektListaArendenTyp toArkivobjektListaArenden(final Arende2 arende,
-		final Handling handling, final Dokument document) throws ApplicationException {
-
-		final var arkivobjektArende = toArkivobjektArendeTyp(arende, handling, document);
-
-		if (arende.getObjektLista() != null) {
-			final var arendeFastighetList = toArendeFastighetList(arende.getObjektLista().getAbstractArendeObjekt());
-
-			arkivobjektArende.getFastighet().add(fbIntegration.getFastighet(arendeFastighetList));
+	private FastighetTyp getFastighet(final Arende2 arende, final PreloadedProperties preloadedProperties) throws ApplicationException {
+		if (arende.getObjektLista() == null) {
+			return null;
 		}
 
-		if ((arende.getAnkomstDatum() == null) || arende.getAnkomstDatum().isAfter(LocalDate.of(2016, 12, 31))) {
-			arkivobjektArende.getKlass().add(HANTERA_BYGGLOV);
-		} else {
-			arkivobjektArende.getKlass().add(F_2_BYGGLOV);
-		}
-
-		if (arende.getAnkomstDatum() != null) {
-			arkivobjektArende.setNotering(String.valueOf(arende.getAnkomstDatum().getYear()));
-		}
-
-		final var arkivobjektListaArendenTyp = new ArkivobjektListaArendenTyp();
-		arkivobjektListaArendenTyp.getArkivobjektArende().add(arkivobjektArende);
-		return arkivobjektListaArendenTyp;
-	}
-
-	private LeveransobjektTyp toLeveransobjektTyp(final Arende2 arende, final Handling handling,
-		final Dokument document) throws ApplicationException {
-		final var leveransobjekt = new LeveransobjektTyp();
-		leveransobjekt.setArkivbildarStruktur(toArkivbildarStruktur(arende.getAnkomstDatum()));
-		leveransobjekt.setArkivobjektListaArenden(toArkivobjektListaArenden(arende, handling, document));
-		return leveransobjekt;
-	}
-
-	private String createMetadata(final Arende2 arende, final Handling handling, final Dokument document) throws ApplicationException {
-		final var leveransObjektTyp = toLeveransobjektTyp(arende, handling, document);
-		try {
-			final var context = JAXBContext.newInstance(LeveransobjektTyp.class);
-			final var marshaller = context.createMarshaller();
-			final var stringWriter = new StringWriter();
-			marshaller.marshal(new ObjectFactory().createLeveransobjekt(leveransObjektTyp), stringWriter);
-			return stringWriter.toString();
-		} catch (final Exception e) {
-			throw new ApplicationException("Something went wrong when trying to marshal LeveransobjektTyp", e);
-		}
+		return fbIntegration.getFastighet(toArendeFastighetList(arende.getObjektLista().getAbstractArendeObjekt()), preloadedProperties);
 	}
 
 }
@@ -1,40 +1,79 @@
 package se.sundsvall.byggrarchiver.service;
 
+import static java.time.temporal.ChronoUnit.MICROS;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toSet;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.NOT_COMPLETED;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.GEO;
+import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.SCHEDULED;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.setFileInformation;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArchiveHistory;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArendeFastighetList;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toAttachmentCategory;
 import static se.sundsvall.byggrarchiver.util.Constants.BYGGR_HANDELSETYP_ARKIV;
 import static se.sundsvall.byggrarchiver.util.Constants.BYGGR_STATUS_AVSLUTAT;
 
+import generated.se.sundsvall.archive.ByggRArchiveRequest;
 import generated.se.sundsvall.arendeexport.Arende2;
-import generated.se.sundsvall.arendeexport.ArendeBatch;
-import generated.se.sundsvall.arendeexport.BatchFilter;
+import generated.se.sundsvall.arendeexport.Dokument;
 import generated.se.sundsvall.arendeexport.HandelseHandling;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import se.sundsvall.byggrarchiver.api.model.ArchiveHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
-import se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory;
 import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
+import se.sundsvall.byggrarchiver.integration.arendeexport.SpooledDokumentFil;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
 import se.sundsvall.byggrarchiver.integration.db.BatchHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.HighWaterMarkRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.ArchiveStatusCount;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.HighWaterMark;
 import se.sundsvall.byggrarchiver.integration.fb.FbIntegration;
+import se.sundsvall.byggrarchiver.integration.fb.PreloadedProperties;
 import se.sundsvall.byggrarchiver.integration.messaging.MessagingIntegration;
 import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+import se.sundsvall.byggrarchiver.service.executor.ArchiveTaskExecutor;
+import se.sundsvall.byggrarchiver.service.executor.ByteBudget;
+import se.sundsvall.byggrarchiver.service.executor.ByteBudget.Reservation;
+import se.sundsvall.byggrarchiver.service.filter.ArchivedDocumentFilter;
 import se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper;
+import se.sundsvall.byggrarchiver.service.metadata.CaseMetadata;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPagesFactory;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner.TimeWindow;
+import se.sundsvall.byggrarchiver.service.pipeline.ArchivePipeline;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgress;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgressRegistry;
+import se.sundsvall.byggrarchiver.service.progress.DocumentEvent;
+import se.sundsvall.byggrarchiver.service.progress.DocumentEvent.Stage;
+import se.sundsvall.byggrarchiver.service.progress.PageEvent;
 
 @Service
 public class ArchiveHistoryService {
 
+	static final String DELETED_METRIC = "archiver.archive.history.deleted";
+
 	private static final Logger LOG = LoggerFactory.getLogger(ArchiveHistoryService.class);
 
 	private final BatchHistoryRepository batchHistoryRepository;
@@ -49,79 +88,233 @@ public class ArchiveHistoryService {
 
 	private final FbIntegration fbIntegration;
 
+	private final ArchiveTaskExecutor archiveTaskExecutor;
+
+	private final ArchivePipeline archivePipeline;
+
+	private final ArendeBatchPagesFactory arendeBatchPagesFactory;
+
+	private final ArendeBatchPartitioner arendeBatchPartitioner;
+
+	private final HighWaterMarkRepository highWaterMarkRepository;
+
+	private final BatchProgressRegistry batchProgressRegistry;
+
+	private final ArchivedDocumentFilter archivedDocumentFilter;
+
+	private final ByteBudget byteBudget;
+
+	private final Counter deletedArchiveHistories;
+
 	public ArchiveHistoryService(final BatchHistoryRepository batchHistoryRepository,
 		final ArendeExportIntegration arendeExportIntegration,
 		final ArchiveHistoryRepository archiveHistoryRepository,
 		final MessagingIntegration messagingIntegration,
 		final ArchiveAttachmentService archiveAttachmentService,
-		final FbIntegration fbIntegration) {
+		final FbIntegration fbIntegration,
+		final ArchiveTaskExecutor archiveTaskExecutor,
+		final ArchivePipeline archivePipeline,
+		final ArendeBatchPagesFactory arendeBatchPagesFactory,
+		final ArendeBatchPartitioner arendeBatchPartitioner,
+		final HighWaterMarkRepository highWaterMarkRepository,
+		final BatchProgressRegistry batchProgressRegistry,
+		final ArchivedDocumentFilter archivedDocumentFilter,
+		final ByteBudget byteBudget,
+		final MeterRegistry meterRegistry) {
 		this.batchHistoryRepository = batchHistoryRepository;
 		this.arendeExportIntegration = arendeExportIntegration;
 		this.archiveHistoryRepository = archiveHistoryRepository;
 		this.messagingIntegration = messagingIntegration;
 		this.archiveAttachmentService = archiveAttachmentService;
 		this.fbIntegration = fbIntegration;
+		this.archiveTaskExecutor = archiveTaskExecutor;
+		this.archivePipeline = archivePipeline;
+		this.arendeBatchPagesFactory = arendeBatchPagesFactory;
+		this.arendeBatchPartitioner = arendeBatchPartitioner;
+		this.highWaterMarkRepository = highWaterMarkRepository;
+		this.batchProgressRegistry = batchProgressRegistry;
+		this.archivedDocumentFilter = archivedDocumentFilter;
+		this.byteBudget = byteBudget;
+		this.deletedArchiveHistories = Counter.builder(DELETED_METRIC)
+			.description("Number of not completed archive histories deleted before the documents of their cases are archived again")
+			.register(meterRegistry);
 	}
 
 	public BatchHistory archive(final LocalDate searchStart, final LocalDate searchEnd,
+		final BatchHistory batchHistory, final String municipalityId) {
+		return archiveAfter(searchStart.atStartOfDay(), searchEnd, batchHistory, municipalityId);
+	}
+
+	/**
+	 * Archives all documents of cases that were updated after searchStart and up to the end of searchEnd.
+	 */
+	public BatchHistory archiveAfter(final LocalDateTime searchStart, final LocalDate searchEnd,
 		final BatchHistory batchHistory, final String municipalityId) {
 		LOG.info("Batch: {} was started with start-date: {} and end-date: {}", batchHistory.getId(), searchStart, searchEnd);
 
-		final var start = searchStart.atStartOfDay();
 		final var end = getEnd(searchEnd);
-		final var batchFilter = new BatchFilter()
-			.withLowerExclusiveBound(start)
-			.withUpperInclusiveBound(end);
+		// Other instances may have archived documents since the filter was last refreshed
+		archivedDocumentFilter.refresh();
+		final var progress = batchProgressRegistry.start(batchHistory.getId());
+		try {
+			// Shared by all partitions of the batch, since a case that is updated while the batch runs may be found by more than
+			// one partition
+			final var batchRun = new BatchRun(batchHistory, LocalDateTime.now(ZoneId.systemDefault()).truncatedTo(MICROS), new ConcurrentHashMap<>());
+
+			final var partitions = arendeBatchPartitioner.partition(searchStart, end);
+			if (partitions.size() == 1) {
+				harvest(partitions.getFirst(), batchRun, municipalityId, true);
+			} else {
+				harvestConcurrently(partitions, batchRun, municipalityId);
+			}
 
-		ArendeBatch arendeBatch = null;
+			final var statusCounts = StatusCounts.of(archiveHistoryRepository.countArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batchHistory.getId(), municipalityId));
+			if (statusCounts.allCompleted()) {
+				// Persist that this batch is completed
+				batchHistory.setArchiveStatus(COMPLETED);
+				batchHistoryRepository.save(batchHistory);
 
-		do {
-			if (arendeBatch != null) {
-				setLowerExclusiveBoundWithReturnedValue(batchFilter, arendeBatch);
+				advanceHighWaterMark(searchStart, end, batchHistory, municipalityId);
+			} else {
+				// Send email when batch is not completed
+				messagingIntegration.sendStatusMail(statusCounts.completed(), statusCounts.notCompleted(), batchHistory.getId(), municipalityId);
 			}
 
-			LOG.info("Run batch iteration with start-date: {} and end-date: {}", batchFilter.getLowerExclusiveBound(), batchFilter.getUpperInclusiveBound());
+			LOG.info("Batch with ID: {} is {}", batchHistory.getId(), batchHistory.getArchiveStatus());
+			LOG.info("Batch with ID: {} has {} archive histories", batchHistory.getId(), statusCounts.total());
+		} finally {
+			// Not until the status of the batch is saved, so that a client that sees the batch finish reads its final status
+			batchProgressRegistry.finish(progress);
+		}
+
+		updateStatusOfOldBatchHistories(municipalityId);
+
+		return batchHistory;
+	}
 
+	/**
+	 * Archives the documents of all cases that were updated within the time window. With checkpoints, how far the window
+	 * has been read is saved on the batch history after each page, as long as no document in the batch has failed. A
+	 * document is archived only if it can be claimed in the known document ids of its case.
+	 */
+	private void harvest(final TimeWindow window, final BatchRun batchRun, final String municipalityId, final boolean checkpoints) {
+		final var batchHistory = batchRun.batchHistory();
+		final var knownDocumentIds = batchRun.knownDocumentIds();
+		// Whether a document of the partition has failed, after which no checkpoint is saved
+		var documentFailed = false;
+		try (final var arendeBatchPages = arendeBatchPagesFactory.create(window)) {
 			// Get arenden from Byggr
-			arendeBatch = arendeExportIntegration.getUpdatedArenden(batchFilter);
+			for (var arendeBatch = arendeBatchPages.next(); arendeBatch != null; arendeBatch = arendeBatchPages.next()) {
+				reportProgress(batchHistory, BatchProgress::pageScanned);
+				final var pageStarted = System.nanoTime();
+
+				final var closedCaseList = arendeBatch.getArenden().getArende().stream()
+					.filter(arende -> BYGGR_STATUS_AVSLUTAT.equals(arende.getStatus()))
+					.toList();
+
+				// Delete all not completed archive histories connected to the cases, except those of this run of the batch
+				deleteNotCompletedArchiveHistories(closedCaseList, batchRun);
+
+				// Look up the properties of all cases in the page at once, instead of once per document
+				final var preloadedProperties = fbIntegration.preload(getMainPropertyFnrs(closedCaseList));
+
+				// Archive documents
+				final var pageFailed = new AtomicBoolean();
+				final var documentHandlings = closedCaseList.stream()
+					.flatMap(closedCase -> {
+						// Shared by the documents of the case
+						final var caseContext = new CaseContext(closedCase, knownDocumentIds.computeIfAbsent(closedCase.getDnr(), caseId -> ConcurrentHashMap.newKeySet()),
+							preloadedProperties);
+						return closedCase.getHandelseLista().getHandelse().stream()
+							.filter(handelse -> BYGGR_HANDELSETYP_ARKIV.equals(handelse.getHandelsetyp()))
+							.flatMap(handelse -> handelse.getHandlingLista().getHandling().stream())
+							.filter(handelseHandling -> handelseHandling.getDokument() != null)
+							.map(handling -> new DocumentHandling(handling, closedCase, caseContext, pageFailed));
+					})
+					.toList();
+
+				// Look up which documents in the page are already archived at once, instead of once per document
+				loadKnownDocumentIds(documentHandlings, knownDocumentIds, municipalityId);
+				archiveDocuments(documentHandlings, batchHistory, municipalityId);
+
+				final var page = arendeBatch;
+				reportProgress(batchHistory, progress -> progress.pageArchived(new PageEvent(batchHistory.getId(), page.getBatchStart(), page.getBatchEnd(),
+					page.getArenden().getArende().size(), documentHandlings.size(), elapsedMillis(pageStarted))));
+
+				documentFailed |= pageFailed.get();
+				if (checkpoints) {
+					saveCheckpoint(batchHistory, arendeBatchPages.checkpoint(), documentFailed);
+				}
+			}
+		}
+	}
 
-			final var closedCaseList = arendeBatch.getArenden().getArende().stream()
-				.filter(arende -> BYGGR_STATUS_AVSLUTAT.equals(arende.getStatus()))
-				.toList();
+	private static List<Integer> getMainPropertyFnrs(final List<Arende2> cases) {
+		return cases.stream()
+			.filter(arende -> arende.getObjektLista() != null)
+			.flatMap(arende -> toArendeFastighetList(arende.getObjektLista().getAbstractArendeObjekt()).stream())
+			.filter(arendeFastighet -> arendeFastighet.isArHuvudObjekt() && (arendeFastighet.getFastighet() != null))
+			.map(arendeFastighet -> arendeFastighet.getFastighet().getFnr())
+			.toList();
+	}
+
+	/**
+	 * Saves the checkpoint of the batch, unless a document in the batch has failed. A rerun then starts from the
+	 * checkpoint, while a failed document must be found again by the rerun.
+	 */
+	private void saveCheckpoint(final BatchHistory batchHistory, final LocalDateTime checkpoint, final boolean documentFailed) {
+		if (documentFailed) {
+			return;
+		}
 
-			// Delete all not completed archive histories connected to this case
-			closedCaseList.forEach(closedCase -> archiveHistoryRepository.deleteArchiveHistoriesByCaseIdAndArchiveStatus(closedCase.getDnr(), NOT_COMPLETED));
+		LOG.info("Batch: {} has reached checkpoint: {}", batchHistory.getId(), checkpoint);
+		batchHistory.setCheckpoint(checkpoint);
+		batchHistoryRepository.updateCheckpoint(batchHistory.getId(), checkpoint);
+	}
 
-			// Archive documents
-			closedCaseList.forEach(closedCase -> closedCase.getHandelseLista().getHandelse().stream()
-				.filter(handelse -> BYGGR_HANDELSETYP_ARKIV.equals(handelse.getHandelsetyp()))
-				.flatMap(handelse -> handelse.getHandlingLista().getHandling().stream())
-				.filter(handelseHandling -> handelseHandling.getDokument() != null)
-				.forEach(handling -> {
-					try {
-						processHandlingList(handling, closedCase, batchHistory, municipalityId);
-					} catch (final ApplicationException e) {
-						LOG.error("Error when archiving document with ID: {} in combination with Case-ID: {}", handling.getDokument().getDokId(), closedCase.getDnr(), e);
-					}
-				}));
-		} while (batchFilter.getLowerExclusiveBound().isBefore(end));
-
-		final var archiveHistoriesRelatedToBatch = archiveHistoryRepository.getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batchHistory.getId(), municipalityId);
-		if (archiveHistoriesRelatedToBatch.stream().allMatch(archiveHistory -> COMPLETED.equals(archiveHistory.getArchiveStatus()))) {
-			// Persist that this batch is completed
-			batchHistory.setArchiveStatus(COMPLETED);
-			batchHistoryRepository.save(batchHistory);
-		} else {
-			// Send email when batch is not completed
-			messagingIntegration.sendStatusMail(archiveHistoriesRelatedToBatch, batchHistory.getId(), municipalityId);
+	/**
+	 * Harvests each partition in its own thread and returns when all partitions are done. All partitions report to the
+	 * same batch history, and claim documents in the same known document ids.
+	 */
+	private void harvestConcurrently(final List<TimeWindow> partitions, final BatchRun batchRun, final String municipalityId) {
+		final var batchHistory = batchRun.batchHistory();
+		LOG.info("Batch: {} is split into {} partitions", batchHistory.getId(), partitions.size());
+
+		try (final var executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("archiver-partition-", 0).factory())) {
+			final var futures = partitions.stream()
+				.map(partition -> executorService.submit(() -> harvest(partition, batchRun, municipalityId, false)))
+				.toList();
+
+			for (final var future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while harvesting partitions of batch " + batchHistory.getId(), e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof final RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Harvesting partition of batch " + batchHistory.getId() + " failed", e.getCause());
 		}
+	}
 
-		LOG.info("Batch with ID: {} is {}", batchHistory.getId(), batchHistory.getArchiveStatus());
-		LOG.info("Batch with ID: {} has {} archive histories", batchHistory.getId(), archiveHistoriesRelatedToBatch.size());
+	/**
+	 * Moves the high-water mark to the end of a completed batch, if the batch continues from the mark. Only a scheduled
+	 * batch sets the first mark, since a manual batch may be a backfill of an old period, and a scheduled batch starts
+	 * after the latest completed batch.
+	 */
+	private void advanceHighWaterMark(final LocalDateTime start, final LocalDateTime end, final BatchHistory batchHistory, final String municipalityId) {
+		final var highWaterMark = highWaterMarkRepository.findById(municipalityId)
+			.orElseGet(() -> HighWaterMark.builder().withMunicipalityId(municipalityId).build());
 
-		updateStatusOfOldBatchHistories(municipalityId);
+		final var processedUntil = highWaterMark.getProcessedUntil();
+		if ((processedUntil == null) ? SCHEDULED.equals(batchHistory.getBatchTrigger()) : (!start.isAfter(processedUntil) && end.isAfter(processedUntil))) {
+			LOG.info("High-water mark for municipality: {} is moved to: {}", municipalityId, end);
 
-		return batchHistory;
+			highWaterMark.setProcessedUntil(end);
+			highWaterMarkRepository.save(highWaterMark);
+		}
 	}
 
 	/**
@@ -129,13 +322,19 @@ public class ArchiveHistoryService {
 	 */
 	private void updateStatusOfOldBatchHistories(final String municipalityId) {
 		final var notCompletedBatchHistories = batchHistoryRepository.findBatchHistoriesByArchiveStatusAndMunicipalityId(NOT_COMPLETED, municipalityId);
+		if (notCompletedBatchHistories.isEmpty()) {
+			return;
+		}
+
+		// The archive histories of all the batches are counted at once, instead of loaded once per batch
+		final var statusCountsByBatchHistoryId = archiveHistoryRepository.countArchiveHistoriesByBatchHistoryIdInAndMunicipalityId(
+			notCompletedBatchHistories.stream().map(BatchHistory::getId).toList(), municipalityId).stream()
+			.collect(groupingBy(ArchiveStatusCount::batchHistoryId));
 
 		notCompletedBatchHistories.forEach(batchHistory -> {
-			final boolean allCompleted = archiveHistoryRepository.getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batchHistory.getId(), municipalityId)
-				.stream()
-				.allMatch(archiveHistory -> COMPLETED.equals(archiveHistory.getArchiveStatus()));
+			final var statusCounts = StatusCounts.of(statusCountsByBatchHistoryId.getOrDefault(batchHistory.getId(), List.of()));
 
-			if (allCompleted) {
+			if (statusCounts.allCompleted()) {
 				batchHistory.setArchiveStatus(COMPLETED);
 				batchHistoryRepository.save(batchHistory);
 
@@ -153,78 +352,307 @@ public class ArchiveHistoryService {
 		return LocalDateTime.now(ZoneId.systemDefault());
 	}
 
-	private void setLowerExclusiveBoundWithReturnedValue(final BatchFilter filter, final ArendeBatch arendeBatch) {
-		LOG.info("Last ArendeBatch start: {} end: {}", arendeBatch.getBatchStart(), arendeBatch.getBatchEnd());
-
-		if ((arendeBatch.getBatchEnd() == null)
-			|| arendeBatch.getBatchEnd().isEqual(filter.getLowerExclusiveBound())
-			|| arendeBatch.getBatchEnd().isBefore(filter.getLowerExclusiveBound())) {
-			final var plusOneHour = filter.getLowerExclusiveBound().plusHours(1);
-			filter.setLowerExclusiveBound(plusOneHour.isAfter(filter.getUpperInclusiveBound()) ? filter.getUpperInclusiveBound() : plusOneHour);
-		} else {
-			filter.setLowerExclusiveBound(arendeBatch.getBatchEnd().isAfter(filter.getUpperInclusiveBound()) ? filter.getUpperInclusiveBound() : arendeBatch.getBatchEnd());
+	private void archiveDocuments(final List<DocumentHandling> documentHandlings, final BatchHistory batchHistory, final String municipalityId) {
+		if (archivePipeline.isEnabled()) {
+			// Documents left in the pipeline when it fails give back their bytes when it has stopped, also those whose fetch
+			// failed before they were handed over
+			final var reservations = ConcurrentHashMap.<Reservation>newKeySet();
+			try {
+				archivePipeline.process(documentHandlings,
+					documentHandling -> fetchDocuments(documentHandling, batchHistory, municipalityId, reservations),
+					this::createArchiveRequests,
+					preparedDocuments -> uploadDocuments(preparedDocuments, municipalityId),
+					fetchedDocuments -> release(fetchedDocuments.dokumentList(), fetchedDocuments.reservation()),
+					preparedDocuments -> release(preparedDocuments.dokumentList(), preparedDocuments.reservation()));
+			} finally {
+				reservations.forEach(Reservation::close);
+			}
+			return;
 		}
+
+		archiveTaskExecutor.execute(municipalityId, documentHandlings.stream()
+			.<Runnable>map(documentHandling -> () -> archiveHandling(documentHandling, batchHistory, municipalityId))
+			.toList());
 	}
 
-	private AttachmentCategory getAttachmentCategory(final String handlingsTyp) {
+	private void archiveHandling(final DocumentHandling documentHandling, final BatchHistory batchHistory, final String municipalityId) {
 		try {
-			return AttachmentCategory.fromCode(handlingsTyp);
-		} catch (final IllegalArgumentException e) {
-			// All the "handlingstyper" we don't recognize, we set to AttachmentCategory.BIL, which
-			// means they get the archiveClassification D, which means that they are not public in
-			// the archive
-			return AttachmentCategory.BIL;
+			processHandlingList(documentHandling, batchHistory, municipalityId);
+		} catch (final ApplicationException e) {
+			LOG.error("Error when archiving document with ID: {} in combination with Case-ID: {}", documentHandling.handling().getDokument().getDokId(), documentHandling.arende().getDnr(), e);
+			reportFailed(documentHandling, batchHistory);
+		}
+	}
+
+	private void processHandlingList(final DocumentHandling documentHandling, final BatchHistory batchHistory, final String municipalityId) throws ApplicationException {
+		final var handling = documentHandling.handling();
+		final var newArchiveHistory = createArchiveHistory(documentHandling, batchHistory, municipalityId);
+		if (newArchiveHistory == null) {
+			return;
+		}
+
+		try (final var reservation = reserveBytes()) {
+			// Get documents from Byggr
+			final var fetchStarted = System.nanoTime();
+			final var dokumentList = arendeExportIntegration.getDocument(handling.getDokument().getDokId());
+			final var size = sizeOf(dokumentList);
+			reservation.resize(size);
+			reportStage(newArchiveHistory, Stage.FETCH, fetchStarted, size);
+
+			// Archive documents
+			try {
+				handleArchiving(dokumentList, documentHandling, newArchiveHistory, municipalityId);
+			} finally {
+				SpooledDokumentFil.closeAll(dokumentList);
+			}
 		}
 	}
 
-	private void processHandlingList(final HandelseHandling handling, final Arende2 arende, final BatchHistory batchHistory, final String municipalityId) throws ApplicationException {
-		final ArchiveHistory newArchiveHistory;
+	private void deleteNotCompletedArchiveHistories(final List<Arende2> closedCaseList, final BatchRun batchRun) {
+		if (closedCaseList.isEmpty()) {
+			return;
+		}
+
+		final var caseIds = closedCaseList.stream()
+			.map(Arende2::getDnr)
+			.collect(toSet());
+		deletedArchiveHistories.increment(archiveHistoryRepository.deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(caseIds, NOT_COMPLETED,
+			batchRun.batchHistory().getId(), batchRun.started()));
+	}
+
+	/**
+	 * Adds the ids of the documents that have an archive history to the known document ids of their cases. Only the cases
+	 * with documents that may be archived according to the filter of archived documents are looked up.
+	 */
+	private void loadKnownDocumentIds(final List<DocumentHandling> documentHandlings, final Map<String, Set<String>> knownDocumentIds, final String municipalityId) {
+		final var possiblyArchived = documentHandlings.stream()
+			.filter(documentHandling -> archivedDocumentFilter.mightBeArchived(documentHandling.arende().getDnr(), documentHandling.handling().getDokument().getDokId()))
+			.toList();
+		if (possiblyArchived.isEmpty()) {
+			return;
+		}
+
+		final var caseIds = possiblyArchived.stream()
+			.map(documentHandling -> documentHandling.arende().getDnr())
+			.collect(toSet());
+		archiveHistoryRepository.getArchivedDocumentsByCaseIdInAndMunicipalityId(caseIds, municipalityId)
+			.forEach(archivedDocument -> knownDocumentIds.computeIfAbsent(archivedDocument.caseId(), caseId -> ConcurrentHashMap.newKeySet()).add(archivedDocument.documentId()));
+
+		archivedDocumentFilter.falsePositives(possiblyArchived.stream()
+			.filter(documentHandling -> !knownDocumentIds.get(documentHandling.arende().getDnr()).contains(documentHandling.handling().getDokument().getDokId()))
+			.count());
+	}
+
+	/**
+	 * Creates and persists a NOT_COMPLETED archive history for the document.
+	 *
+	 * @return the new archive history, or null if the document is already archived
+	 */
+	private ArchiveHistory createArchiveHistory(final DocumentHandling documentHandling, final BatchHistory batchHistory, final String municipalityId) {
+		final var handling = documentHandling.handling();
+		final var arende = documentHandling.arende();
 		final var docId = handling.getDokument().getDokId();
-		final var oldArchiveHistory = archiveHistoryRepository.getArchiveHistoryByDocumentIdAndCaseIdAndMunicipalityId(docId, arende.getDnr(), municipalityId);
 
-		if (oldArchiveHistory.isPresent()) {
+		if (!documentHandling.caseContext().claimDocument(docId)) {
 			LOG.info("Document-ID: {} in combination with Case-ID: {} is already archived.", docId, arende.getDnr());
-			return;
+			return null;
 		}
 		LOG.info("Document-ID: {} in combination with Case-ID: {} does not exist in the db. Archive it..", docId, arende.getDnr());
-		newArchiveHistory = toArchiveHistory(handling, batchHistory, arende.getDnr(), getAttachmentCategory(handling.getTyp()), NOT_COMPLETED, municipalityId);
+		final var newArchiveHistory = toArchiveHistory(handling, batchHistory, arende.getDnr(), toAttachmentCategory(handling.getTyp()), NOT_COMPLETED, municipalityId);
 		archiveHistoryRepository.save(newArchiveHistory);
-		// Get documents from Byggr
-		final var dokumentList = arendeExportIntegration.getDocument(docId);
-
-		// Archive documents
-		handleArchiving(dokumentList, arende, handling, newArchiveHistory, municipalityId);
+		archivedDocumentFilter.add(arende.getDnr(), docId);
+		return newArchiveHistory;
 	}
 
-	private void handleArchiving(final List<generated.se.sundsvall.arendeexport.Dokument> dokumentList, final Arende2 arende, final HandelseHandling handling, final ArchiveHistory archiveHistory, final String municipalityId) throws ApplicationException {
+	private void handleArchiving(final List<Dokument> dokumentList, final DocumentHandling documentHandling, final ArchiveHistory archiveHistory, final String municipalityId) throws ApplicationException {
+		final var arende = documentHandling.arende();
+		final var handling = documentHandling.handling();
 
 		if (isArchived(archiveHistory)) {
-			LOG.info("ArchiveHistory already got a archive-ID. Set status to {}", COMPLETED);
-
-			archiveHistory.setArchiveStatus(COMPLETED);
-			archiveHistoryRepository.save(archiveHistory);
+			setCompleted(archiveHistory);
 			return;
 		}
 
 		for (final var dokument : dokumentList) {
-			LOG.info("Case-ID: {} Document name: {} Handlingstyp: {} Handling-ID: {} Document-ID: {}",
-				arende.getDnr(), dokument.getNamn(), handling.getTyp(),
-				handling.getHandlingId(), dokument.getDokId());
+			logDocument(arende, handling, dokument);
+
+			final var uploadStarted = System.nanoTime();
+			final var savedArchiveHistory = archiveAttachmentService.archiveAttachment(documentHandling.caseContext().caseMetadata(), handling, dokument, archiveHistory, municipalityId);
+			reportUploaded(savedArchiveHistory, documentHandling, uploadStarted, sizeOf(dokument));
+
+			sendEmailToLantmaterietIfGeo(savedArchiveHistory, documentHandling, municipalityId);
+		}
+	}
+
+	/**
+	 * Fetch stage of the archive pipeline.
+	 */
+	private FetchedDocuments fetchDocuments(final DocumentHandling documentHandling, final BatchHistory batchHistory, final String municipalityId, final Set<Reservation> reservations) {
+		final var archiveHistory = createArchiveHistory(documentHandling, batchHistory, municipalityId);
+		if (archiveHistory == null) {
+			return null;
+		}
+
+		final var reservation = reserveBytes();
+		reservations.add(reservation);
+
+		// Get documents from Byggr
+		final var fetchStarted = System.nanoTime();
+		final var dokumentList = arendeExportIntegration.getDocument(documentHandling.handling().getDokument().getDokId());
+		final var size = sizeOf(dokumentList);
+		reservation.resize(size);
+		reportStage(archiveHistory, Stage.FETCH, fetchStarted, size);
+
+		if (isArchived(archiveHistory)) {
+			release(dokumentList, reservation);
+			setCompleted(archiveHistory);
+			return null;
+		}
+
+		return new FetchedDocuments(documentHandling, archiveHistory, dokumentList, reservation);
+	}
+
+	/**
+	 * Transform stage of the archive pipeline.
+	 */
+	private PreparedDocuments createArchiveRequests(final FetchedDocuments fetchedDocuments) {
+		final var arende = fetchedDocuments.documentHandling().arende();
+		final var handling = fetchedDocuments.documentHandling().handling();
+		final var archiveRequests = new ArrayList<ArchiveRequest>();
+
+		try {
+			for (final var dokument : fetchedDocuments.dokumentList()) {
+				logDocument(arende, handling, dokument);
+
+				final var transformStarted = System.nanoTime();
+				archiveRequests.add(new ArchiveRequest(archiveAttachmentService.createArchiveRequest(fetchedDocuments.documentHandling().caseContext().caseMetadata(), handling, dokument), sizeOf(dokument)));
+				// Saved with the outcome of the upload
+				setFileInformation(fetchedDocuments.archiveHistory(), dokument);
+				reportStage(fetchedDocuments.archiveHistory(), Stage.TRANSFORM, transformStarted, sizeOf(dokument));
+			}
+		} catch (final ApplicationException e) {
+			LOG.error("Error when archiving document with ID: {} in combination with Case-ID: {}", handling.getDokument().getDokId(), arende.getDnr(), e);
+			reportFailed(fetchedDocuments.documentHandling(), fetchedDocuments.archiveHistory().getBatchHistory());
+			release(fetchedDocuments.dokumentList(), fetchedDocuments.reservation());
+			return null;
+		}
+
+		return new PreparedDocuments(fetchedDocuments.documentHandling(), fetchedDocuments.archiveHistory(), fetchedDocuments.dokumentList(), fetchedDocuments.reservation(), archiveRequests);
+	}
 
-			final var savedArchiveHistory = archiveAttachmentService.archiveAttachment(arende, handling, dokument, archiveHistory, municipalityId);
+	/**
+	 * Upload stage of the archive pipeline.
+	 */
+	private void uploadDocuments(final PreparedDocuments preparedDocuments, final String municipalityId) {
+		final var arende = preparedDocuments.documentHandling().arende();
+		final var handling = preparedDocuments.documentHandling().handling();
 
-			if (COMPLETED.equals(savedArchiveHistory.getArchiveStatus())
-				&& (savedArchiveHistory.getArchiveId() != null)
-				&& GEO.equals(getAttachmentCategory(handling.getTyp()))) {
-				// Send email to Lantmateriet with info about the archived attachment
-				final var arendeFastighetList = toArendeFastighetList(arende.getObjektLista().getAbstractArendeObjekt());
+		try {
+			for (final var archiveRequest : preparedDocuments.archiveRequests()) {
+				final var uploadStarted = System.nanoTime();
+				final var savedArchiveHistory = archiveAttachmentService.sendToArchive(archiveRequest.request(), preparedDocuments.archiveHistory(), municipalityId);
+				reportUploaded(savedArchiveHistory, preparedDocuments.documentHandling(), uploadStarted, archiveRequest.size());
 
-				messagingIntegration.sendEmailToLantmateriet(
-					fbIntegration.getFastighet(arendeFastighetList).getFastighetsbeteckning(), savedArchiveHistory, municipalityId);
+				sendEmailToLantmaterietIfGeo(savedArchiveHistory, preparedDocuments.documentHandling(), municipalityId);
 			}
+		} catch (final ApplicationException e) {
+			LOG.error("Error when archiving document with ID: {} in combination with Case-ID: {}", handling.getDokument().getDokId(), arende.getDnr(), e);
+			reportFailed(preparedDocuments.documentHandling(), preparedDocuments.archiveHistory().getBatchHistory());
+		} finally {
+			release(preparedDocuments.dokumentList(), preparedDocuments.reservation());
+		}
+	}
+
+	private void sendEmailToLantmaterietIfGeo(final ArchiveHistory savedArchiveHistory, final DocumentHandling documentHandling, final String municipalityId) throws ApplicationException {
+		if (COMPLETED.equals(savedArchiveHistory.getArchiveStatus())
+			&& (savedArchiveHistory.getArchiveId() != null)
+			&& GEO.equals(toAttachmentCategory(documentHandling.handling().getTyp()))) {
+			// Send email to Lantmateriet with info about the archived attachment, using the property resolved for the metadata
+			final var fastighet = documentHandling.caseContext().caseMetadata().fastighet();
+
+			messagingIntegration.sendEmailToLantmateriet(fastighet.getFastighetsbeteckning(), savedArchiveHistory, municipalityId);
+		}
+	}
+
+	private void setCompleted(final ArchiveHistory archiveHistory) {
+		LOG.info("ArchiveHistory already got a archive-ID. Set status to {}", COMPLETED);
+
+		archiveHistory.setArchiveStatus(COMPLETED);
+		archiveHistoryRepository.save(archiveHistory);
+		reportProgress(archiveHistory.getBatchHistory(), progress -> progress.documentArchived(0));
+	}
+
+	private void reportUploaded(final ArchiveHistory archiveHistory, final DocumentHandling documentHandling, final long uploadStarted, final long bytes) {
+		reportStage(archiveHistory, Stage.UPLOAD, uploadStarted, bytes);
+
+		if (COMPLETED.equals(archiveHistory.getArchiveStatus())) {
+			reportProgress(archiveHistory.getBatchHistory(), progress -> progress.documentArchived(bytes));
+		} else {
+			reportFailed(documentHandling, archiveHistory.getBatchHistory());
+		}
+	}
+
+	private void reportFailed(final DocumentHandling documentHandling, final BatchHistory batchHistory) {
+		documentHandling.pageFailed().set(true);
+		reportProgress(batchHistory, BatchProgress::documentFailed);
+	}
+
+	private void reportStage(final ArchiveHistory archiveHistory, final Stage stage, final long stageStarted, final long bytes) {
+		final var durationMillis = elapsedMillis(stageStarted);
+
+		reportProgress(archiveHistory.getBatchHistory(), progress -> progress.documentStagePassed(new DocumentEvent(progress.getBatchHistoryId(),
+			archiveHistory.getCaseId(), archiveHistory.getDocumentId(), stage, durationMillis, bytes, archiveHistory.getArchiveStatus())));
+	}
+
+	private void reportProgress(final BatchHistory batchHistory, final Consumer<BatchProgress> update) {
+		if (batchHistory != null) {
+			batchProgressRegistry.find(batchHistory.getId()).ifPresent(update);
 		}
 	}
 
+	/**
+	 * Deletes the spooled files of documents that have been archived or dropped, and gives back their bytes.
+	 */
+	private static void release(final List<Dokument> dokumentList, final Reservation reservation) {
+		SpooledDokumentFil.closeAll(dokumentList);
+		reservation.close();
+	}
+
+	private Reservation reserveBytes() {
+		try {
+			return byteBudget.reserve();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the byte budget", e);
+		}
+	}
+
+	private static long elapsedMillis(final long started) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+	}
+
+	private static long sizeOf(final List<Dokument> dokumentList) {
+		return dokumentList.stream()
+			.mapToLong(ArchiveHistoryService::sizeOf)
+			.sum();
+	}
+
+	private static long sizeOf(final Dokument dokument) {
+		if (dokument.getFil() instanceof final SpooledDokumentFil spooledDokumentFil) {
+			return spooledDokumentFil.size();
+		}
+		if ((dokument.getFil() == null) || (dokument.getFil().getFilBuffer() == null)) {
+			return 0;
+		}
+		return dokument.getFil().getFilBuffer().length;
+	}
+
+	private void logDocument(final Arende2 arende, final HandelseHandling handling, final Dokument dokument) {
+		LOG.info("Case-ID: {} Document name: {} Handlingstyp: {} Handling-ID: {} Document-ID: {}",
+			arende.getDnr(), dokument.getNamn(), handling.getTyp(),
+			handling.getHandlingId(), dokument.getDokId());
+	}
+
 	private boolean isArchived(final ArchiveHistory archiveHistory) {
 		return (archiveHistory != null) && (archiveHistory.getArchiveId() != null);
 	}
@@ -235,4 +663,95 @@ public class ArchiveHistoryService {
 			.map(ArchiverMapper::mapToArchiveHistoryResponse).toList();
 	}
 
+	/**
+	 * A run of a batch. The ids of the documents of each case that have an archive history are shared by all partitions
+	 * of the run.
+	 *
+	 * @param started when the run started, the archive histories that the run saves are newer
+	 */
+	private record BatchRun(BatchHistory batchHistory, LocalDateTime started, Map<String, Set<String>> knownDocumentIds) {}
+
+	/**
+	 * @param pageFailed shared by the documents of a page, set when one of them fails
+	 */
+	private record DocumentHandling(HandelseHandling handling, Arende2 arende, CaseContext caseContext, AtomicBoolean pageFailed) {}
+
+	/**
+	 * Creates the metadata of a case when the first of its documents is archived, and reuses it for the other documents of
+	 * the case, which may be archived at the same time. If creating the metadata fails, the next document tries again. Also
+	 * keeps track of which documents of the case have an archive history, so that a document is archived only once.
+	 */
+	private final class CaseContext {
+
+		private final Lock lock = new ReentrantLock();
+
+		private final Arende2 arende;
+
+		private final Set<String> knownDocumentIds;
+
+		private final PreloadedProperties preloadedProperties;
+
+		private CaseMetadata caseMetadata;
+
+		private CaseContext(final Arende2 arende, final Set<String> knownDocumentIds, final PreloadedProperties preloadedProperties) {
+			this.arende = arende;
+			this.knownDocumentIds = knownDocumentIds;
+			this.preloadedProperties = preloadedProperties;
+		}
+
+		/**
+		 * @return true if the document has no archive history and may be archived, false if it is already archived or is
+		 *         being archived
+		 */
+		private boolean claimDocument(final String documentId) {
+			return knownDocumentIds.add(documentId);
+		}
+
+		private CaseMetadata caseMetadata() throws ApplicationException {
+			// A lock rather than synchronized, since a virtual thread must not be pinned while FB is called
+			lock.lock();
+			try {
+				if (caseMetadata == null) {
+					caseMetadata = archiveAttachmentService.createCaseMetadata(arende, preloadedProperties);
+				}
+				return caseMetadata;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * The number of archive histories of a batch that are completed, and that are not.
+	 */
+	private record StatusCounts(long completed, long notCompleted) {
+
+		private static StatusCounts of(final List<ArchiveStatusCount> archiveStatusCounts) {
+			var completed = 0L;
+			var notCompleted = 0L;
+			for (final var archiveStatusCount : archiveStatusCounts) {
+				if (COMPLETED.equals(archiveStatusCount.archiveStatus())) {
+					completed += archiveStatusCount.count();
+				} else {
+					notCompleted += archiveStatusCount.count();
+				}
+			}
+			return new StatusCounts(completed, notCompleted);
+		}
+
+		private boolean allCompleted() {
+			return notCompleted == 0;
+		}
+
+		private long total() {
+			return completed + notCompleted;
+		}
+	}
+
+	private record FetchedDocuments(DocumentHandling documentHandling, ArchiveHistory archiveHistory, List<Dokument> dokumentList, Reservation reservation) {}
+
+	private record PreparedDocuments(DocumentHandling documentHandling, ArchiveHistory archiveHistory, List<Dokument> dokumentList, Reservation reservation, List<ArchiveRequest> archiveRequests) {}
+
+	private record ArchiveRequest(ByggRArchiveRequest request, long size) {}
+
 }
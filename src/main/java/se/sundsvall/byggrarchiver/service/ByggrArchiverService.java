@@ -4,20 +4,28 @@ import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.NOT_COMPLETED;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.createBatchHistory;
 import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.mapToBatchHistoryResponse;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.mapToBatchProgressResponse;
 
 import java.time.LocalDate;
-import java.util.Comparator;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.zalando.problem.Problem;
 import org.zalando.problem.Status;
 import se.sundsvall.byggrarchiver.api.model.BatchHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
 import se.sundsvall.byggrarchiver.integration.db.BatchHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.HighWaterMarkRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.HighWaterMark;
+import se.sundsvall.byggrarchiver.service.executor.BatchJobExecutor;
 import se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper;
+import se.sundsvall.byggrarchiver.service.progress.BatchEventEmitter;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgress;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgressRegistry;
 import se.sundsvall.dept44.common.validators.annotation.ValidMunicipalityId;
 
 @Service
@@ -29,10 +37,26 @@ public class ByggrArchiverService {
 
 	private final ArchiveHistoryService archiveHistoryService;
 
+	private final HighWaterMarkRepository highWaterMarkRepository;
+
+	private final BatchJobExecutor batchJobExecutor;
+
+	private final BatchProgressRegistry batchProgressRegistry;
+
+	private final ArchivingProperties.Jobs jobsProperties;
+
 	public ByggrArchiverService(final BatchHistoryRepository batchHistoryRepository,
-		final ArchiveHistoryService archiveHistoryService) {
+		final ArchiveHistoryService archiveHistoryService,
+		final HighWaterMarkRepository highWaterMarkRepository,
+		final BatchJobExecutor batchJobExecutor,
+		final BatchProgressRegistry batchProgressRegistry,
+		final ArchivingProperties archivingProperties) {
 		this.batchHistoryRepository = batchHistoryRepository;
 		this.archiveHistoryService = archiveHistoryService;
+		this.highWaterMarkRepository = highWaterMarkRepository;
+		this.batchJobExecutor = batchJobExecutor;
+		this.batchProgressRegistry = batchProgressRegistry;
+		this.jobsProperties = archivingProperties.jobs();
 	}
 
 	public BatchHistoryResponse runBatch(final LocalDate originalStart, final LocalDate end,
@@ -42,7 +66,12 @@ public class ByggrArchiverService {
 		var actualStart = originalStart;
 
 		if (batchTrigger.equals(BatchTrigger.SCHEDULED)) {
-			actualStart = getBatchStartOfScheduledJob(originalStart, end);
+			final var highWaterMark = highWaterMarkRepository.findById(municipalityId);
+			if (highWaterMark.isPresent()) {
+				return mapToBatchHistoryResponse(runScheduledBatchFromHighWaterMark(highWaterMark.get(), end, municipalityId));
+			}
+
+			actualStart = getBatchStartOfScheduledJob(originalStart, end, municipalityId);
 		}
 		// If actualStart is null, we don't need to run the batch again and we return null.
 		BatchHistory result = null;
@@ -57,9 +86,111 @@ public class ByggrArchiverService {
 		return mapToBatchHistoryResponse(result);
 	}
 
+	/**
+	 * Starts a manual batch in the background and returns as soon as the batch history is persisted.
+	 */
+	public BatchHistoryResponse startBatch(final LocalDate start, final LocalDate end, final String municipalityId) {
+		LOG.info("Batch with BatchTrigger: {} was started in the background with start: {} and end: {}", BatchTrigger.MANUAL, start, end);
+
+		// Persist the start of this batch
+		final var batchHistory = createBatchHistory(start, end, BatchTrigger.MANUAL, NOT_COMPLETED, municipalityId);
+		batchHistoryRepository.save(batchHistory);
+		// Do the archiving
+		batchJobExecutor.submit(batchHistory.getId(), () -> archiveHistoryService.archive(start, end, batchHistory, municipalityId));
+
+		return mapToBatchHistoryResponse(batchHistory);
+	}
+
+	/**
+	 * Runs a scheduled batch for the changes in ByggR after the high-water mark, instead of the whole scheduled period.
+	 */
+	private BatchHistory runScheduledBatchFromHighWaterMark(final HighWaterMark highWaterMark, final LocalDate end, final String municipalityId) {
+		final var processedUntil = highWaterMark.getProcessedUntil();
+
+		if (!end.atTime(23, 59, 59).isAfter(processedUntil)) {
+			LOG.info("Changes up to {} are already processed, which covers this batch end-date({}). Cancelling this batch...", processedUntil, end);
+			return null;
+		}
+
+		LOG.info("Running scheduled batch from high-water mark: {}", processedUntil);
+
+		// Persist the start of this batch, where the start-date is the day of the high-water mark
+		final var batchHistory = createBatchHistory(processedUntil.toLocalDate(), end, BatchTrigger.SCHEDULED, NOT_COMPLETED, municipalityId);
+		batchHistory.setStartAfter(processedUntil);
+		batchHistoryRepository.save(batchHistory);
+		// Do the archiving
+		return archiveHistoryService.archiveAfter(processedUntil, end, batchHistory, municipalityId);
+	}
+
 	public BatchHistoryResponse reRunBatch(final Long batchHistoryId, final String municipalityId) {
 		LOG.info("Rerun was started with batchHistoryId: {}", batchHistoryId);
 
+		final var batchHistory = getBatchHistoryToReRun(batchHistoryId);
+		final var progress = claimBatch(batchHistoryId);
+		try {
+			return mapToBatchHistoryResponse(reRun(batchHistory, municipalityId));
+		} finally {
+			batchProgressRegistry.finish(progress);
+		}
+	}
+
+	/**
+	 * Starts a rerun of a batch in the background and returns as soon as the batch is found to be possible to rerun.
+	 */
+	public BatchHistoryResponse startReRunBatch(final Long batchHistoryId, final String municipalityId) {
+		LOG.info("Rerun was started in the background with batchHistoryId: {}", batchHistoryId);
+
+		final var batchHistory = getBatchHistoryToReRun(batchHistoryId);
+		// Claimed before the job is submitted, so that a second rerun of the batch is refused until this one has finished
+		final var progress = claimBatch(batchHistoryId);
+		try {
+			batchJobExecutor.submit(batchHistoryId, () -> {
+				try {
+					reRun(batchHistory, municipalityId);
+				} finally {
+					batchProgressRegistry.finish(progress);
+				}
+			});
+		} catch (final RuntimeException e) {
+			batchProgressRegistry.finish(progress);
+			throw e;
+		}
+
+		return mapToBatchHistoryResponse(batchHistory);
+	}
+
+	/**
+	 * Returns a batch, with the progress of the latest run if it has been run since the service was started.
+	 */
+	public BatchHistoryResponse getBatchHistory(final Long batchHistoryId, final String municipalityId) {
+		final var response = mapToBatchHistoryResponse(getMunicipalityBatchHistory(batchHistoryId, municipalityId));
+		batchProgressRegistry.find(batchHistoryId)
+			.ifPresent(progress -> response.setProgress(mapToBatchProgressResponse(progress)));
+
+		return response;
+	}
+
+	/**
+	 * Streams the progress events of a batch until it has finished. A batch that is not running gets a stream with just
+	 * the "finished" event, or an empty stream if it has not been run since the service was started.
+	 */
+	public SseEmitter streamBatchEvents(final Long batchHistoryId, final String municipalityId) {
+		getMunicipalityBatchHistory(batchHistoryId, municipalityId);
+
+		final var emitter = new BatchEventEmitter(jobsProperties.eventStreamTimeout());
+		batchProgressRegistry.find(batchHistoryId)
+			.ifPresentOrElse(emitter::listenTo, emitter::complete);
+
+		return emitter;
+	}
+
+	private BatchHistory getMunicipalityBatchHistory(final Long batchHistoryId, final String municipalityId) {
+		return batchHistoryRepository.findById(batchHistoryId)
+			.filter(history -> municipalityId.equals(history.getMunicipalityId()))
+			.orElseThrow(() -> Problem.valueOf(Status.NOT_FOUND, "BatchHistory not found"));
+	}
+
+	private BatchHistory getBatchHistoryToReRun(final Long batchHistoryId) {
 		final var batchHistory = batchHistoryRepository.findById(batchHistoryId)
 			.orElseThrow(() -> Problem.valueOf(Status.NOT_FOUND, "BatchHistory not found"));
 
@@ -67,40 +198,41 @@ public class ByggrArchiverService {
 			throw Problem.valueOf(Status.BAD_REQUEST, "It's not possible to rerun a completed batch.");
 		}
 
-		LOG.info("Rerun batch: {}", batchHistory);
-
-		// Do the archiving
-		return mapToBatchHistoryResponse(archiveHistoryService.archive(batchHistory.getStart(), batchHistory.getEnd(), batchHistory, municipalityId));
+		return batchHistory;
 	}
 
-	private BatchHistory getLatestCompletedBatch() {
-		var batchHistoryList = batchHistoryRepository.findAll();
+	/**
+	 * Claims a batch that is about to be rerun. The claim is released when the progress of the rerun is finished.
+	 */
+	private BatchProgress claimBatch(final Long batchHistoryId) {
+		return batchProgressRegistry.claim(batchHistoryId)
+			.orElseThrow(() -> Problem.valueOf(Status.CONFLICT, "It's not possible to rerun a batch that is running."));
+	}
 
-		// Filter completed batches
-		batchHistoryList = batchHistoryList.stream()
-			.filter(b -> b.getArchiveStatus().equals(COMPLETED))
-			.toList();
+	private BatchHistory reRun(final BatchHistory batchHistory, final String municipalityId) {
+		LOG.info("Rerun batch: {}", batchHistory);
 
-		// Sort by end-date of batch
-		batchHistoryList = batchHistoryList.stream()
-			.sorted(Comparator.comparing(BatchHistory::getEnd, Comparator.reverseOrder()))
-			.toList();
+		// Continue from the checkpoint if the batch was interrupted
+		if (batchHistory.getCheckpoint() != null) {
+			LOG.info("Rerun batch from checkpoint: {}", batchHistory.getCheckpoint());
+			return archiveHistoryService.archiveAfter(batchHistory.getCheckpoint(), batchHistory.getEnd(), batchHistory, municipalityId);
+		}
 
-		// Get the latest batch
-		return batchHistoryList.stream()
-			.findFirst()
-			.map(latestBatch -> {
-				LOG.info("The latest batch: {}", latestBatch);
+		// Start from the high-water mark that the batch was started from, rather than from the start of its start-date
+		if (batchHistory.getStartAfter() != null) {
+			return archiveHistoryService.archiveAfter(batchHistory.getStartAfter(), batchHistory.getEnd(), batchHistory, municipalityId);
+		}
 
-				return latestBatch;
-			})
-			.orElse(null);
+		// Do the archiving
+		return archiveHistoryService.archive(batchHistory.getStart(), batchHistory.getEnd(), batchHistory, municipalityId);
 	}
 
-	private LocalDate getBatchStartOfScheduledJob(LocalDate start, final LocalDate end) {
-		final var latestBatch = getLatestCompletedBatch();
+	private LocalDate getBatchStartOfScheduledJob(LocalDate start, final LocalDate end, final String municipalityId) {
+		final var latestBatch = batchHistoryRepository.findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(COMPLETED, municipalityId).orElse(null);
 
 		if (latestBatch != null) {
+			LOG.info("The latest batch: {}", latestBatch);
+
 			// If this batch end-date is not after the latest batch end date, we don't need to run it again
 			if (!end.isAfter(latestBatch.getEnd())) {
 				LOG.info("This batch does not have a later end-date({}) than the latest batch ({}). Cancelling this batch...", end, latestBatch.getEnd());
@@ -0,0 +1,120 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import static java.util.Optional.ofNullable;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+/**
+ * Runs the archiving tasks of a batch, either one by one in the calling thread or concurrently with a bounded number of
+ * tasks in flight per municipality.
+ */
+@Component
+public class ArchiveTaskExecutor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArchiveTaskExecutor.class);
+
+	private final ArchivingProperties.Concurrency properties;
+
+	private final ExecutorService executorService;
+
+	private final Map<String, Semaphore> municipalityPermits = new ConcurrentHashMap<>();
+
+	public ArchiveTaskExecutor(final ArchivingProperties archivingProperties) {
+		this.properties = archivingProperties.concurrency();
+		this.executorService = properties.enabled() ? createExecutorService(properties) : null;
+
+		if (executorService == null) {
+			LOG.info("Concurrent archiving is DISABLED");
+		} else {
+			LOG.info("Concurrent archiving is ENABLED, using {} executor", properties.executorType());
+		}
+	}
+
+	/**
+	 * Runs all tasks and returns when every task has finished. If a task fails with a runtime exception no more tasks are
+	 * started, and the exception is rethrown when the tasks already in flight have finished.
+	 *
+	 * @param municipalityId the municipality that the tasks belong to
+	 * @param tasks          the tasks to run
+	 */
+	public void execute(final String municipalityId, final List<Runnable> tasks) {
+		if ((executorService == null) || (tasks.size() < 2)) {
+			tasks.forEach(Runnable::run);
+			return;
+		}
+
+		final var permits = municipalityPermits.computeIfAbsent(municipalityId, id -> new Semaphore(properties.limitFor(id), true));
+		final var failure = new AtomicReference<RuntimeException>();
+		final var futures = new ArrayList<Future<?>>(tasks.size());
+
+		try {
+			for (final var task : tasks) {
+				permits.acquire();
+				if (failure.get() != null) {
+					permits.release();
+					break;
+				}
+
+				futures.add(executorService.submit(() -> runWithPermit(task, permits, failure)));
+			}
+			awaitAll(futures);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(future -> future.cancel(true));
+			throw new IllegalStateException("Interrupted while archiving documents for municipality " + municipalityId, e);
+		}
+
+		ofNullable(failure.get()).ifPresent(e -> {
+			throw e;
+		});
+	}
+
+	@PreDestroy
+	void shutdown() {
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+	}
+
+	private void runWithPermit(final Runnable task, final Semaphore permits, final AtomicReference<RuntimeException> failure) {
+		try {
+			task.run();
+		} catch (final RuntimeException e) {
+			failure.compareAndSet(null, e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void awaitAll(final List<Future<?>> futures) throws InterruptedException {
+		for (final var future : futures) {
+			try {
+				future.get();
+			} catch (final ExecutionException e) {
+				// Runtime exceptions are collected by the task itself, this only happens on errors
+				throw new IllegalStateException("Archiving task failed", e.getCause());
+			}
+		}
+	}
+
+	private static ExecutorService createExecutorService(final ArchivingProperties.Concurrency properties) {
+		return switch (properties.executorType()) {
+			case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("archiver-", 0).factory());
+			case POOLED -> Executors.newFixedThreadPool(properties.poolSize(), Thread.ofPlatform().name("archiver-", 0).factory());
+		};
+	}
+}
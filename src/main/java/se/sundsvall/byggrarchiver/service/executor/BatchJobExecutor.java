@@ -0,0 +1,46 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+/**
+ * Runs batch jobs started through the API in the background, on threads of their own, so that a long batch doesn't
+ * hold on to a request thread.
+ */
+@Component
+public class BatchJobExecutor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchJobExecutor.class);
+
+	private final ExecutorService executorService;
+
+	public BatchJobExecutor(final ArchivingProperties archivingProperties) {
+		this.executorService = Executors.newFixedThreadPool(archivingProperties.jobs().poolSize(), Thread.ofPlatform().name("batch-job-", 0).factory());
+	}
+
+	/**
+	 * Starts a batch job. Failures are logged, since there is no caller left to report them to.
+	 *
+	 * @param batchHistoryId id of the batch that the job runs
+	 * @param job            the job
+	 */
+	public void submit(final Long batchHistoryId, final Runnable job) {
+		executorService.execute(() -> {
+			try {
+				job.run();
+			} catch (final RuntimeException e) {
+				LOG.error("Batch job for batch with ID: {} failed", batchHistoryId, e);
+			}
+		});
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executorService.shutdown();
+	}
+}
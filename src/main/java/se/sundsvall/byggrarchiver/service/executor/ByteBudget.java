@@ -0,0 +1,168 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+/**
+ * Bounds the number of bytes of documents that are being archived at the same time, across all batches. A document
+ * reserves an estimated size before it is fetched, waiting while the budget is used up, and the reservation is resized
+ * to the actual size when the document has been fetched. Since the document has been fetched by then, growing a
+ * reservation never waits, but may take the budget over its max so that the next documents wait longer.
+ *
+ * A reservation is always admitted when nothing else is reserved, so that a document larger than the budget can still
+ * be archived on its own.
+ */
+@Component
+public class ByteBudget {
+
+	static final String USED_METRIC = "archiver.byte.budget.used";
+
+	static final String MAX_METRIC = "archiver.byte.budget.max";
+
+	static final String WAIT_METRIC = "archiver.byte.budget.wait";
+
+	private static final Logger LOG = LoggerFactory.getLogger(ByteBudget.class);
+
+	private final ArchivingProperties.ByteBudget properties;
+
+	private final long maxInFlight;
+
+	private final Lock lock = new ReentrantLock();
+
+	private final Condition released = lock.newCondition();
+
+	// Guarded by lock, atomic to be read by the gauge
+	private final AtomicLong used = new AtomicLong();
+
+	private final Timer waitTimer;
+
+	public ByteBudget(final ArchivingProperties archivingProperties, final MeterRegistry meterRegistry) {
+		this.properties = archivingProperties.byteBudget();
+		this.maxInFlight = properties.maxInFlight().toBytes();
+
+		if (properties.enabled()) {
+			Gauge.builder(USED_METRIC, used, AtomicLong::get)
+				.description("Bytes of documents being archived")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+			Gauge.builder(MAX_METRIC, () -> maxInFlight)
+				.description("Max bytes of documents being archived at the same time")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+			this.waitTimer = Timer.builder(WAIT_METRIC)
+				.description("Time documents wait for the byte budget")
+				.register(meterRegistry);
+
+			LOG.info("Byte budget is ENABLED, with {} bytes in flight", maxInFlight);
+		} else {
+			this.waitTimer = null;
+		}
+	}
+
+	/**
+	 * Reserves the size of a document that has not been fetched yet, waiting while the budget is used up.
+	 *
+	 * @return the reservation, to be resized when the document has been fetched and closed when it is archived
+	 */
+	public Reservation reserve() throws InterruptedException {
+		return reserve(properties.reservedPerDocument().toBytes());
+	}
+
+	Reservation reserve(final long bytes) throws InterruptedException {
+		if (!properties.enabled()) {
+			return new Reservation(0);
+		}
+
+		final var started = System.nanoTime();
+		lock.lock();
+		try {
+			while ((used.get() > 0) && ((used.get() + bytes) > maxInFlight)) {
+				released.await();
+			}
+			used.addAndGet(bytes);
+		} finally {
+			lock.unlock();
+		}
+		waitTimer.record(System.nanoTime() - started, NANOSECONDS);
+
+		return new Reservation(bytes);
+	}
+
+	long used() {
+		return used.get();
+	}
+
+	private void change(final long bytes) {
+		lock.lock();
+		try {
+			used.addAndGet(bytes);
+			if (bytes < 0) {
+				released.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Bytes reserved for a document. Closing a reservation more than once has no effect.
+	 */
+	public final class Reservation implements AutoCloseable {
+
+		// Guarded by the lock of the budget
+		private long bytes;
+
+		private boolean closed;
+
+		private Reservation(final long bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Changes the reservation to the actual size of the document, without waiting.
+		 */
+		public void resize(final long newBytes) {
+			if (!properties.enabled()) {
+				return;
+			}
+
+			lock.lock();
+			try {
+				if (!closed) {
+					change(Math.max(0, newBytes) - bytes);
+					bytes = Math.max(0, newBytes);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!properties.enabled()) {
+				return;
+			}
+
+			lock.lock();
+			try {
+				if (!closed) {
+					closed = true;
+					change(-bytes);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package se.sundsvall.byggrarchiver.service.filetype;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Signatures of the file formats that are archived the most, matched against the header of a document. Formats that
+ * share a signature, like the OLE2 formats of older Office documents, are left to jmimemagic.
+ */
+enum FileSignature {
+
+	PDF("pdf", "%PDF-"),
+	PNG("png", new byte[] {
+		(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a
+	}),
+	JPG("jpg", new byte[] {
+		(byte) 0xff, (byte) 0xd8, (byte) 0xff
+	}),
+	GIF_87A("gif", "GIF87a"),
+	GIF_89A("gif", "GIF89a"),
+	TIF_LITTLE_ENDIAN("tif", new byte[] {
+		'I', 'I', 42, 0
+	}),
+	TIF_BIG_ENDIAN("tif", new byte[] {
+		'M', 'M', 0, 42
+	}),
+	// AC1012 to AC1032, the versions of AutoCAD since R13
+	DWG("dwg", "AC10"),
+	RTF("rtf", "{\\rtf"),
+	// Office Open XML documents are zip files, told apart by the folder of their main part, which is one of the first
+	// entries of the file
+	DOCX("docx", Constants.ZIP, "word/"),
+	PPTX("pptx", Constants.ZIP, "ppt/"),
+	XLSX("xlsx", Constants.ZIP, "xl/");
+
+	private final String extension;
+
+	private final byte[] magic;
+
+	private final byte[] marker;
+
+	FileSignature(final String extension, final String magic) {
+		this(extension, magic.getBytes(US_ASCII));
+	}
+
+	FileSignature(final String extension, final byte[] magic) {
+		this(extension, magic, null);
+	}
+
+	FileSignature(final String extension, final byte[] magic, final String marker) {
+		this.extension = extension;
+		this.magic = magic;
+		this.marker = (marker != null) ? marker.getBytes(US_ASCII) : null;
+	}
+
+	String extension() {
+		return extension;
+	}
+
+	/**
+	 * @param  header the first bytes of a document
+	 * @return        the first signature that the header matches, or empty if none does
+	 */
+	static Optional<FileSignature> match(final byte[] header) {
+		for (final var signature : values()) {
+			if (signature.matches(header)) {
+				return Optional.of(signature);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private boolean matches(final byte[] header) {
+		if ((header.length < magic.length) || !Arrays.equals(header, 0, magic.length, magic, 0, magic.length)) {
+			return false;
+		}
+		return (marker == null) || (indexOf(header, marker) >= 0);
+	}
+
+	private static int indexOf(final byte[] bytes, final byte[] part) {
+		for (var i = 0; i <= (bytes.length - part.length); i++) {
+			if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// Enum constants can't refer to static fields of their own enum
+	private static final class Constants {
+
+		private static final byte[] ZIP = {
+			'P', 'K', 3, 4
+		};
+	}
+}
@@ -0,0 +1,113 @@
+package se.sundsvall.byggrarchiver.service.filetype;
+
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.DokumentFil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Arrays;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.integration.arendeexport.SpooledDokumentFil;
+import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+import se.sundsvall.byggrarchiver.util.Util;
+
+/**
+ * Detects the extension of documents that ByggR has no extension for, from the first bytes of their content. The header
+ * is matched against the signatures of the formats that are archived the most, and only when none matches is it handed
+ * to jmimemagic, which is slow and synchronized. The detected extension is set on the file of the document, so that the
+ * metadata and the attachment of the document share it.
+ */
+@Component
+public class FileTypeDetector {
+
+	static final String DETECTION_METRIC = "archiver.file.type.detections";
+
+	static final String SOURCE_SIGNATURE = "signature";
+
+	static final String SOURCE_MAGIC = "magic";
+
+	static final String SOURCE_NONE = "none";
+
+	// Enough for the signatures, and for the rules of jmimemagic that are likely to match documents from ByggR
+	static final int HEADER_SIZE = 8 * 1024;
+
+	private final MeterRegistry meterRegistry;
+
+	public FileTypeDetector(final MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Sets the extension of the file of the document, unless it already has one.
+	 *
+	 * @throws ApplicationException if the extension can't be detected
+	 */
+	public void detectExtension(final Dokument dokument) throws ApplicationException {
+		final var fil = dokument.getFil();
+		if ((fil == null) || (fil.getFilAndelse() != null)) {
+			return;
+		}
+
+		final var detection = detect(fil);
+		detectionCounter(detection.extension(), detection.source()).increment();
+		if (detection.extension() == null) {
+			throw detection.exception();
+		}
+		fil.setFilAndelse(detection.extension());
+	}
+
+	/**
+	 * Guesses the extension of a file, without publishing metrics. Prefer {@link #detectExtension(Dokument)}.
+	 *
+	 * @throws ApplicationException if the extension can't be guessed
+	 */
+	public static String guessExtension(final DokumentFil fil) throws ApplicationException {
+		final var detection = detect(fil);
+		if (detection.extension() == null) {
+			throw detection.exception();
+		}
+		return detection.extension();
+	}
+
+	private static Detection detect(final DokumentFil fil) throws ApplicationException {
+		final var header = readHeader(fil);
+
+		final var signature = FileSignature.match(header);
+		if (signature.isPresent()) {
+			return new Detection(signature.get().extension(), SOURCE_SIGNATURE, null);
+		}
+
+		try {
+			return new Detection(Util.getExtensionFromByteArray(header), SOURCE_MAGIC, null);
+		} catch (final ApplicationException e) {
+			return new Detection(null, SOURCE_NONE, e);
+		}
+	}
+
+	static byte[] readHeader(final DokumentFil fil) throws ApplicationException {
+		if (fil instanceof final SpooledDokumentFil spooledDokumentFil) {
+			try {
+				return spooledDokumentFil.readHeader(HEADER_SIZE);
+			} catch (final IOException e) {
+				throw new ApplicationException("Could not read the spooled file of the document", e);
+			}
+		}
+
+		final var filBuffer = fil.getFilBuffer();
+		if (filBuffer == null) {
+			return new byte[0];
+		}
+		return (filBuffer.length <= HEADER_SIZE) ? filBuffer : Arrays.copyOf(filBuffer, HEADER_SIZE);
+	}
+
+	private Counter detectionCounter(final String extension, final String source) {
+		// Registered once per tags, and looked up by the registry after that
+		return Counter.builder(DETECTION_METRIC)
+			.description("Number of documents whose extension has been detected from their content")
+			.tag("extension", (extension != null) ? extension.toLowerCase() : "unknown")
+			.tag("source", source)
+			.register(meterRegistry);
+	}
+
+	private record Detection(String extension, String source, ApplicationException exception) {}
+}
@@ -0,0 +1,170 @@
+package se.sundsvall.byggrarchiver.service.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
+
+/**
+ * In-memory filter of the documents that have an archive history, used to find out that a document is not archived
+ * without asking the database. The filter is loaded from archive_history in the background when the application has
+ * started, and documents are added when their archive history is created. Since other instances may archive documents
+ * too, the filter is refreshed with recently saved archive histories at the start of each batch.
+ *
+ * Until the filter is loaded, and when it is disabled, every document may be archived.
+ */
+@Component
+public class ArchivedDocumentFilter {
+
+	static final String LOOKUP_METRIC = "archiver.archived.filter.lookups";
+
+	static final String SIZE_METRIC = "archiver.archived.filter.size";
+
+	static final String DOCUMENTS_METRIC = "archiver.archived.filter.documents";
+
+	static final String FALSE_POSITIVE_PROBABILITY_METRIC = "archiver.archived.filter.false.positive.probability";
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArchivedDocumentFilter.class);
+
+	private final ArchivingProperties.ArchivedFilter properties;
+
+	private final ArchiveHistoryRepository archiveHistoryRepository;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final BloomFilter bloomFilter;
+
+	private final Lock refreshLock = new ReentrantLock();
+
+	private final Counter negatives;
+
+	private final Counter positives;
+
+	private final Counter falsePositives;
+
+	private volatile boolean loaded;
+
+	// When the last refresh started, guarded by refreshLock
+	private LocalDateTime refreshedAt;
+
+	public ArchivedDocumentFilter(final ArchivingProperties archivingProperties, final ArchiveHistoryRepository archiveHistoryRepository,
+		final TransactionTemplate transactionTemplate, final MeterRegistry meterRegistry) {
+		this.properties = archivingProperties.archivedFilter();
+		this.archiveHistoryRepository = archiveHistoryRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.bloomFilter = properties.enabled() ? new BloomFilter(properties.expectedDocuments(), properties.falsePositiveProbability()) : null;
+		this.negatives = lookupCounter("negative", meterRegistry);
+		this.positives = lookupCounter("positive", meterRegistry);
+		this.falsePositives = lookupCounter("false_positive", meterRegistry);
+
+		if (bloomFilter != null) {
+			Gauge.builder(SIZE_METRIC, bloomFilter, BloomFilter::sizeInBytes)
+				.description("Memory used by the filter of archived documents")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+			Gauge.builder(DOCUMENTS_METRIC, bloomFilter, BloomFilter::insertions)
+				.description("Number of documents in the filter of archived documents")
+				.register(meterRegistry);
+			Gauge.builder(FALSE_POSITIVE_PROBABILITY_METRIC, bloomFilter, BloomFilter::expectedFalsePositiveProbability)
+				.description("Expected probability that a document that is not archived passes the filter of archived documents")
+				.register(meterRegistry);
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		if (bloomFilter != null) {
+			Thread.ofVirtual().name("archived-document-filter").start(this::refresh);
+		}
+	}
+
+	/**
+	 * Loads the filter from archive_history, the first time in full and then with the archive histories saved since the
+	 * last refresh. A refresh that fails leaves the filter as it was.
+	 */
+	public void refresh() {
+		if (bloomFilter == null) {
+			return;
+		}
+
+		refreshLock.lock();
+		try {
+			final var started = LocalDateTime.now(ZoneId.systemDefault());
+			final var since = (refreshedAt != null) ? refreshedAt.minus(properties.refreshOverlap()) : null;
+			final var count = transactionTemplate.execute(status -> {
+				try (final var archivedDocuments = (since != null)
+					? archiveHistoryRepository.streamArchivedDocumentsByTimestampGreaterThanEqual(since)
+					: archiveHistoryRepository.streamArchivedDocumentsBy()) {
+					var loadedDocuments = 0L;
+					for (final var iterator = archivedDocuments.iterator(); iterator.hasNext();) {
+						final var archivedDocument = iterator.next();
+						bloomFilter.put(archivedDocument.caseId(), archivedDocument.documentId());
+						loadedDocuments++;
+					}
+					return loadedDocuments;
+				}
+			});
+
+			refreshedAt = started;
+			loaded = true;
+			LOG.info("Filter of archived documents {} with {} archive histories", (since != null) ? "refreshed" : "loaded", count);
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to refresh the filter of archived documents", e);
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * @return false if the document certainly has no archive history, true if it may have one
+	 */
+	public boolean mightBeArchived(final String caseId, final String documentId) {
+		if (!loaded) {
+			return true;
+		}
+
+		final var mightBeArchived = bloomFilter.mightContain(caseId, documentId);
+		(mightBeArchived ? positives : negatives).increment();
+		return mightBeArchived;
+	}
+
+	/**
+	 * Adds a document whose archive history has been saved.
+	 */
+	public void add(final String caseId, final String documentId) {
+		if (bloomFilter != null) {
+			bloomFilter.put(caseId, documentId);
+		}
+	}
+
+	/**
+	 * Records documents that passed the filter, but turned out to have no archive history.
+	 */
+	public void falsePositives(final long count) {
+		if (loaded) {
+			falsePositives.increment(count);
+		}
+	}
+
+	boolean isLoaded() {
+		return loaded;
+	}
+
+	private static Counter lookupCounter(final String result, final MeterRegistry meterRegistry) {
+		return Counter.builder(LOOKUP_METRIC)
+			.description("Number of documents looked up in the filter of archived documents")
+			.tag("result", result)
+			.register(meterRegistry);
+	}
+}
@@ -0,0 +1,122 @@
+package se.sundsvall.byggrarchiver.service.filter;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.pow;
+import static java.lang.Math.toIntExact;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of (case id, document id) pairs. A pair that has been put is always reported as possibly contained,
+ * while a pair that has not been put is reported as possibly contained with the false positive probability. Pairs can
+ * be put and looked up by several threads at the same time.
+ */
+final class BloomFilter {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final AtomicLongArray words;
+
+	private final long bitSize;
+
+	private final int hashFunctions;
+
+	private final LongAdder insertions = new LongAdder();
+
+	/**
+	 * @param expectedInsertions       number of pairs the filter is sized for
+	 * @param falsePositiveProbability wanted false positive probability when the expected number of pairs have been put
+	 */
+	BloomFilter(final long expectedInsertions, final double falsePositiveProbability) {
+		final var optimalBits = (long) Math.ceil(-expectedInsertions * log(falsePositiveProbability) / (log(2) * log(2)));
+		this.words = new AtomicLongArray(toIntExact(max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE)));
+		this.bitSize = (long) words.length() * Long.SIZE;
+		this.hashFunctions = max(1, (int) Math.round((double) bitSize / expectedInsertions * log(2)));
+	}
+
+	void put(final String caseId, final String documentId) {
+		final var hash1 = hash(caseId, documentId);
+		final var hash2 = step(hash1);
+
+		var changed = false;
+		for (var i = 0; i < hashFunctions; i++) {
+			final var bit = Math.floorMod(hash1 + (i * hash2), bitSize);
+			final var mask = 1L << bit;
+			final var previous = words.getAndAccumulate((int) (bit >>> 6), mask, (word, bitMask) -> word | bitMask);
+			changed |= (previous & mask) == 0;
+		}
+
+		// A pair that sets no new bit is counted as put already
+		if (changed) {
+			insertions.increment();
+		}
+	}
+
+	boolean mightContain(final String caseId, final String documentId) {
+		final var hash1 = hash(caseId, documentId);
+		final var hash2 = step(hash1);
+
+		for (var i = 0; i < hashFunctions; i++) {
+			final var bit = Math.floorMod(hash1 + (i * hash2), bitSize);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	long sizeInBytes() {
+		return (long) words.length() * Long.BYTES;
+	}
+
+	long insertions() {
+		return insertions.sum();
+	}
+
+	/**
+	 * @return the probability that a pair that has not been put is reported as possibly contained, given the number of
+	 *         pairs put so far
+	 */
+	double expectedFalsePositiveProbability() {
+		return pow(1 - exp(-hashFunctions * (double) insertions() / bitSize), hashFunctions);
+	}
+
+	int hashFunctions() {
+		return hashFunctions;
+	}
+
+	// FNV-1a over both ids, separated so that ("ab", "c") and ("a", "bc") differ, and then mixed
+	private static long hash(final String caseId, final String documentId) {
+		var hash = FNV_OFFSET_BASIS;
+		hash = fnv(hash, String.valueOf(caseId));
+		hash = (hash ^ 0xff) * FNV_PRIME;
+		hash = fnv(hash, String.valueOf(documentId));
+		return mix(hash);
+	}
+
+	private static long fnv(final long hash, final String value) {
+		var result = hash;
+		for (var i = 0; i < value.length(); i++) {
+			result = (result ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return result;
+	}
+
+	// The distance between the bits of a pair, which is never zero
+	private static long step(final long hash1) {
+		return mix(hash1) | 1;
+	}
+
+	// The finalizer of SplitMix64, which spreads the bits of the hash
+	private static long mix(final long hash) {
+		var result = hash;
+		result = (result ^ (result >>> 30)) * 0xbf58476d1ce4e5b9L;
+		result = (result ^ (result >>> 27)) * 0x94d049bb133111ebL;
+		return result ^ (result >>> 31);
+	}
+}
@@ -3,6 +3,8 @@ package se.sundsvall.byggrarchiver.service.mapper;
 import static java.time.format.DateTimeFormatter.ISO_DATE;
 import static java.util.Optional.ofNullable;
 import static se.sundsvall.byggrarchiver.util.Constants.BYGGNADSNAMNDEN;
+import static se.sundsvall.byggrarchiver.util.Constants.F_2_BYGGLOV;
+import static se.sundsvall.byggrarchiver.util.Constants.HANTERA_BYGGLOV;
 import static se.sundsvall.byggrarchiver.util.Constants.STADSBYGGNADSNAMNDEN;
 import static se.sundsvall.byggrarchiver.util.Constants.STANGT;
 import static se.sundsvall.byggrarchiver.util.Constants.SUNDSVALLS_KOMMUN;
@@ -13,29 +15,41 @@ import generated.se.sundsvall.arendeexport.AbstractArendeObjekt;
 import generated.se.sundsvall.arendeexport.Arende2;
 import generated.se.sundsvall.arendeexport.ArendeFastighet;
 import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.DokumentFil;
 import generated.se.sundsvall.arendeexport.Handling;
 import generated.se.sundsvall.bygglov.ArkivbildarStrukturTyp;
 import generated.se.sundsvall.bygglov.ArkivbildareTyp;
 import generated.se.sundsvall.bygglov.ArkivobjektArendeTyp;
 import generated.se.sundsvall.bygglov.ArkivobjektHandlingTyp;
+import generated.se.sundsvall.bygglov.ArkivobjektListaArendenTyp;
 import generated.se.sundsvall.bygglov.ArkivobjektListaHandlingarTyp;
 import generated.se.sundsvall.bygglov.BilagaTyp;
 import generated.se.sundsvall.bygglov.ExtraID;
+import generated.se.sundsvall.bygglov.FastighetTyp;
+import generated.se.sundsvall.bygglov.LeveransobjektTyp;
 import generated.se.sundsvall.bygglov.StatusArande;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 import se.sundsvall.byggrarchiver.api.model.ArchiveHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.BatchHistoryResponse;
+import se.sundsvall.byggrarchiver.api.model.BatchProgressResponse;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
+import se.sundsvall.byggrarchiver.integration.archive.StreamedAttachment;
+import se.sundsvall.byggrarchiver.integration.arendeexport.SpooledDokumentFil;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
 import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
-import se.sundsvall.byggrarchiver.util.Util;
+import se.sundsvall.byggrarchiver.service.filetype.FileTypeDetector;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgress;
 
 public final class ArchiverMapper {
 
@@ -45,7 +59,7 @@ public final class ArchiverMapper {
 
 	public static BilagaTyp toBilaga(final Dokument dokument) throws ApplicationException {
 		if (dokument.getFil().getFilAndelse() == null) {
-			dokument.getFil().setFilAndelse(Util.getExtensionFromByteArray(dokument.getFil().getFilBuffer()));
+			dokument.getFil().setFilAndelse(FileTypeDetector.guessExtension(dokument.getFil()));
 		}
 
 		final var bilaga = new BilagaTyp();
@@ -101,6 +115,20 @@ public final class ArchiverMapper {
 			.withArkivbildare(arkivbildareSundsvallsKommun);
 	}
 
+	public static String toKlass(final LocalDate ankomstDatum) {
+		if ((ankomstDatum == null) || isAfter2016(ankomstDatum)) {
+			return HANTERA_BYGGLOV;
+		}
+		return F_2_BYGGLOV;
+	}
+
+	public static String toNotering(final LocalDate ankomstDatum) {
+		if (ankomstDatum == null) {
+			return null;
+		}
+		return String.valueOf(ankomstDatum.getYear());
+	}
+
 	public static String toIsoDate(final LocalDate date) {
 		if (date == null) {
 			return null;
@@ -116,14 +144,10 @@ public final class ArchiverMapper {
 	}
 
 	public static AttachmentCategory toAttachmentCategory(final String handlingsTyp) {
-		try {
-			return AttachmentCategory.fromCode(handlingsTyp);
-		} catch (final IllegalArgumentException e) {
-			// All the "handlingstyper" we don't recognize, we set to AttachmentCategory.BIL, which
-			// means they get the archiveClassification D, which means that they are not public in
-			// the archive
-			return AttachmentCategory.BIL;
-		}
+		// All the "handlingstyper" we don't recognize, we set to AttachmentCategory.BIL, which
+		// means they get the archiveClassification D, which means that they are not public in
+		// the archive
+		return AttachmentCategory.fromCode(handlingsTyp, AttachmentCategory.BIL);
 	}
 
 	public static ArkivobjektArendeTyp toArkivobjektArendeTyp(final Arende2 arende, final Handling handling, final Dokument document) throws ApplicationException {
@@ -139,6 +163,24 @@ public final class ArchiverMapper {
 			.withArkivobjektListaHandlingar(toArkivobjektListaHandlingar(handling, document));
 	}
 
+	/**
+	 * @param fastighet the property of the case, or null if the case has no objects
+	 */
+	public static LeveransobjektTyp toLeveransobjektTyp(final Arende2 arende, final FastighetTyp fastighet, final ArkivbildarStrukturTyp arkivbildarStruktur,
+		final Handling handling, final Dokument document) throws ApplicationException {
+		final var arkivobjektArende = toArkivobjektArendeTyp(arende, handling, document)
+			.withKlass(toKlass(arende.getAnkomstDatum()))
+			.withNotering(toNotering(arende.getAnkomstDatum()));
+
+		if (fastighet != null) {
+			arkivobjektArende.getFastighet().add(fastighet);
+		}
+
+		return new LeveransobjektTyp()
+			.withArkivbildarStruktur(arkivbildarStruktur)
+			.withArkivobjektListaArenden(new ArkivobjektListaArendenTyp().withArkivobjektArende(arkivobjektArende));
+	}
+
 	public static ArchiveHistory toArchiveHistory(final Handling handling, final BatchHistory batchHistory, final String caseId, final AttachmentCategory attachmentCategory, final ArchiveStatus archiveStatus, final String municipalityId) {
 
 		return ArchiveHistory.builder()
@@ -152,6 +194,26 @@ public final class ArchiverMapper {
 			.build();
 	}
 
+	/**
+	 * Sets the extension, size and content hash of the file of the document on its archive history, so that they can be
+	 * reported without fetching the document again. The extension must have been detected first.
+	 */
+	public static void setFileInformation(final ArchiveHistory archiveHistory, final Dokument dokument) {
+		final var fil = dokument.getFil();
+		if (fil == null) {
+			return;
+		}
+
+		archiveHistory.setFileExtension(ofNullable(fil.getFilAndelse()).map(extension -> extension.trim().toLowerCase()).orElse(null));
+		if (fil instanceof final SpooledDokumentFil spooledDokumentFil) {
+			archiveHistory.setFileSize(spooledDokumentFil.size());
+			archiveHistory.setContentHash(spooledDokumentFil.contentHash());
+		} else if (fil.getFilBuffer() != null) {
+			archiveHistory.setFileSize((long) fil.getFilBuffer().length);
+			archiveHistory.setContentHash(toContentHash(fil.getFilBuffer()));
+		}
+	}
+
 	public static ByggRArchiveRequest toByggRArchiveRequest(final Dokument document, final String metaData) throws ApplicationException {
 		return new ByggRArchiveRequest()
 			.attachment(toAttachment(document))
@@ -168,6 +230,9 @@ public final class ArchiverMapper {
 			.withCaseId(archiveHistory.getCaseId())
 			.withDocumentName(archiveHistory.getDocumentName())
 			.withDocumentType(archiveHistory.getDocumentType())
+			.withFileExtension(archiveHistory.getFileExtension())
+			.withFileSize(archiveHistory.getFileSize())
+			.withContentHash(archiveHistory.getContentHash())
 			.withArchiveId(archiveHistory.getArchiveId())
 			.withArchiveUrl(archiveHistory.getArchiveUrl())
 			.withArchiveStatus(archiveHistory.getArchiveStatus())
@@ -187,12 +252,27 @@ public final class ArchiverMapper {
 			.withId(batchHistory.getId())
 			.withStart(batchHistory.getStart())
 			.withEnd(batchHistory.getEnd())
+			.withStartAfter(batchHistory.getStartAfter())
 			.withArchiveStatus(batchHistory.getArchiveStatus())
 			.withBatchTrigger(batchHistory.getBatchTrigger())
 			.withTimestamp(batchHistory.getTimestamp())
 			.build();
 	}
 
+	public static BatchProgressResponse mapToBatchProgressResponse(final BatchProgress batchProgress) {
+		if (batchProgress == null) {
+			return null;
+		}
+
+		return BatchProgressResponse.builder()
+			.withRunning(batchProgress.isRunning())
+			.withPagesScanned(batchProgress.getPagesScanned())
+			.withDocumentsArchived(batchProgress.getDocumentsArchived())
+			.withDocumentsFailed(batchProgress.getDocumentsFailed())
+			.withBytesUploaded(batchProgress.getBytesUploaded())
+			.build();
+	}
+
 	public static BatchHistory createBatchHistory(final LocalDate actualStart, final LocalDate end, final BatchTrigger batchTrigger, final ArchiveStatus archiveStatus, final String municipalityId) {
 		return BatchHistory.builder()
 			.withMunicipalityId(municipalityId)
@@ -215,12 +295,33 @@ public final class ArchiverMapper {
 
 	private static Attachment toAttachment(final Dokument dokument) throws ApplicationException {
 		if (dokument.getFil().getFilAndelse() == null) {
-			dokument.getFil().setFilAndelse(Util.getExtensionFromByteArray(dokument.getFil().getFilBuffer()));
+			dokument.getFil().setFilAndelse(FileTypeDetector.guessExtension(dokument.getFil()));
 		}
-		return new Attachment()
+		return toAttachment(dokument.getFil())
 			.extension("." + dokument.getFil().getFilAndelse().toLowerCase())
-			.name(toNameWithExtension(dokument.getNamn(), dokument.getFil().getFilAndelse()))
-			.file(Util.byteArrayToBase64(dokument.getFil().getFilBuffer()));
+			.name(toNameWithExtension(dokument.getNamn(), dokument.getFil().getFilAndelse()));
+	}
+
+	// The content is base64-encoded when the request is sent, and read from the spooled file when there is one
+	private static Attachment toAttachment(final DokumentFil fil) {
+		if (fil instanceof final SpooledDokumentFil spooledDokumentFil) {
+			return new StreamedAttachment(spooledDokumentFil::openStream, spooledDokumentFil.size());
+		}
+
+		final var filBuffer = fil.getFilBuffer();
+		if (filBuffer == null) {
+			return new Attachment();
+		}
+		return new StreamedAttachment(() -> new ByteArrayInputStream(filBuffer), filBuffer.length);
+	}
+
+	// Hashed like the content of spooled files, while they are spooled
+	private static String toContentHash(final byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance(SpooledDokumentFil.CONTENT_HASH_ALGORITHM).digest(content));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	private static ArkivobjektListaHandlingarTyp toArkivobjektListaHandlingar(final Handling handling,
@@ -0,0 +1,56 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArkivbildarStruktur;
+
+import generated.se.sundsvall.bygglov.ArkivbildarStrukturTyp;
+import java.time.LocalDate;
+
+/**
+ * The archive creators of a case, of which there are only three variants depending on when the case arrived. Each
+ * variant is built and written as XML once, and then shared by all cases of its era, so the structures must not be
+ * modified.
+ */
+public enum ArkivbildarEra {
+
+	BEFORE_1993(LocalDate.of(1992, 12, 31)),
+	BEFORE_2017(LocalDate.of(2016, 12, 31)),
+	FROM_2017(LocalDate.MAX);
+
+	// The last arrival date of a case in the era
+	private final LocalDate lastDate;
+
+	private final ArkivbildarStrukturTyp arkivbildarStruktur;
+
+	private final String fragment;
+
+	ArkivbildarEra(final LocalDate lastDate) {
+		this.lastDate = lastDate;
+		this.arkivbildarStruktur = toArkivbildarStruktur(lastDate);
+		this.fragment = new LeveransobjektWriter().writeArkivbildarStruktur(arkivbildarStruktur);
+	}
+
+	/**
+	 * @param  ankomstDatum the arrival date of the case, or null if unknown
+	 * @return              the era of the case, where a case without arrival date belongs to the current era
+	 */
+	public static ArkivbildarEra of(final LocalDate ankomstDatum) {
+		if ((ankomstDatum == null) || ankomstDatum.isAfter(BEFORE_2017.lastDate)) {
+			return FROM_2017;
+		}
+		if (ankomstDatum.isAfter(BEFORE_1993.lastDate)) {
+			return BEFORE_2017;
+		}
+		return BEFORE_1993;
+	}
+
+	public ArkivbildarStrukturTyp arkivbildarStruktur() {
+		return arkivbildarStruktur;
+	}
+
+	/**
+	 * @return the ArkivbildarStruktur element, written the same way as by JAXB
+	 */
+	public String fragment() {
+		return fragment;
+	}
+}
@@ -0,0 +1,15 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import generated.se.sundsvall.arendeexport.Arende2;
+import generated.se.sundsvall.bygglov.FastighetTyp;
+
+/**
+ * The metadata of a case, resolved once and shared by all documents of the case. Created by
+ * {@link MetadataRenderer#prepare(Arende2, FastighetTyp)}.
+ *
+ * @param arende         the case
+ * @param fastighet      the main property of the case, or null if the case has no objects
+ * @param arkivbildarEra the era of the archive creators of the case
+ * @param fragment       the metadata XML of the case up to its documents, or null if the metadata is marshalled by JAXB
+ */
+public record CaseMetadata(Arende2 arende, FastighetTyp fastighet, ArkivbildarEra arkivbildarEra, String fragment) {}
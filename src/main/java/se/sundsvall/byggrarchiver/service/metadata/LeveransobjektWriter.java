@@ -0,0 +1,204 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toAttachmentCategory;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toBilaga;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toIsoDate;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toKlass;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toNotering;
+import static se.sundsvall.byggrarchiver.util.Constants.STANGT;
+
+import generated.se.sundsvall.arendeexport.Arende2;
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.Handling;
+import generated.se.sundsvall.bygglov.ArkivbildarStrukturTyp;
+import generated.se.sundsvall.bygglov.ArkivbildareTyp;
+import generated.se.sundsvall.bygglov.FastighetTyp;
+import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+
+/**
+ * Writes the metadata XML of a document straight to a buffer, without building the JAXB object graph first. The part of
+ * a case is written once, and then continued by each document of the case. Only the part of Bygglov_v2 that is sent to
+ * Archive is written, and the output is the same, byte for byte, as when the Leveransobjekt is marshalled by JAXB: the
+ * same XML declaration, default namespace, element order, empty elements and escaping.
+ */
+final class LeveransobjektWriter {
+
+	static final String NAMESPACE = "http://xml.ra.se/e-arkiv/FGS-ERMS";
+
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+	// Closes the elements that are left open by the case fragment
+	private static final String CASE_END = "</ArkivobjektListaHandlingar></ArkivobjektArende></ArkivobjektListaArenden></Leveransobjekt>";
+
+	private static final int INITIAL_CAPACITY = 2048;
+
+	private final StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+	// If the start tag of the current element is still open, i.e. the element may be written as an empty element
+	private boolean startTagOpen;
+
+	/**
+	 * Writes the metadata of a case up to its documents. The fragment is the same for all documents of the case.
+	 *
+	 * @param fastighet the property of the case, or null if the case has no objects
+	 */
+	String writeCase(final Arende2 arende, final FastighetTyp fastighet, final ArkivbildarEra arkivbildarEra) {
+		buffer.append(XML_DECLARATION);
+		startElement("Leveransobjekt");
+		attribute("xmlns", NAMESPACE);
+		closeStartTag();
+		buffer.append(arkivbildarEra.fragment());
+
+		startElement("ArkivobjektListaArenden");
+		writeArkivobjektArende(arende, fastighet);
+		startElement("ArkivobjektListaHandlingar");
+		closeStartTag();
+		return buffer.toString();
+	}
+
+	/**
+	 * Writes the metadata of a document, continuing a fragment written by
+	 * {@link #writeCase(Arende2, FastighetTyp, ArkivbildarEra)}.
+	 */
+	String writeDocument(final String caseFragment, final Handling handling, final Dokument document) throws ApplicationException {
+		buffer.append(caseFragment);
+		writeArkivobjektHandling(handling, document);
+		buffer.append(CASE_END);
+		return buffer.toString();
+	}
+
+	/**
+	 * Writes the ArkivbildarStruktur element only, for {@link ArkivbildarEra}.
+	 */
+	String writeArkivbildarStruktur(final ArkivbildarStrukturTyp arkivbildarStruktur) {
+		startElement("ArkivbildarStruktur");
+		writeArkivbildare(arkivbildarStruktur.getArkivbildare());
+		endElement("ArkivbildarStruktur");
+		return buffer.toString();
+	}
+
+	private void writeArkivbildare(final ArkivbildareTyp arkivbildare) {
+		if (arkivbildare == null) {
+			return;
+		}
+
+		startElement("Arkivbildare");
+		textElement("Namn", arkivbildare.getNamn());
+		textElement("VerksamhetstidFran", arkivbildare.getVerksamhetstidFran());
+		textElement("VerksamhetstidTill", arkivbildare.getVerksamhetstidTill());
+		writeArkivbildare(arkivbildare.getArkivbildare());
+		endElement("Arkivbildare");
+	}
+
+	private void writeArkivobjektArende(final Arende2 arende, final FastighetTyp fastighet) {
+		// The elements are written in the order of ArkivobjektArendeTyp in the schema
+		startElement("ArkivobjektArende");
+		textElement("ArkivobjektID", arende.getDnr());
+		startElement("ExtraID");
+		text(arende.getDnr());
+		endElement("ExtraID");
+		textElement("ArendeTyp", arende.getArendetyp());
+		textElement("Avslutat", toIsoDate(arende.getSlutDatum()));
+		textElement("Klass", toKlass(arende.getAnkomstDatum()));
+		textElement("Notering", toNotering(arende.getAnkomstDatum()));
+		textElement("Skapad", toIsoDate(arende.getRegistreradDatum()));
+		textElement("StatusArande", STANGT);
+		textElement("Arendemening", arende.getBeskrivning());
+		writeFastighet(fastighet);
+	}
+
+	private void writeFastighet(final FastighetTyp fastighet) {
+		if (fastighet == null) {
+			return;
+		}
+
+		startElement("Fastighet");
+		textElement("Fastighetsbeteckning", fastighet.getFastighetsbeteckning());
+		textElement("Objektidentitet", fastighet.getObjektidentitet());
+		textElement("Trakt", fastighet.getTrakt());
+		endElement("Fastighet");
+	}
+
+	private void writeArkivobjektHandling(final Handling handling, final Dokument document) throws ApplicationException {
+		final var attachmentCategory = (handling.getTyp() != null) ? toAttachmentCategory(handling.getTyp()) : null;
+		final var bilaga = toBilaga(document);
+
+		// The elements are written in the order of ArkivobjektHandlingTyp in the schema
+		startElement("ArkivobjektHandling");
+		textElement("ArkivobjektID", document.getDokId());
+		if (attachmentCategory != null) {
+			textElement("Handlingstyp", attachmentCategory.getArchiveClassification());
+			textElement("Rubrik", attachmentCategory.getDescription());
+		}
+		textElement("Skapad", toIsoDate(document.getSkapadDatum()));
+
+		startElement("Bilaga");
+		attribute("Namn", bilaga.getNamn());
+		attribute("Beskrivning", bilaga.getBeskrivning());
+		attribute("Lank", bilaga.getLank());
+		endElement("Bilaga");
+		endElement("ArkivobjektHandling");
+	}
+
+	private void textElement(final String name, final String value) {
+		// Like JAXB, elements without a value are left out
+		if (value != null) {
+			startElement(name);
+			text(value);
+			endElement(name);
+		}
+	}
+
+	private void startElement(final String name) {
+		closeStartTag();
+		buffer.append('<').append(name);
+		startTagOpen = true;
+	}
+
+	private void attribute(final String name, final String value) {
+		if (value != null) {
+			buffer.append(' ').append(name).append("=\"");
+			escape(value, true);
+			buffer.append('"');
+		}
+	}
+
+	private void text(final String value) {
+		if (value != null) {
+			closeStartTag();
+			escape(value, false);
+		}
+	}
+
+	private void endElement(final String name) {
+		if (startTagOpen) {
+			buffer.append("/>");
+			startTagOpen = false;
+		} else {
+			buffer.append("</").append(name).append('>');
+		}
+	}
+
+	private void closeStartTag() {
+		if (startTagOpen) {
+			buffer.append('>');
+			startTagOpen = false;
+		}
+	}
+
+	// Escapes the same characters as the escape handler JAXB uses for UTF-8
+	private void escape(final String value, final boolean attribute) {
+		for (var i = 0; i < value.length(); i++) {
+			final var c = value.charAt(i);
+			switch (c) {
+				case '&' -> buffer.append("&amp;");
+				case '<' -> buffer.append("&lt;");
+				case '>' -> buffer.append("&gt;");
+				case '\r' -> buffer.append("&#xD;");
+				case '\n' -> buffer.append(attribute ? "&#xA;" : "\n");
+				case '"' -> buffer.append(attribute ? "&quot;" : "\"");
+				default -> buffer.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toLeveransobjektTyp;
+
+import generated.se.sundsvall.arendeexport.Arende2;
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.Handling;
+import generated.se.sundsvall.bygglov.FastighetTyp;
+import generated.se.sundsvall.bygglov.LeveransobjektTyp;
+import generated.se.sundsvall.bygglov.ObjectFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+
+/**
+ * Renders the metadata XML of a document, either marshalled by JAXB or written straight to the output by
+ * {@link LeveransobjektWriter}. The JAXB context is created once, and since a marshaller must not be used by two threads
+ * at the same time, marshallers are borrowed from a pool together with a reusable output buffer.
+ */
+@Component
+public class MetadataRenderer {
+
+	static final String MARSHAL_METRIC = "archiver.metadata.marshal";
+
+	// Buffers that have grown larger than this are not kept, so that one large metadata doesn't hold on to the memory
+	static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+	private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
+
+	private final ArchivingProperties.MetadataRendererType rendererType;
+
+	private final JAXBContext context;
+
+	private final BlockingQueue<PooledMarshaller> pool;
+
+	private final Timer marshalTimer;
+
+	public MetadataRenderer(final ArchivingProperties archivingProperties, final MeterRegistry meterRegistry) {
+		try {
+			this.context = JAXBContext.newInstance(LeveransobjektTyp.class);
+		} catch (final JAXBException e) {
+			throw new IllegalStateException("Unable to create JAXB context for LeveransobjektTyp", e);
+		}
+		this.rendererType = archivingProperties.metadata().renderer();
+		this.pool = new ArrayBlockingQueue<>(archivingProperties.metadata().marshallerPoolSize());
+		this.marshalTimer = Timer.builder(MARSHAL_METRIC)
+			.description("Time it takes to render the metadata of a document")
+			.tag("renderer", rendererType.name().toLowerCase())
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Resolves the parts of the metadata that are the same for all documents of a case.
+	 *
+	 * @param fastighet the property of the case, or null if the case has no objects
+	 */
+	public CaseMetadata prepare(final Arende2 arende, final FastighetTyp fastighet) {
+		final var arkivbildarEra = ArkivbildarEra.of(arende.getAnkomstDatum());
+		final var fragment = switch (rendererType) {
+			case JAXB -> null;
+			case STREAMING -> new LeveransobjektWriter().writeCase(arende, fastighet, arkivbildarEra);
+		};
+
+		return new CaseMetadata(arende, fastighet, arkivbildarEra, fragment);
+	}
+
+	public String render(final CaseMetadata caseMetadata, final Handling handling, final Dokument document) throws ApplicationException {
+		final var started = System.nanoTime();
+		try {
+			return switch (rendererType) {
+				case JAXB -> marshal(toLeveransobjektTyp(caseMetadata.arende(), caseMetadata.fastighet(), caseMetadata.arkivbildarEra().arkivbildarStruktur(), handling, document));
+				case STREAMING -> new LeveransobjektWriter().writeDocument(caseMetadata.fragment(), handling, document);
+			};
+		} finally {
+			marshalTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private String marshal(final LeveransobjektTyp leveransobjekt) throws ApplicationException {
+		try {
+			final var pooledMarshaller = borrow();
+			pooledMarshaller.marshaller().marshal(OBJECT_FACTORY.createLeveransobjekt(leveransobjekt), pooledMarshaller.writer());
+			final var metadata = pooledMarshaller.writer().toString();
+
+			giveBack(pooledMarshaller);
+			return metadata;
+		} catch (final JAXBException e) {
+			// The marshaller is not given back, since it may be left in an unknown state
+			throw new ApplicationException("Something went wrong when trying to marshal LeveransobjektTyp", e);
+		}
+	}
+
+	private PooledMarshaller borrow() throws JAXBException {
+		final var pooledMarshaller = pool.poll();
+		if (pooledMarshaller != null) {
+			return pooledMarshaller;
+		}
+
+		return new PooledMarshaller(context.createMarshaller(), new StringWriter());
+	}
+
+	private void giveBack(final PooledMarshaller pooledMarshaller) {
+		final var buffer = pooledMarshaller.writer().getBuffer();
+		if (buffer.capacity() > MAX_REUSED_BUFFER_SIZE) {
+			return;
+		}
+
+		buffer.setLength(0);
+		// Dropped if the pool is full
+		pool.offer(pooledMarshaller);
+	}
+
+	int pooledMarshallers() {
+		return pool.size();
+	}
+
+	private record PooledMarshaller(Marshaller marshaller, StringWriter writer) {}
+}
@@ -0,0 +1,91 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import generated.se.sundsvall.arendeexport.ArendeBatch;
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.ToIntFunction;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+/**
+ * Steps over empty pages with a step that doubles for as long as GetUpdatedArendenCount finds no cases in it. A step
+ * with cases in it is halved until it is empty or down to the minimum step, and a large page resets the step to the
+ * minimum. A new stepper is used for each time window, since it keeps track of the current step.
+ */
+class AdaptiveWindowStepper implements WindowStepper {
+
+	private final ToIntFunction<BatchFilter> counter;
+
+	private final ArchivingProperties.AdaptiveWindow properties;
+
+	private final DistributionSummary stepSummary;
+
+	private final Counter emptyProbes;
+
+	private final Counter nonEmptyProbes;
+
+	private Duration step;
+
+	AdaptiveWindowStepper(final ToIntFunction<BatchFilter> counter, final ArchivingProperties.AdaptiveWindow properties,
+		final DistributionSummary stepSummary, final Counter emptyProbes, final Counter nonEmptyProbes) {
+		this.counter = counter;
+		this.properties = properties;
+		this.stepSummary = stepSummary;
+		this.emptyProbes = emptyProbes;
+		this.nonEmptyProbes = nonEmptyProbes;
+		this.step = properties.minStep();
+	}
+
+	@Override
+	public LocalDateTime stepOverEmptyPage(final LocalDateTime lowerBound, final LocalDateTime upperBound) {
+		while (step.compareTo(properties.minStep()) > 0) {
+			final var stepped = min(lowerBound.plus(step), upperBound);
+
+			if (counter.applyAsInt(new BatchFilter().withLowerExclusiveBound(lowerBound).withUpperInclusiveBound(stepped)) == 0) {
+				emptyProbes.increment();
+				return took(lowerBound, stepped);
+			}
+
+			nonEmptyProbes.increment();
+			shrink();
+		}
+
+		// ByggR has already told that there is nothing within the minimum step
+		return took(lowerBound, min(lowerBound.plus(step), upperBound));
+	}
+
+	@Override
+	public void pageRead(final ArendeBatch arendeBatch) {
+		final var size = ((arendeBatch == null) || (arendeBatch.getArenden() == null)) ? 0 : arendeBatch.getArenden().getArende().size();
+
+		if (size >= properties.largePageSize()) {
+			step = properties.minStep();
+		} else if (size > 0) {
+			shrink();
+		}
+	}
+
+	Duration getStep() {
+		return step;
+	}
+
+	private LocalDateTime took(final LocalDateTime lowerBound, final LocalDateTime stepped) {
+		stepSummary.record(Duration.between(lowerBound, stepped).toSeconds());
+
+		final var doubled = step.multipliedBy(2);
+		step = (doubled.compareTo(properties.maxStep()) > 0) ? properties.maxStep() : doubled;
+
+		return stepped;
+	}
+
+	private void shrink() {
+		final var halved = step.dividedBy(2);
+		step = (halved.compareTo(properties.minStep()) < 0) ? properties.minStep() : halved;
+	}
+
+	private static LocalDateTime min(final LocalDateTime first, final LocalDateTime second) {
+		return first.isAfter(second) ? second : first;
+	}
+}
@@ -0,0 +1,180 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import generated.se.sundsvall.arendeexport.ArendeBatch;
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the pages of updated cases from ByggR for a time window. Each page starts where the previous page ended, so
+ * the pages are read one after another, but with a prefetch depth above zero the following pages are read in the
+ * background while the caller is working with the current page.
+ */
+public final class ArendeBatchPages implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArendeBatchPages.class);
+
+	private final Function<BatchFilter, ArendeBatch> reader;
+
+	private final BatchFilter firstFilter;
+
+	private final int prefetchDepth;
+
+	private final WindowStepper windowStepper;
+
+	private final ExecutorService executorService;
+
+	private final Deque<CompletableFuture<Page>> pending = new ArrayDeque<>();
+
+	private CompletableFuture<Page> tail;
+
+	private Page current;
+
+	private boolean finished;
+
+	/**
+	 * @param reader        reads one page of updated cases
+	 * @param start         start of the time window (exclusive)
+	 * @param end           end of the time window (inclusive)
+	 * @param prefetchDepth number of pages to read ahead of the current page
+	 * @param windowStepper decides where the next page starts when a page did not move past its lower bound
+	 */
+	public ArendeBatchPages(final Function<BatchFilter, ArendeBatch> reader, final LocalDateTime start, final LocalDateTime end, final int prefetchDepth,
+		final WindowStepper windowStepper) {
+		this.reader = reader;
+		this.firstFilter = new BatchFilter()
+			.withLowerExclusiveBound(start)
+			.withUpperInclusiveBound(end);
+		this.prefetchDepth = prefetchDepth;
+		this.windowStepper = windowStepper;
+		this.executorService = (prefetchDepth > 0) ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("arende-prefetch-", 0).factory()) : null;
+	}
+
+	/**
+	 * Returns the next page, waiting for it to be read if needed.
+	 *
+	 * @return the next page, or null when the whole time window has been read
+	 */
+	public ArendeBatch next() {
+		if (finished) {
+			return null;
+		}
+
+		while (pending.size() <= prefetchDepth) {
+			schedule();
+		}
+
+		final var page = join(pending.poll());
+		if (page == null) {
+			finished = true;
+			return null;
+		}
+
+		current = page;
+		return page.arendeBatch();
+	}
+
+	/**
+	 * Returns how far the time window has been read with the page last returned by {@link #next()}. All cases updated up
+	 * to this point have been returned, so a later run can start from here without missing any case.
+	 *
+	 * @return the checkpoint, or null if no page has been returned yet
+	 */
+	public LocalDateTime checkpoint() {
+		if (current == null) {
+			return null;
+		}
+
+		final var filter = current.filter();
+		final var batchEnd = current.arendeBatch().getBatchEnd();
+		if ((batchEnd == null) || !batchEnd.isAfter(filter.getLowerExclusiveBound())) {
+			return filter.getLowerExclusiveBound();
+		}
+
+		return batchEnd.isAfter(filter.getUpperInclusiveBound()) ? filter.getUpperInclusiveBound() : batchEnd;
+	}
+
+	@Override
+	public void close() {
+		pending.clear();
+		if (executorService != null) {
+			executorService.shutdownNow();
+		}
+	}
+
+	private void schedule() {
+		if (executorService == null) {
+			tail = CompletableFuture.completedFuture((tail == null) ? readPage(firstFilter) : nextPage(tail.join()));
+		} else if (tail == null) {
+			tail = CompletableFuture.supplyAsync(() -> readPage(firstFilter), executorService);
+		} else {
+			tail = tail.thenApplyAsync(this::nextPage, executorService);
+		}
+
+		pending.add(tail);
+	}
+
+	private Page nextPage(final Page previous) {
+		if ((previous == null) || previous.isLast()) {
+			return null;
+		}
+
+		return readPage(nextFilter(previous));
+	}
+
+	private Page readPage(final BatchFilter filter) {
+		LOG.info("Run batch iteration with start-date: {} and end-date: {}", filter.getLowerExclusiveBound(), filter.getUpperInclusiveBound());
+
+		final var arendeBatch = reader.apply(filter);
+		windowStepper.pageRead(arendeBatch);
+
+		return new Page(filter, arendeBatch);
+	}
+
+	private BatchFilter nextFilter(final Page previous) {
+		final var filter = previous.filter();
+		final var arendeBatch = previous.arendeBatch();
+
+		LOG.info("Last ArendeBatch start: {} end: {}", arendeBatch.getBatchStart(), arendeBatch.getBatchEnd());
+
+		final var nextFilter = new BatchFilter().withUpperInclusiveBound(filter.getUpperInclusiveBound());
+
+		if ((arendeBatch.getBatchEnd() == null)
+			|| arendeBatch.getBatchEnd().isEqual(filter.getLowerExclusiveBound())
+			|| arendeBatch.getBatchEnd().isBefore(filter.getLowerExclusiveBound())) {
+			final var stepped = windowStepper.stepOverEmptyPage(filter.getLowerExclusiveBound(), filter.getUpperInclusiveBound());
+			return nextFilter.withLowerExclusiveBound(stepped.isAfter(filter.getUpperInclusiveBound()) ? filter.getUpperInclusiveBound() : stepped);
+		}
+
+		return nextFilter.withLowerExclusiveBound(arendeBatch.getBatchEnd().isAfter(filter.getUpperInclusiveBound()) ? filter.getUpperInclusiveBound() : arendeBatch.getBatchEnd());
+	}
+
+	private static Page join(final CompletableFuture<Page> future) {
+		try {
+			return future.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof final RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	private record Page(BatchFilter filter, ArendeBatch arendeBatch) {
+
+		/**
+		 * The last page is the one that was read with the lower bound at the end of the time window.
+		 */
+		boolean isLast() {
+			return !filter.getLowerExclusiveBound().isBefore(filter.getUpperInclusiveBound());
+		}
+	}
+}
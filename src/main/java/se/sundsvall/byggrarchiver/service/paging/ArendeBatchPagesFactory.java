@@ -0,0 +1,59 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner.TimeWindow;
+
+/**
+ * Creates the {@link ArendeBatchPages} for a time window, according to the prefetch and adaptive window settings.
+ */
+@Component
+public class ArendeBatchPagesFactory {
+
+	static final String WINDOW_STEP_METRIC = "archiver.window.step";
+
+	static final String WINDOW_PROBE_METRIC = "archiver.window.probes";
+
+	private final ArendeExportIntegration arendeExportIntegration;
+
+	private final ArchivingProperties archivingProperties;
+
+	private final DistributionSummary stepSummary;
+
+	private final Counter emptyProbes;
+
+	private final Counter nonEmptyProbes;
+
+	public ArendeBatchPagesFactory(final ArendeExportIntegration arendeExportIntegration, final ArchivingProperties archivingProperties, final MeterRegistry meterRegistry) {
+		this.arendeExportIntegration = arendeExportIntegration;
+		this.archivingProperties = archivingProperties;
+		this.stepSummary = DistributionSummary.builder(WINDOW_STEP_METRIC)
+			.description("Length of the time ranges stepped over after an empty page")
+			.baseUnit("seconds")
+			.register(meterRegistry);
+		this.emptyProbes = Counter.builder(WINDOW_PROBE_METRIC)
+			.description("Number of GetUpdatedArendenCount calls made to size a step")
+			.tag("result", "empty")
+			.register(meterRegistry);
+		this.nonEmptyProbes = Counter.builder(WINDOW_PROBE_METRIC)
+			.description("Number of GetUpdatedArendenCount calls made to size a step")
+			.tag("result", "not-empty")
+			.register(meterRegistry);
+	}
+
+	public ArendeBatchPages create(final TimeWindow window) {
+		return new ArendeBatchPages(arendeExportIntegration::getUpdatedArenden, window.start(), window.end(), archivingProperties.prefetch().depth(), createWindowStepper());
+	}
+
+	private WindowStepper createWindowStepper() {
+		if (!archivingProperties.adaptiveWindow().enabled()) {
+			return WindowStepper.ONE_HOUR;
+		}
+
+		return new AdaptiveWindowStepper(arendeExportIntegration::getUpdatedArendenCount, archivingProperties.adaptiveWindow(), stepSummary, emptyProbes, nonEmptyProbes);
+	}
+}
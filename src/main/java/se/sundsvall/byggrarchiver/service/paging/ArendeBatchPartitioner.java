@@ -0,0 +1,102 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingInt;
+
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
+
+/**
+ * Splits a long time window into partitions with about the same number of updated cases, by repeatedly halving the
+ * partition with the most cases. The number of cases is read with GetUpdatedArendenCount.
+ */
+@Component
+public class ArendeBatchPartitioner {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArendeBatchPartitioner.class);
+
+	// Shorter partitions than this are never halved, since an empty page steps one hour ahead anyway
+	private static final Duration MIN_PARTITION_LENGTH = Duration.ofHours(1);
+
+	private final ArendeExportIntegration arendeExportIntegration;
+
+	private final ArchivingProperties.Partitioning properties;
+
+	public ArendeBatchPartitioner(final ArendeExportIntegration arendeExportIntegration, final ArchivingProperties archivingProperties) {
+		this.arendeExportIntegration = arendeExportIntegration;
+		this.properties = archivingProperties.partitioning();
+	}
+
+	/**
+	 * Partitions a time window. Windows are returned in order, each starting where the previous one ends.
+	 *
+	 * @param  start start of the time window (exclusive)
+	 * @param  end   end of the time window (inclusive)
+	 * @return       the partitions, or just the given time window if it should not be partitioned
+	 */
+	public List<TimeWindow> partition(final LocalDateTime start, final LocalDateTime end) {
+		final var window = new TimeWindow(start, end);
+
+		if (!properties.enabled() || (window.length().compareTo(properties.minWindow()) <= 0)) {
+			return List.of(window);
+		}
+
+		final var totalCount = count(window);
+		final var wantedPartitions = Math.min(properties.maxPartitions(), Math.ceilDiv(Math.max(totalCount, 1), properties.casesPerPartition()));
+
+		final var partitions = new PriorityQueue<CountedWindow>(comparingInt(CountedWindow::count).reversed());
+		partitions.add(new CountedWindow(window, totalCount));
+
+		while (partitions.size() < wantedPartitions) {
+			final var largest = partitions.peek();
+			if ((largest.count() == 0) || (largest.window().length().compareTo(MIN_PARTITION_LENGTH.multipliedBy(2)) < 0)) {
+				break;
+			}
+			partitions.poll();
+
+			final var middle = largest.window().start().plus(largest.window().length().dividedBy(2));
+			final var first = new TimeWindow(largest.window().start(), middle);
+			final var firstCount = count(first);
+
+			partitions.add(new CountedWindow(first, firstCount));
+			partitions.add(new CountedWindow(new TimeWindow(middle, largest.window().end()), Math.max(largest.count() - firstCount, 0)));
+		}
+
+		final var result = partitions.stream()
+			.sorted(comparing(countedWindow -> countedWindow.window().start()))
+			.toList();
+
+		result.forEach(countedWindow -> LOG.info("Partition with start-date: {} and end-date: {} has {} updated cases",
+			countedWindow.window().start(), countedWindow.window().end(), countedWindow.count()));
+
+		return result.stream()
+			.map(CountedWindow::window)
+			.toList();
+	}
+
+	private int count(final TimeWindow window) {
+		return arendeExportIntegration.getUpdatedArendenCount(new BatchFilter()
+			.withLowerExclusiveBound(window.start())
+			.withUpperInclusiveBound(window.end()));
+	}
+
+	/**
+	 * A time window where the start is exclusive and the end is inclusive.
+	 */
+	public record TimeWindow(LocalDateTime start, LocalDateTime end) {
+
+		Duration length() {
+			return Duration.between(start, end);
+		}
+	}
+
+	private record CountedWindow(TimeWindow window, int count) {}
+}
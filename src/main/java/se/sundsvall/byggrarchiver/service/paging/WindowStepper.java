@@ -0,0 +1,29 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import generated.se.sundsvall.arendeexport.ArendeBatch;
+import java.time.LocalDateTime;
+
+/**
+ * Decides how far the lower bound is moved when a page of updated cases did not move past it.
+ */
+public interface WindowStepper {
+
+	/**
+	 * Steps one hour at a time.
+	 */
+	WindowStepper ONE_HOUR = (lowerBound, upperBound) -> lowerBound.plusHours(1);
+
+	/**
+	 * @param  lowerBound the lower bound of the page that did not move past it
+	 * @param  upperBound the upper bound of the time window
+	 * @return            the lower bound of the next page
+	 */
+	LocalDateTime stepOverEmptyPage(LocalDateTime lowerBound, LocalDateTime upperBound);
+
+	/**
+	 * Called for every page that is read.
+	 *
+	 * @param arendeBatch the page
+	 */
+	default void pageRead(final ArendeBatch arendeBatch) {}
+}
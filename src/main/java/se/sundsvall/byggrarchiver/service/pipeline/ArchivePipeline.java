@@ -0,0 +1,255 @@
+package se.sundsvall.byggrarchiver.service.pipeline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+/**
+ * Archives documents in three stages - fetch, transform and upload - where each stage has its own workers and hands
+ * over to the next stage through a bounded queue. A slow stage will fill the queue in front of it, which in turn blocks
+ * the stage before it.
+ */
+@Component
+public class ArchivePipeline {
+
+	enum Stage {
+		FETCH,
+		TRANSFORM,
+		UPLOAD
+	}
+
+	static final String QUEUE_DEPTH_METRIC = "archiver.pipeline.queue.depth";
+
+	static final String STAGE_METRIC = "archiver.pipeline.stage";
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArchivePipeline.class);
+
+	private static final Object END_OF_STAGE = new Object();
+
+	private final ArchivingProperties.Pipeline properties;
+
+	private final Map<Stage, AtomicInteger> queueDepths = new EnumMap<>(Stage.class);
+
+	private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+	public ArchivePipeline(final ArchivingProperties archivingProperties, final MeterRegistry meterRegistry) {
+		this.properties = archivingProperties.pipeline();
+
+		for (final var stage : Stage.values()) {
+			final var tags = Tags.of("stage", stage.name().toLowerCase());
+			queueDepths.put(stage, meterRegistry.gauge(QUEUE_DEPTH_METRIC, tags, new AtomicInteger()));
+			stageTimers.put(stage, Timer.builder(STAGE_METRIC)
+				.description("Time spent on each document in a pipeline stage")
+				.tags(tags)
+				.register(meterRegistry));
+		}
+
+		if (properties.enabled()) {
+			LOG.info("Archive pipeline is ENABLED, with {} fetch, {} transform and {} upload workers", properties.fetchWorkers(), properties.transformWorkers(), properties.uploadWorkers());
+		}
+	}
+
+	public boolean isEnabled() {
+		return properties.enabled();
+	}
+
+	/**
+	 * Runs all input through the pipeline and returns when every item has passed the upload stage. An item for which the
+	 * fetch or transform stage returns null is dropped. If a stage fails with a runtime exception the pipeline is stopped
+	 * and the exception is rethrown.
+	 *
+	 * @param input     the items to process
+	 * @param fetch     the fetch stage
+	 * @param transform the transform stage
+	 * @param upload    the upload stage
+	 * @param <I>       type of the input
+	 * @param <F>       type of the fetched items
+	 * @param <T>       type of the transformed items
+	 */
+	public <I, F, T> void process(final List<I> input, final Function<I, F> fetch, final Function<F, T> transform, final Consumer<T> upload) {
+		process(input, fetch, transform, upload, fetched -> {}, transformed -> {});
+	}
+
+	/**
+	 * Like {@link #process(List, Function, Function, Consumer)}, for items that hold resources. When the pipeline is
+	 * stopped by a failure, it waits for its workers to stop, and then discards the fetched and transformed items that did
+	 * not reach the next stage, including the item of a stage that failed.
+	 *
+	 * @param discardFetched     releases a fetched item that will not be transformed
+	 * @param discardTransformed releases a transformed item that will not be uploaded
+	 */
+	@SuppressWarnings("unchecked")
+	public <I, F, T> void process(final List<I> input, final Function<I, F> fetch, final Function<F, T> transform, final Consumer<T> upload,
+		final Consumer<F> discardFetched, final Consumer<T> discardTransformed) {
+		if (input.isEmpty()) {
+			return;
+		}
+
+		final var fetchQueue = new LinkedBlockingQueue<>(input.size() + properties.fetchWorkers());
+		final var transformQueue = new ArrayBlockingQueue<>(properties.queueCapacity() + properties.transformWorkers());
+		final var uploadQueue = new ArrayBlockingQueue<>(properties.queueCapacity() + properties.uploadWorkers());
+		final var completion = new CompletableFuture<Void>();
+
+		fetchQueue.addAll(input);
+		queueDepths.get(Stage.FETCH).addAndGet(input.size());
+		for (int i = 0; i < properties.fetchWorkers(); i++) {
+			fetchQueue.add(END_OF_STAGE);
+		}
+
+		final Consumer<Object> discardFetchedItem = item -> discard(Stage.FETCH, () -> discardFetched.accept((F) item));
+		final Consumer<Object> discardTransformedItem = item -> discard(Stage.TRANSFORM, () -> discardTransformed.accept((T) item));
+
+		final var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("archive-pipeline-", 0).factory());
+		try {
+			startStage(executor, completion, new StageWork(Stage.FETCH, properties.fetchWorkers(), fetchQueue, transformQueue, properties.transformWorkers(),
+				item -> fetch.apply((I) item), item -> {}, discardFetchedItem));
+			startStage(executor, completion, new StageWork(Stage.TRANSFORM, properties.transformWorkers(), transformQueue, uploadQueue, properties.uploadWorkers(),
+				item -> transform.apply((F) item), discardFetchedItem, discardTransformedItem));
+			startStage(executor, completion, new StageWork(Stage.UPLOAD, properties.uploadWorkers(), uploadQueue, null, 0,
+				item -> {
+					upload.accept((T) item);
+					return null;
+				}, discardTransformedItem, item -> {}));
+
+			completion.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the archive pipeline", e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof final RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Archive pipeline failed", e.getCause());
+		} finally {
+			// Nothing may be discarded while a worker can still hand it over
+			stop(executor);
+			release(Stage.FETCH, fetchQueue, item -> {});
+			release(Stage.TRANSFORM, transformQueue, discardFetchedItem);
+			release(Stage.UPLOAD, uploadQueue, discardTransformedItem);
+		}
+	}
+
+	private static void stop(final ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			// Workers blocked in calls that don't respond to interruption stop when the call returns
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOG.warn("Waiting for the workers of the archive pipeline to stop");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Interrupted while waiting for the workers of the archive pipeline to stop", e);
+		}
+	}
+
+	private void startStage(final ExecutorService executor, final CompletableFuture<Void> completion, final StageWork stageWork) {
+		final var remainingWorkers = new AtomicInteger(stageWork.workers());
+
+		for (int i = 0; i < stageWork.workers(); i++) {
+			executor.submit(() -> {
+				try {
+					work(stageWork);
+
+					if (remainingWorkers.decrementAndGet() == 0) {
+						// The last worker of a stage tells the workers of the next stage that there is nothing more to come
+						if (stageWork.out() == null) {
+							completion.complete(null);
+						} else {
+							for (int j = 0; j < stageWork.downstreamWorkers(); j++) {
+								stageWork.out().put(END_OF_STAGE);
+							}
+						}
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					completion.completeExceptionally(e);
+				} catch (final RuntimeException | Error e) {
+					completion.completeExceptionally(e);
+				}
+			});
+		}
+	}
+
+	private void work(final StageWork stageWork) throws InterruptedException {
+		final var timer = stageTimers.get(stageWork.stage());
+		final var nextStage = nextStage(stageWork.stage());
+
+		while (true) {
+			final var item = stageWork.in().take();
+			if (item == END_OF_STAGE) {
+				return;
+			}
+			queueDepths.get(stageWork.stage()).decrementAndGet();
+
+			final Object result;
+			try {
+				result = timer.record(() -> stageWork.function().apply(item));
+			} catch (final RuntimeException | Error e) {
+				stageWork.discardIn().accept(item);
+				throw e;
+			}
+
+			if ((result != null) && (stageWork.out() != null)) {
+				queueDepths.get(nextStage).incrementAndGet();
+				try {
+					stageWork.out().put(result);
+				} catch (final InterruptedException e) {
+					queueDepths.get(nextStage).decrementAndGet();
+					stageWork.discardOut().accept(result);
+					throw e;
+				}
+			}
+		}
+	}
+
+	private void release(final Stage stage, final BlockingQueue<Object> queue, final Consumer<Object> discard) {
+		final var remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		remaining.stream()
+			.filter(item -> item != END_OF_STAGE)
+			.forEach(item -> {
+				queueDepths.get(stage).decrementAndGet();
+				discard.accept(item);
+			});
+	}
+
+	private static void discard(final Stage stage, final Runnable discard) {
+		try {
+			discard.run();
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to discard an item of the {} stage", stage, e);
+		}
+	}
+
+	private static Stage nextStage(final Stage stage) {
+		return switch (stage) {
+			case FETCH -> Stage.TRANSFORM;
+			case TRANSFORM, UPLOAD -> Stage.UPLOAD;
+		};
+	}
+
+	/**
+	 * The work of a stage: its queues, what it does with each item, and how items are discarded when the pipeline stops.
+	 */
+	private record StageWork(Stage stage, int workers, BlockingQueue<Object> in, BlockingQueue<Object> out, int downstreamWorkers,
+		Function<Object, Object> function, Consumer<Object> discardIn, Consumer<Object> discardOut) {}
+}
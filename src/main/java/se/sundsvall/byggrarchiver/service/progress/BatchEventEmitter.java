@@ -0,0 +1,160 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.mapToBatchProgressResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the progress events of a batch to a client as server-sent events. Sends a "page" event for every archived
+ * page, a "document" event for every stage a document passes and a "finished" event with the final progress, after
+ * which the stream is completed.
+ * <p>
+ * The threads archiving the batch only put the events in a small queue, and the events are sent to the client from a
+ * thread of its own, so that archiving never waits for a slow client. When the queue is full, page and document events
+ * are dropped, while the "finished" event is always sent.
+ */
+public class BatchEventEmitter extends SseEmitter implements BatchProgressListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchEventEmitter.class);
+
+	static final String PAGE_EVENT = "page";
+
+	static final String DOCUMENT_EVENT = "document";
+
+	static final String FINISHED_EVENT = "finished";
+
+	static final int QUEUE_CAPACITY = 256;
+
+	private static final Executor VIRTUAL_THREADS = command -> Thread.ofVirtual().name("batch-event-emitter").start(command);
+
+	private final Queue<Event> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final AtomicBoolean sending = new AtomicBoolean();
+
+	private final AtomicLong droppedEvents = new AtomicLong();
+
+	private final Executor executor;
+
+	private volatile BatchProgress finishedProgress;
+
+	private volatile boolean closed;
+
+	public BatchEventEmitter(final Duration timeout) {
+		this(timeout, VIRTUAL_THREADS);
+	}
+
+	BatchEventEmitter(final Duration timeout, final Executor executor) {
+		super(timeout.toMillis());
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts streaming the events of a batch. The emitter stops listening when the stream is completed, times out or
+	 * fails, so a client that goes away is not sent any more events.
+	 */
+	public void listenTo(final BatchProgress progress) {
+		onCompletion(() -> close(progress));
+		onTimeout(() -> close(progress));
+		onError(e -> close(progress));
+
+		progress.addListener(this);
+	}
+
+	@Override
+	public void onPage(final PageEvent event) {
+		enqueue(new Event(PAGE_EVENT, event));
+	}
+
+	@Override
+	public void onDocument(final DocumentEvent event) {
+		enqueue(new Event(DOCUMENT_EVENT, event));
+	}
+
+	@Override
+	public void onFinished(final BatchProgress progress) {
+		finishedProgress = progress;
+		scheduleSending();
+	}
+
+	long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	private void enqueue(final Event event) {
+		if (closed) {
+			return;
+		}
+
+		if (events.offer(event)) {
+			scheduleSending();
+		} else {
+			droppedEvents.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Starts sending the queued events, unless they are already being sent.
+	 */
+	private void scheduleSending() {
+		if (sending.compareAndSet(false, true)) {
+			executor.execute(this::sendEvents);
+		}
+	}
+
+	private void sendEvents() {
+		do {
+			try {
+				for (var event = events.poll(); (event != null) && !closed; event = events.poll()) {
+					sendEvent(event.name(), event.data());
+				}
+
+				final var progress = finishedProgress;
+				if ((progress != null) && !closed) {
+					closed = true;
+					sendEvent(FINISHED_EVENT, mapToBatchProgressResponse(progress));
+					complete();
+					if (droppedEvents.get() > 0) {
+						LOG.info("Dropped {} events of batch with ID: {} that the client could not keep up with", droppedEvents.get(), progress.getBatchHistoryId());
+					}
+				}
+				if (closed) {
+					events.clear();
+				}
+			} finally {
+				sending.set(false);
+			}
+			// Events queued after the last poll, but before sending was released, are sent by this thread
+		} while (hasPendingEvents() && sending.compareAndSet(false, true));
+	}
+
+	private boolean hasPendingEvents() {
+		return !closed && (!events.isEmpty() || (finishedProgress != null));
+	}
+
+	private void sendEvent(final String name, final Object data) {
+		try {
+			send(event().name(name).data(data));
+		} catch (final IOException | IllegalStateException e) {
+			// The client has gone away or the stream is already completed
+			LOG.debug("Unable to send {} event", name, e);
+			closed = true;
+			completeWithError(e);
+		}
+	}
+
+	private void close(final BatchProgress progress) {
+		closed = true;
+		progress.removeListener(this);
+	}
+
+	private record Event(String name, Object data) {}
+}
@@ -0,0 +1,119 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Live progress of a running batch. Updated by the threads archiving the batch and read by the status endpoint, so all
+ * counters are thread safe. Events are passed on to the listeners as they happen.
+ */
+public final class BatchProgress {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchProgress.class);
+
+	private final Long batchHistoryId;
+
+	private final AtomicLong pagesScanned = new AtomicLong();
+
+	private final AtomicLong documentsArchived = new AtomicLong();
+
+	private final AtomicLong documentsFailed = new AtomicLong();
+
+	private final AtomicLong bytesUploaded = new AtomicLong();
+
+	private final List<BatchProgressListener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile boolean running = true;
+
+	BatchProgress(final Long batchHistoryId) {
+		this.batchHistoryId = batchHistoryId;
+	}
+
+	public void pageScanned() {
+		pagesScanned.incrementAndGet();
+	}
+
+	/**
+	 * @param bytes size of the archived document, 0 if it was archived by an earlier batch
+	 */
+	public void documentArchived(final long bytes) {
+		documentsArchived.incrementAndGet();
+		bytesUploaded.addAndGet(bytes);
+	}
+
+	public void documentFailed() {
+		documentsFailed.incrementAndGet();
+	}
+
+	public void pageArchived(final PageEvent event) {
+		notifyListeners(listener -> listener.onPage(event));
+	}
+
+	public void documentStagePassed(final DocumentEvent event) {
+		notifyListeners(listener -> listener.onDocument(event));
+	}
+
+	/**
+	 * Adds a listener. If the batch has already finished the listener is told so at once.
+	 */
+	public synchronized void addListener(final BatchProgressListener listener) {
+		if (running) {
+			listeners.add(listener);
+		} else {
+			listener.onFinished(this);
+		}
+	}
+
+	public void removeListener(final BatchProgressListener listener) {
+		listeners.remove(listener);
+	}
+
+	synchronized void finish() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		notifyListeners(listener -> listener.onFinished(this));
+		listeners.clear();
+	}
+
+	private void notifyListeners(final Consumer<BatchProgressListener> notification) {
+		for (final var listener : listeners) {
+			try {
+				notification.accept(listener);
+			} catch (final RuntimeException e) {
+				// A failing listener must never stop the batch
+				LOG.warn("Progress listener of batch with ID: {} failed", batchHistoryId, e);
+				listeners.remove(listener);
+			}
+		}
+	}
+
+	public Long getBatchHistoryId() {
+		return batchHistoryId;
+	}
+
+	public long getPagesScanned() {
+		return pagesScanned.get();
+	}
+
+	public long getDocumentsArchived() {
+		return documentsArchived.get();
+	}
+
+	public long getDocumentsFailed() {
+		return documentsFailed.get();
+	}
+
+	public long getBytesUploaded() {
+		return bytesUploaded.get();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+}
@@ -0,0 +1,17 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+/**
+ * Listens to the progress of a running batch. Called from the threads archiving the batch, so a listener must be quick
+ * and must not throw.
+ */
+public interface BatchProgressListener {
+
+	default void onPage(final PageEvent event) {}
+
+	default void onDocument(final DocumentEvent event) {}
+
+	/**
+	 * Called once when the batch has finished, also if the listener was added after that.
+	 */
+	default void onFinished(final BatchProgress progress) {}
+}
@@ -0,0 +1,104 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the progress of running batches, and of the most recently finished ones, in memory. Progress is not persisted,
+ * so it is lost on restart, while the status of each batch is found in batch_history.
+ */
+@Component
+public class BatchProgressRegistry {
+
+	static final int MAX_FINISHED_BATCHES = 100;
+
+	private final Map<Long, BatchProgress> progressByBatchHistoryId = new LinkedHashMap<>() {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, BatchProgress> eldest) {
+			return (size() > MAX_FINISHED_BATCHES) && !eldest.getValue().isRunning();
+		}
+	};
+
+	// Progress of batches that are claimed but not yet started, guarded by progressByBatchHistoryId
+	private final Map<Long, BatchProgress> claimedProgressByBatchHistoryId = new HashMap<>();
+
+	/**
+	 * Claims a batch that is about to be run, unless it is already running or claimed. The batch counts as running from
+	 * now on, and its progress is taken over when the batch is started. If the batch is never started, the claim must be
+	 * released by finishing the progress.
+	 *
+	 * @param  batchHistoryId id of the batch
+	 * @return                the progress of the batch, or empty if the batch is already running
+	 */
+	public Optional<BatchProgress> claim(final Long batchHistoryId) {
+		synchronized (progressByBatchHistoryId) {
+			if (isRunning(batchHistoryId)) {
+				return Optional.empty();
+			}
+
+			final var progress = new BatchProgress(batchHistoryId);
+			progressByBatchHistoryId.remove(batchHistoryId);
+			progressByBatchHistoryId.put(batchHistoryId, progress);
+			claimedProgressByBatchHistoryId.put(batchHistoryId, progress);
+			return Optional.of(progress);
+		}
+	}
+
+	/**
+	 * Starts tracking the progress of a batch. Takes over the progress of the batch if it is claimed, and otherwise
+	 * replaces the progress of an earlier run of the same batch.
+	 *
+	 * @param  batchHistoryId id of the batch, progress of a batch without id is not kept
+	 * @return                the progress of the batch
+	 */
+	public BatchProgress start(final Long batchHistoryId) {
+		if (batchHistoryId == null) {
+			return new BatchProgress(null);
+		}
+
+		synchronized (progressByBatchHistoryId) {
+			final var claimedProgress = claimedProgressByBatchHistoryId.remove(batchHistoryId);
+			if (claimedProgress != null) {
+				return claimedProgress;
+			}
+
+			final var progress = new BatchProgress(batchHistoryId);
+			progressByBatchHistoryId.remove(batchHistoryId);
+			progressByBatchHistoryId.put(batchHistoryId, progress);
+			return progress;
+		}
+	}
+
+	/**
+	 * Finishes the progress of a batch, which also releases the claim of a batch that was never started. Finishing a
+	 * progress again does nothing.
+	 */
+	public void finish(final BatchProgress progress) {
+		if (progress.getBatchHistoryId() != null) {
+			synchronized (progressByBatchHistoryId) {
+				claimedProgressByBatchHistoryId.remove(progress.getBatchHistoryId(), progress);
+			}
+		}
+		progress.finish();
+	}
+
+	public Optional<BatchProgress> find(final Long batchHistoryId) {
+		if (batchHistoryId == null) {
+			return Optional.empty();
+		}
+
+		synchronized (progressByBatchHistoryId) {
+			return Optional.ofNullable(progressByBatchHistoryId.get(batchHistoryId));
+		}
+	}
+
+	public boolean isRunning(final Long batchHistoryId) {
+		return find(batchHistoryId)
+			.map(BatchProgress::isRunning)
+			.orElse(false);
+	}
+}
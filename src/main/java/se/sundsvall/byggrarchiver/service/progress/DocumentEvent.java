@@ -0,0 +1,26 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
+
+/**
+ * A document has passed a stage of the archiving.
+ *
+ * @param batchHistoryId id of the batch
+ * @param caseId         the dnr of the case
+ * @param documentId     id of the document in ByggR
+ * @param stage          the stage that was passed
+ * @param durationMillis time spent in the stage
+ * @param bytes          size of the document, 0 if not known in the stage
+ * @param archiveStatus  status of the document after the stage
+ */
+public record DocumentEvent(Long batchHistoryId, String caseId, String documentId, Stage stage, long durationMillis, long bytes, ArchiveStatus archiveStatus) {
+
+	public enum Stage {
+		/** The document was fetched from ByggR */
+		FETCH,
+		/** The request to Archive was created, with the metadata of the document */
+		TRANSFORM,
+		/** The document was sent to Archive, which includes TRANSFORM when the staged pipeline is not used */
+		UPLOAD
+	}
+}
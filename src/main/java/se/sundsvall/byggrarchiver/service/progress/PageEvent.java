@@ -0,0 +1,15 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import java.time.LocalDateTime;
+
+/**
+ * A page of updated cases from ByggR has been archived.
+ *
+ * @param batchHistoryId id of the batch
+ * @param start          where ByggR says that the page started, null if it didn't say
+ * @param end            where ByggR says that the page ended, null if it didn't say
+ * @param cases          number of updated cases in the page
+ * @param documents      number of documents of closed cases in the page
+ * @param durationMillis time it took to archive the documents of the page
+ */
+public record PageEvent(Long batchHistoryId, LocalDateTime start, LocalDateTime end, int cases, int documents, long durationMillis) {}
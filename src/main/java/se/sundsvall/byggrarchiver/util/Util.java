@@ -2,7 +2,6 @@ package se.sundsvall.byggrarchiver.util;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
-import java.util.Base64;
 import java.util.Optional;
 import net.sf.jmimemagic.Magic;
 import net.sf.jmimemagic.MagicException;
@@ -18,13 +17,6 @@ public final class Util {
 
 	private Util() {}
 
-	public static String byteArrayToBase64(final byte[] byteArray) {
-		if (byteArray == null) {
-			return null;
-		}
-		return Base64.getEncoder().encodeToString(byteArray);
-	}
-
 	public static String getExtensionFromByteArray(final byte[] byteArray) throws ApplicationException {
 		try {
 			var magicMatch = Magic.getMagicMatch(byteArray);
@@ -0,0 +1,6 @@
+    create table high_water_mark (
+        processed_until datetime(6) not null,
+        timestamp datetime(6) not null,
+        municipality_id varchar(255) not null,
+        primary key (municipality_id)
+    ) engine=InnoDB;
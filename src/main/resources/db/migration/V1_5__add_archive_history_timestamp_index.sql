@@ -0,0 +1,2 @@
+create index archive_history_timestamp_idx
+    on archive_history (timestamp);
@@ -0,0 +1,4 @@
+alter table if exists archive_history
+    add column file_extension varchar(255),
+    add column file_size bigint,
+    add column content_hash varchar(255);
@@ -0,0 +1,2 @@
+alter table if exists batch_history
+    add column start_after datetime(6);
@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomArchiveHistory;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomBatchHistory;
@@ -11,6 +13,7 @@ import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomBatchHis
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.getRandomEnumValue;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomLong;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,10 +24,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import se.sundsvall.byggrarchiver.Application;
 import se.sundsvall.byggrarchiver.api.model.ArchiveHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.BatchHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.BatchJob;
+import se.sundsvall.byggrarchiver.api.model.BatchProgressResponse;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
@@ -151,4 +156,96 @@ class ByggrArchiverResourceTest {
 			.expectBody(BatchHistory.class);
 	}
 
+	@Test
+	void postBatchJobAsync() {
+		final var batchJob = BatchJob.builder()
+			.withStart(LocalDate.now().minusDays(3))
+			.withEnd(LocalDate.now())
+			.build();
+
+		final var batchHistory = BatchHistoryResponse.builder()
+			.withId(randomLong())
+			.withBatchTrigger(BatchTrigger.MANUAL)
+			.withArchiveStatus(ArchiveStatus.NOT_COMPLETED)
+			.withStart(batchJob.getStart())
+			.withEnd(batchJob.getEnd())
+			.build();
+
+		when(mockByggrArchiverService.startBatch(batchJob.getStart(), batchJob.getEnd(), MUNICIPALITY_ID)).thenReturn(batchHistory);
+
+		final var result = webTestClient.post()
+			.uri(BATCH_PATH + "?async=true", MUNICIPALITY_ID)
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(batchJob)
+			.exchange()
+			.expectStatus().isAccepted()
+			.expectBody(BatchHistoryResponse.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(result).isNotNull();
+		assertThat(result.getId()).isEqualTo(batchHistory.getId());
+		verify(mockByggrArchiverService, never()).runBatch(any(), any(), any(), any());
+	}
+
+	@Test
+	void reRunBatchJobAsync() {
+		final var batchHistory = createRandomBatchHistoryResponse();
+		when(mockByggrArchiverService.startReRunBatch(batchHistory.getId(), MUNICIPALITY_ID)).thenReturn(batchHistory);
+
+		webTestClient.post()
+			.uri(BATCH_PATH + "/{batchHistoryId}/rerun?async=true", MUNICIPALITY_ID, batchHistory.getId())
+			.exchange()
+			.expectStatus().isAccepted()
+			.expectBody()
+			.jsonPath("$.id").isEqualTo(batchHistory.getId());
+
+		verify(mockByggrArchiverService, never()).reRunBatch(any(), any());
+	}
+
+	@Test
+	void getBatchJob() {
+		final var batchHistory = createRandomBatchHistoryResponse();
+		batchHistory.setProgress(BatchProgressResponse.builder()
+			.withRunning(true)
+			.withPagesScanned(2L)
+			.withDocumentsArchived(5L)
+			.withDocumentsFailed(1L)
+			.withBytesUploaded(4096L)
+			.build());
+		when(mockByggrArchiverService.getBatchHistory(batchHistory.getId(), MUNICIPALITY_ID)).thenReturn(batchHistory);
+
+		final var result = webTestClient.get()
+			.uri(BATCH_PATH + "/{batchHistoryId}", MUNICIPALITY_ID, batchHistory.getId())
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody(BatchHistoryResponse.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(result).isNotNull();
+		assertThat(result.getProgress()).isEqualTo(batchHistory.getProgress());
+	}
+
+	@Test
+	void getBatchJobEvents() throws IOException {
+		final var batchHistoryId = randomLong();
+		final var emitter = new SseEmitter();
+		emitter.send(SseEmitter.event().name("finished").data(BatchProgressResponse.builder().withRunning(false).withPagesScanned(2L).build()));
+		emitter.complete();
+		when(mockByggrArchiverService.streamBatchEvents(batchHistoryId, MUNICIPALITY_ID)).thenReturn(emitter);
+
+		final var result = webTestClient.get()
+			.uri(BATCH_PATH + "/{batchHistoryId}/events", MUNICIPALITY_ID, batchHistoryId)
+			.accept(MediaType.TEXT_EVENT_STREAM)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+			.expectBody(String.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(result).contains("event:finished").contains("\"pagesScanned\":2");
+	}
+
 }
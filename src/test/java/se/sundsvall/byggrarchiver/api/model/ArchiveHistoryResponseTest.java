@@ -42,6 +42,9 @@ class ArchiveHistoryResponseTest {
 		final var caseId = "caseId";
 		final var documentName = "documentName";
 		final var documentType = "documentType";
+		final var fileExtension = "pdf";
+		final var fileSize = 1024L;
+		final var contentHash = "contentHash";
 		final var archiveId = "archiveId";
 		final var archiveUrl = "archiveUrl";
 		final var archiveStatus = ArchiveStatus.COMPLETED;
@@ -54,6 +57,9 @@ class ArchiveHistoryResponseTest {
 			.withCaseId(caseId)
 			.withDocumentName(documentName)
 			.withDocumentType(documentType)
+			.withFileExtension(fileExtension)
+			.withFileSize(fileSize)
+			.withContentHash(contentHash)
 			.withArchiveId(archiveId)
 			.withArchiveUrl(archiveUrl)
 			.withArchiveStatus(archiveStatus)
@@ -67,6 +73,9 @@ class ArchiveHistoryResponseTest {
 		assertThat(archiveHistoryResponse.getCaseId()).isEqualTo(caseId);
 		assertThat(archiveHistoryResponse.getDocumentName()).isEqualTo(documentName);
 		assertThat(archiveHistoryResponse.getDocumentType()).isEqualTo(documentType);
+		assertThat(archiveHistoryResponse.getFileExtension()).isEqualTo(fileExtension);
+		assertThat(archiveHistoryResponse.getFileSize()).isEqualTo(fileSize);
+		assertThat(archiveHistoryResponse.getContentHash()).isEqualTo(contentHash);
 		assertThat(archiveHistoryResponse.getArchiveId()).isEqualTo(archiveId);
 		assertThat(archiveHistoryResponse.getArchiveUrl()).isEqualTo(archiveUrl);
 		assertThat(archiveHistoryResponse.getArchiveStatus()).isEqualTo(archiveStatus);
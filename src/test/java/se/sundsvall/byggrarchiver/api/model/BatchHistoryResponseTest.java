@@ -41,18 +41,22 @@ class BatchHistoryResponseTest {
 		final var id = 1L;
 		final var start = LocalDate.now();
 		final var end = LocalDate.now();
+		final var startAfter = LocalDateTime.now().minusDays(1);
 		final var archiveStatus = ArchiveStatus.COMPLETED;
 		final var batchTrigger = BatchTrigger.MANUAL;
 		final var timestamp = LocalDateTime.now();
+		final var progress = BatchProgressResponse.builder().withRunning(false).build();
 
 		// Act
 		final var batchHistoryResponse = BatchHistoryResponse.builder()
 			.withId(id)
 			.withStart(start)
 			.withEnd(end)
+			.withStartAfter(startAfter)
 			.withArchiveStatus(archiveStatus)
 			.withBatchTrigger(batchTrigger)
 			.withTimestamp(timestamp)
+			.withProgress(progress)
 			.build();
 
 		// Assert
@@ -60,9 +64,11 @@ class BatchHistoryResponseTest {
 		assertThat(batchHistoryResponse.getId()).isEqualTo(id);
 		assertThat(batchHistoryResponse.getStart()).isEqualTo(start);
 		assertThat(batchHistoryResponse.getEnd()).isEqualTo(end);
+		assertThat(batchHistoryResponse.getStartAfter()).isEqualTo(startAfter);
 		assertThat(batchHistoryResponse.getArchiveStatus()).isEqualTo(archiveStatus);
 		assertThat(batchHistoryResponse.getBatchTrigger()).isEqualTo(batchTrigger);
 		assertThat(batchHistoryResponse.getTimestamp()).isEqualTo(timestamp);
+		assertThat(batchHistoryResponse.getProgress()).isEqualTo(progress);
 	}
 
 	@Test
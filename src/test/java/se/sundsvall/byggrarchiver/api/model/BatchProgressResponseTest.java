@@ -0,0 +1,59 @@
+package se.sundsvall.byggrarchiver.api.model;
+
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanConstructor;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanEquals;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanHashCode;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanToString;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidGettersAndSetters;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.Test;
+
+class BatchProgressResponseTest {
+
+	@Test
+	void testBean() {
+		MatcherAssert.assertThat(BatchProgressResponse.class, allOf(
+			hasValidBeanConstructor(),
+			hasValidGettersAndSetters(),
+			hasValidBeanHashCode(),
+			hasValidBeanEquals(),
+			hasValidBeanToString()));
+	}
+
+	@Test
+	void builder() {
+		// Arrange
+		final var running = true;
+		final var pagesScanned = 1L;
+		final var documentsArchived = 2L;
+		final var documentsFailed = 3L;
+		final var bytesUploaded = 4L;
+
+		// Act
+		final var batchProgressResponse = BatchProgressResponse.builder()
+			.withRunning(running)
+			.withPagesScanned(pagesScanned)
+			.withDocumentsArchived(documentsArchived)
+			.withDocumentsFailed(documentsFailed)
+			.withBytesUploaded(bytesUploaded)
+			.build();
+
+		// Assert
+		assertThat(batchProgressResponse).isNotNull().hasNoNullFieldsOrProperties();
+		assertThat(batchProgressResponse.getRunning()).isEqualTo(running);
+		assertThat(batchProgressResponse.getPagesScanned()).isEqualTo(pagesScanned);
+		assertThat(batchProgressResponse.getDocumentsArchived()).isEqualTo(documentsArchived);
+		assertThat(batchProgressResponse.getDocumentsFailed()).isEqualTo(documentsFailed);
+		assertThat(batchProgressResponse.getBytesUploaded()).isEqualTo(bytesUploaded);
+	}
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(BatchProgressResponse.builder().build()).hasAllNullFieldsOrProperties();
+		assertThat(new BatchProgressResponse()).hasAllNullFieldsOrProperties();
+	}
+
+}
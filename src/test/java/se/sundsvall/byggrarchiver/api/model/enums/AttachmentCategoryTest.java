@@ -0,0 +1,35 @@
+package se.sundsvall.byggrarchiver.api.model.enums;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.BIL;
+import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.FARG;
+import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.GEO;
+
+import org.junit.jupiter.api.Test;
+
+class AttachmentCategoryTest {
+
+	@Test
+	void fromCode() {
+		assertThat(AttachmentCategory.fromCode("GEO")).isEqualTo(GEO);
+		// The code is not always the name of the constant
+		assertThat(AttachmentCategory.fromCode("FÄRG")).isEqualTo(FARG);
+		assertThatIllegalArgumentException().isThrownBy(() -> AttachmentCategory.fromCode("UNKNOWN"))
+			.withMessage("No attachment category 'UNKNOWN'");
+	}
+
+	@Test
+	void fromCodeWithDefault() {
+		assertThat(AttachmentCategory.fromCode("GEO", BIL)).isEqualTo(GEO);
+		assertThat(AttachmentCategory.fromCode("UNKNOWN", BIL)).isEqualTo(BIL);
+		assertThat(AttachmentCategory.fromCode(null, BIL)).isEqualTo(BIL);
+	}
+
+	@Test
+	void everyCategoryIsFoundByItsCode() {
+		for (final var attachmentCategory : AttachmentCategory.values()) {
+			assertThat(AttachmentCategory.fromCode(attachmentCategory.getCode())).isEqualTo(attachmentCategory);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package se.sundsvall.byggrarchiver.integration.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import generated.se.sundsvall.archive.Attachment;
+import generated.se.sundsvall.archive.ByggRArchiveRequest;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ArchiveRequestEncoderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final ArchiveRequestEncoder encoder = new ArchiveRequestEncoder(objectMapper);
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		0, 1, 2, 3, 100_000
+	})
+	void encodeStreamedAttachment(final int size) throws Exception {
+		final var content = new byte[size];
+		new Random(1).nextBytes(content);
+		final var archiveRequest = new ByggRArchiveRequest()
+			.metadata("<Leveransobjekt>\"Ritning\" & fasad</Leveransobjekt>")
+			.attachment(new StreamedAttachment(() -> new ByteArrayInputStream(content), size)
+				.name("Ritning.pdf")
+				.extension(".pdf"));
+		final var template = new RequestTemplate();
+
+		encoder.encode(archiveRequest, ByggRArchiveRequest.class, template);
+
+		final var json = objectMapper.readTree(template.body());
+		assertThat(json.get("metadata").asText()).isEqualTo("<Leveransobjekt>\"Ritning\" & fasad</Leveransobjekt>");
+		assertThat(json.get("attachment").get("name").asText()).isEqualTo("Ritning.pdf");
+		assertThat(json.get("attachment").get("extension").asText()).isEqualTo(".pdf");
+		assertThat(Base64.getDecoder().decode(json.get("attachment").get("file").asText())).isEqualTo(content);
+	}
+
+	@Test
+	void encodeStreamedAttachmentRegardlessOfObjectMapper() throws Exception {
+		final var content = new byte[] {
+			1, 2, 3, 4
+		};
+		final var archiveRequest = new ByggRArchiveRequest()
+			.metadata("metadata")
+			.attachment(new StreamedAttachment(() -> new ByteArrayInputStream(content), content.length)
+				.name("Ritning.pdf")
+				.extension(".pdf"));
+		final var template = new RequestTemplate();
+
+		// The body of a streamed attachment is not written by the object mapper of the application
+		new ArchiveRequestEncoder(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT))
+			.encode(archiveRequest, ByggRArchiveRequest.class, template);
+
+		assertThat(new String(template.body(), UTF_8))
+			.isEqualTo("{\"metadata\":\"metadata\",\"attachment\":{\"name\":\"Ritning.pdf\",\"extension\":\".pdf\",\"file\":\"AQIDBA==\"}}");
+	}
+
+	@Test
+	void encodeAttachment() throws Exception {
+		final var archiveRequest = new ByggRArchiveRequest()
+			.metadata("metadata")
+			.attachment(new Attachment()
+				.name("Ritning.pdf")
+				.extension(".pdf")
+				.file("AQID"));
+		final var template = new RequestTemplate();
+
+		encoder.encode(archiveRequest, ByggRArchiveRequest.class, template);
+
+		assertThat(template.body()).isEqualTo(objectMapper.writeValueAsBytes(archiveRequest));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		4, 6
+	})
+	void encodeStreamedAttachmentOfWrongSize(final int size) {
+		final var archiveRequest = new ByggRArchiveRequest()
+			.metadata("metadata")
+			.attachment(new StreamedAttachment(() -> new ByteArrayInputStream(new byte[5]), size)
+				.name("Ritning.pdf")
+				.extension(".pdf"));
+		final var template = new RequestTemplate();
+
+		assertThatExceptionOfType(EncodeException.class)
+			.isThrownBy(() -> encoder.encode(archiveRequest, ByggRArchiveRequest.class, template));
+	}
+
+	@Test
+	void encodeStreamedAttachmentOfDeletedFile(@TempDir final Path directory) throws Exception {
+		final var file = Files.write(directory.resolve("getdocument-1"), new byte[] {
+			1, 2, 3
+		});
+		final var archiveRequest = new ByggRArchiveRequest()
+			.metadata("metadata")
+			.attachment(new StreamedAttachment(() -> Files.newInputStream(file), Files.size(file))
+				.name("Ritning.pdf")
+				.extension(".pdf"));
+		final var template = new RequestTemplate();
+
+		// The spooled file is deleted before the request is sent
+		Files.delete(file);
+
+		assertThatExceptionOfType(EncodeException.class)
+			.isThrownBy(() -> encoder.encode(archiveRequest, ByggRArchiveRequest.class, template))
+			.withCauseInstanceOf(NoSuchFileException.class);
+	}
+
+	@Test
+	void encodeOtherRequest() {
+		final var template = new RequestTemplate();
+
+		assertThatExceptionOfType(EncodeException.class)
+			.isThrownBy(() -> encoder.encode("request", String.class, template));
+	}
+}
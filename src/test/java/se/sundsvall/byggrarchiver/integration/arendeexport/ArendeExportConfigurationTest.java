@@ -4,6 +4,7 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import feign.codec.Decoder;
 import feign.soap.SOAPDecoder;
 import feign.soap.SOAPEncoder;
 import feign.soap.SOAPErrorDecoder;
@@ -36,6 +37,7 @@ class ArendeExportConfigurationTest {
 
 		when(propertiesMock.connectTimeout()).thenReturn(1);
 		when(propertiesMock.readTimeout()).thenReturn(2);
+		when(propertiesMock.documentSpool()).thenReturn(new ArendeExportProperties.DocumentSpool(false, null));
 		when(feignMultiCustomizerSpy.composeCustomizersToOne()).thenReturn(feignBuilderCustomizerMock);
 
 		try (final MockedStatic<FeignMultiCustomizer> feignMultiCustomizerMock = Mockito.mockStatic(FeignMultiCustomizer.class)) {
@@ -62,4 +64,23 @@ class ArendeExportConfigurationTest {
 		}
 	}
 
+	@Test
+	void testFeignBuilderCustomizerWithDocumentSpool() {
+		final var configuration = new ArendeExportConfiguration();
+
+		when(propertiesMock.documentSpool()).thenReturn(new ArendeExportProperties.DocumentSpool(true, "target/spool"));
+		when(feignMultiCustomizerSpy.composeCustomizersToOne()).thenReturn(feignBuilderCustomizerMock);
+
+		try (final MockedStatic<FeignMultiCustomizer> feignMultiCustomizerMock = Mockito.mockStatic(FeignMultiCustomizer.class)) {
+			feignMultiCustomizerMock.when(FeignMultiCustomizer::create).thenReturn(feignMultiCustomizerSpy);
+
+			configuration.feignBuilderCustomizer(propertiesMock);
+
+			final ArgumentCaptor<Decoder> decoderCaptor = ArgumentCaptor.forClass(Decoder.class);
+			verify(feignMultiCustomizerSpy).withDecoder(decoderCaptor.capture());
+
+			assertThat(decoderCaptor.getValue()).isInstanceOf(GetDocumentResponseDecoder.class);
+		}
+	}
+
 }
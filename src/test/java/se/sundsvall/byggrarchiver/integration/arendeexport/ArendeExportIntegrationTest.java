@@ -3,6 +3,7 @@ package se.sundsvall.byggrarchiver.integration.arendeexport;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -13,6 +14,8 @@ import generated.se.sundsvall.arendeexport.Dokument;
 import generated.se.sundsvall.arendeexport.GetDocument;
 import generated.se.sundsvall.arendeexport.GetDocumentResponse;
 import generated.se.sundsvall.arendeexport.GetUpdatedArenden;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCount;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCountResponse;
 import generated.se.sundsvall.arendeexport.GetUpdatedArendenResponse;
 import jakarta.xml.ws.soap.SOAPFaultException;
 import java.util.UUID;
@@ -47,6 +50,21 @@ class ArendeExportIntegrationTest {
 			});
 	}
 
+	@Test
+	void getUpdatedArendenCountError() {
+		when(mockClient.getUpdatedArendenCount(any(GetUpdatedArendenCount.class)))
+			.thenThrow(SOAPFaultException.class);
+
+		final var batchFilter = new BatchFilter();
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> integration.getUpdatedArendenCount(batchFilter))
+			.satisfies(throwableProblem -> {
+				assertThat(throwableProblem.getStatus()).isEqualTo(SERVICE_UNAVAILABLE);
+				assertThat(throwableProblem.getDetail()).startsWith("ArendeExport integration failed");
+			});
+	}
+
 	@Test
 	void getDocumentError() {
 		when(mockClient.getDocument(any(GetDocument.class)))
@@ -99,4 +117,21 @@ class ArendeExportIntegrationTest {
 		verifyNoMoreInteractions(mockClient);
 	}
 
+	@Test
+	void getUpdatedArendenCount() {
+		// Arrange
+		final var updatedArendenCountResponse = new GetUpdatedArendenCountResponse().withGetUpdatedArendenCountResult(42);
+		final var batchFilter = new BatchFilter();
+
+		when(mockClient.getUpdatedArendenCount(any())).thenReturn(updatedArendenCountResponse);
+
+		// Act
+		final var response = integration.getUpdatedArendenCount(batchFilter);
+
+		// Assert and verify
+		assertThat(response).isEqualTo(42);
+		verify(mockClient).getUpdatedArendenCount(argThat(request -> request.getFilter() == batchFilter));
+		verifyNoMoreInteractions(mockClient);
+	}
+
 }
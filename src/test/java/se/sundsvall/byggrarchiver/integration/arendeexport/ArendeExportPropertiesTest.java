@@ -2,6 +2,7 @@ package se.sundsvall.byggrarchiver.integration.arendeexport;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Path;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -19,6 +20,8 @@ class ArendeExportPropertiesTest {
 	void testProperties() {
 		assertThat(properties.connectTimeout()).isEqualTo(1);
 		assertThat(properties.readTimeout()).isEqualTo(2);
+		assertThat(properties.documentSpool().enabled()).isTrue();
+		assertThat(properties.documentSpool().directoryPath()).isEqualTo(Path.of("target/spool"));
 	}
 
 }
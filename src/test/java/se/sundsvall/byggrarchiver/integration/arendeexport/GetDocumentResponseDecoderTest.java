@@ -0,0 +1,177 @@
+package se.sundsvall.byggrarchiver.integration.arendeexport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import feign.Request;
+import feign.Response;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+import feign.jaxb.JAXBContextFactory;
+import generated.se.sundsvall.arendeexport.GetDocumentResponse;
+import generated.se.sundsvall.arendeexport.GetUpdatedArendenCountResponse;
+import jakarta.xml.ws.soap.SOAPFaultException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class GetDocumentResponseDecoderTest {
+
+	private static final String ENVELOPE = """
+		<?xml version="1.0" encoding="utf-8"?>
+		<s:Envelope xmlns:s="http://schemas.xmlsoap.org/soap/envelope/">
+			<s:Body>%s</s:Body>
+		</s:Envelope>
+		""";
+
+	@Mock
+	private Decoder mockDelegate;
+
+	@TempDir
+	private Path directory;
+
+	private GetDocumentResponseDecoder decoder;
+
+	@BeforeEach
+	void setUp() {
+		decoder = new GetDocumentResponseDecoder(new JAXBContextFactory.Builder().build(), mockDelegate, directory);
+	}
+
+	@Test
+	void decode() throws Exception {
+		final var content = new byte[100_000];
+		new Random(1).nextBytes(content);
+		final var contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+		final var result = (GetDocumentResponse) decoder.decode(createResponse("""
+			<GetDocumentResponse xmlns="www.tekis.se/ServiceContract" xmlns:a="www.tekis.se/arende">
+				<GetDocumentResult dokId="1">
+					<a:namn>Ritning</a:namn>
+					<a:fil filAndelse="pdf"><a:filBuffer>%s</a:filBuffer></a:fil>
+				</GetDocumentResult>
+				<GetDocumentResult dokId="2">
+					<a:namn>Beskrivning</a:namn>
+				</GetDocumentResult>
+			</GetDocumentResponse>
+			""".formatted(Base64.getMimeEncoder().encodeToString(content))), GetDocumentResponse.class);
+
+		assertThat(result.getGetDocumentResult()).hasSize(2);
+		final var dokument = result.getGetDocumentResult().getFirst();
+		assertThat(dokument.getDokId()).isEqualTo("1");
+		assertThat(dokument.getNamn()).isEqualTo("Ritning");
+		assertThat(dokument.getFil()).isInstanceOfSatisfying(SpooledDokumentFil.class, fil -> {
+			assertThat(fil.getFilAndelse()).isEqualTo("pdf");
+			assertThat(fil.size()).isEqualTo(content.length);
+			assertThat(fil.path()).hasParent(directory);
+			assertThat(fil.getFilBuffer()).isEqualTo(content);
+			assertThat(fil.readHeader(10)).isEqualTo(Arrays.copyOf(content, 10));
+			assertThat(fil.contentHash()).isEqualTo(contentHash);
+		});
+		assertThat(result.getGetDocumentResult().getLast().getFil()).isNull();
+
+		// The temporary file is deleted when the file is closed
+		SpooledDokumentFil.closeAll(result.getGetDocumentResult());
+		assertThat(directory).isEmptyDirectory();
+	}
+
+	@Test
+	void decodeEmptyContent() throws Exception {
+		final var result = (GetDocumentResponse) decoder.decode(createResponse("""
+			<GetDocumentResponse xmlns="www.tekis.se/ServiceContract" xmlns:a="www.tekis.se/arende">
+				<GetDocumentResult dokId="1"><a:fil filAndelse="txt"><a:filBuffer/></a:fil></GetDocumentResult>
+			</GetDocumentResponse>
+			"""), GetDocumentResponse.class);
+
+		assertThat(result.getGetDocumentResult().getFirst().getFil()).isInstanceOfSatisfying(SpooledDokumentFil.class, fil -> {
+			assertThat(fil.size()).isZero();
+			assertThat(fil.contentHash()).isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+			assertThat(fil.getFilBuffer()).isEmpty();
+		});
+	}
+
+	@Test
+	void decodeInvalidContent() {
+		final var response = createResponse("""
+			<GetDocumentResponse xmlns="www.tekis.se/ServiceContract" xmlns:a="www.tekis.se/arende">
+				<GetDocumentResult dokId="1"><a:fil><a:filBuffer>AAAA</a:filBuffer></a:fil></GetDocumentResult>
+				<GetDocumentResult dokId="2"><a:fil><a:filBuffer>not base64</a:filBuffer></a:fil></GetDocumentResult>
+			</GetDocumentResponse>
+			""");
+
+		assertThatExceptionOfType(DecodeException.class)
+			.isThrownBy(() -> decoder.decode(response, GetDocumentResponse.class));
+
+		// Files spooled before the error are deleted too
+		assertThat(directory).isEmptyDirectory();
+	}
+
+	@Test
+	void decodeFault() {
+		final var response = createResponse("""
+			<s:Fault>
+				<faultcode>s:Client</faultcode>
+				<faultstring xml:lang="sv-SE">Dokumentet finns inte</faultstring>
+			</s:Fault>
+			""");
+
+		assertThatExceptionOfType(SOAPFaultException.class)
+			.isThrownBy(() -> decoder.decode(response, GetDocumentResponse.class))
+			.satisfies(e -> {
+				assertThat(e.getFault().getFaultString()).isEqualTo("Dokumentet finns inte");
+				assertThat(e.getFault().getFaultCodeAsQName().getLocalPart()).isEqualTo("Client");
+			});
+	}
+
+	@Test
+	void decodeOtherResponse() throws Exception {
+		final var response = createResponse("<GetUpdatedArendenCountResponse/>");
+		final var countResponse = new GetUpdatedArendenCountResponse();
+		when(mockDelegate.decode(response, GetUpdatedArendenCountResponse.class)).thenReturn(countResponse);
+
+		assertThat(decoder.decode(response, GetUpdatedArendenCountResponse.class)).isSameAs(countResponse);
+
+		verify(mockDelegate).decode(response, GetUpdatedArendenCountResponse.class);
+	}
+
+	@Test
+	void decodeNotFound() throws Exception {
+		final var response = Response.builder()
+			.status(404)
+			.request(createRequest())
+			.headers(Map.of())
+			.build();
+
+		assertThat(decoder.decode(response, GetDocumentResponse.class)).isNull();
+
+		verifyNoInteractions(mockDelegate);
+	}
+
+	private static Response createResponse(final String body) {
+		return Response.builder()
+			.status(200)
+			.reason("OK")
+			.request(createRequest())
+			.headers(Map.of())
+			.body(ENVELOPE.formatted(body), UTF_8)
+			.build();
+	}
+
+	private static Request createRequest() {
+		return Request.create(Request.HttpMethod.POST, "http://arendeexport.url", Map.of(), null, UTF_8, null);
+	}
+}
@@ -40,6 +40,9 @@ class ArchiveHistoryTest {
 		final var caseId = "caseId";
 		final var documentName = "documentName";
 		final var documentType = "documentType";
+		final var fileExtension = "pdf";
+		final var fileSize = 1024L;
+		final var contentHash = "contentHash";
 		final var archiveId = "archiveId";
 		final var archiveUrl = "archiveUrl";
 		final var archiveStatus = ArchiveStatus.COMPLETED;
@@ -53,6 +56,9 @@ class ArchiveHistoryTest {
 			.withCaseId(caseId)
 			.withDocumentName(documentName)
 			.withDocumentType(documentType)
+			.withFileExtension(fileExtension)
+			.withFileSize(fileSize)
+			.withContentHash(contentHash)
 			.withArchiveId(archiveId)
 			.withArchiveUrl(archiveUrl)
 			.withArchiveStatus(archiveStatus)
@@ -67,6 +73,9 @@ class ArchiveHistoryTest {
 		assertThat(archiveHistory.getCaseId()).isEqualTo(caseId);
 		assertThat(archiveHistory.getDocumentName()).isEqualTo(documentName);
 		assertThat(archiveHistory.getDocumentType()).isEqualTo(documentType);
+		assertThat(archiveHistory.getFileExtension()).isEqualTo(fileExtension);
+		assertThat(archiveHistory.getFileSize()).isEqualTo(fileSize);
+		assertThat(archiveHistory.getContentHash()).isEqualTo(contentHash);
 		assertThat(archiveHistory.getArchiveId()).isEqualTo(archiveId);
 		assertThat(archiveHistory.getArchiveUrl()).isEqualTo(archiveUrl);
 		assertThat(archiveHistory.getArchiveStatus()).isEqualTo(archiveStatus);
@@ -42,8 +42,10 @@ class BatchHistoryTest {
 		final var id = 1L;
 		final var start = LocalDate.now();
 		final var end = LocalDate.now();
+		final var startAfter = LocalDateTime.now().minusDays(1);
 		final var archiveStatus = ArchiveStatus.COMPLETED;
 		final var batchTrigger = BatchTrigger.MANUAL;
+		final var checkpoint = LocalDateTime.now().minusHours(1);
 		final var timestamp = LocalDateTime.now();
 		final var municipalityId = "2281";
 
@@ -52,9 +54,11 @@ class BatchHistoryTest {
 			.withId(id)
 			.withStart(start)
 			.withEnd(end)
+			.withStartAfter(startAfter)
 			.withArchiveStatus(archiveStatus)
 			.withBatchTrigger(batchTrigger)
 			.withMunicipalityId(municipalityId)
+			.withCheckpoint(checkpoint)
 			.withTimestamp(timestamp)
 			.build();
 
@@ -63,8 +67,10 @@ class BatchHistoryTest {
 		assertThat(batchHistory.getId()).isEqualTo(id);
 		assertThat(batchHistory.getStart()).isEqualTo(start);
 		assertThat(batchHistory.getEnd()).isEqualTo(end);
+		assertThat(batchHistory.getStartAfter()).isEqualTo(startAfter);
 		assertThat(batchHistory.getArchiveStatus()).isEqualTo(archiveStatus);
 		assertThat(batchHistory.getBatchTrigger()).isEqualTo(batchTrigger);
+		assertThat(batchHistory.getCheckpoint()).isEqualTo(checkpoint);
 		assertThat(batchHistory.getTimestamp()).isEqualTo(timestamp);
 		assertThat(batchHistory.getMunicipalityId()).isEqualTo(municipalityId);
 	}
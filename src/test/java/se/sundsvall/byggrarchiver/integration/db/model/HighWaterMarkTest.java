@@ -0,0 +1,62 @@
+package se.sundsvall.byggrarchiver.integration.db.model;
+
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanConstructor;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanEquals;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanHashCode;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidBeanToString;
+import static com.google.code.beanmatchers.BeanMatchers.hasValidGettersAndSetters;
+import static com.google.code.beanmatchers.BeanMatchers.registerValueGenerator;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.core.AllOf.allOf;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomInt;
+
+import java.time.LocalDateTime;
+import org.hamcrest.MatcherAssert;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class HighWaterMarkTest {
+
+	@BeforeAll
+	static void setup() {
+		registerValueGenerator(() -> LocalDateTime.now().plusDays(randomInt()), LocalDateTime.class);
+	}
+
+	@Test
+	void testBean() {
+		MatcherAssert.assertThat(HighWaterMark.class, allOf(
+			hasValidBeanConstructor(),
+			hasValidGettersAndSetters(),
+			hasValidBeanHashCode(),
+			hasValidBeanEquals(),
+			hasValidBeanToString()));
+	}
+
+	@Test
+	void builder() {
+		// Arrange
+		final var municipalityId = "2281";
+		final var processedUntil = LocalDateTime.now().minusDays(1);
+		final var timestamp = LocalDateTime.now();
+
+		// Act
+		final var highWaterMark = HighWaterMark.builder()
+			.withMunicipalityId(municipalityId)
+			.withProcessedUntil(processedUntil)
+			.withTimestamp(timestamp)
+			.build();
+
+		// Assert
+		assertThat(highWaterMark).isNotNull().hasNoNullFieldsOrProperties();
+		assertThat(highWaterMark.getMunicipalityId()).isEqualTo(municipalityId);
+		assertThat(highWaterMark.getProcessedUntil()).isEqualTo(processedUntil);
+		assertThat(highWaterMark.getTimestamp()).isEqualTo(timestamp);
+	}
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(HighWaterMark.builder().build()).hasAllNullFieldsOrProperties();
+		assertThat(new HighWaterMark()).hasAllNullFieldsOrProperties();
+	}
+
+}
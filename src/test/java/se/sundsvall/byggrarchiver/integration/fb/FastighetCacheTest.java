@@ -0,0 +1,96 @@
+package se.sundsvall.byggrarchiver.integration.fb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import generated.sokigo.fb.FastighetDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FastighetCacheTest {
+
+	private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+	@Mock
+	private Clock mockClock;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private FastighetCache fastighetCache;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		fastighetCache = new FastighetCache(new FbIntegrationProperties.Cache(true, 2, Duration.ofHours(24), Duration.ofHours(1)), mockClock, meterRegistry);
+		lenient().when(mockClock.instant()).thenReturn(NOW);
+	}
+
+	@Test
+	void expiry() {
+		final var fastighetDto = new FastighetDto().fnr(123);
+		fastighetCache.put(123, fastighetDto);
+		fastighetCache.put(456, null);
+
+		when(mockClock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(59)));
+		assertThat(fastighetCache.get(123)).hasValueSatisfying(cached -> assertThat(cached.fastighetDto()).isEqualTo(fastighetDto));
+		assertThat(fastighetCache.get(456)).hasValueSatisfying(cached -> assertThat(cached.fastighetDto()).isNull());
+
+		// An empty result expires before a property
+		when(mockClock.instant()).thenReturn(NOW.plus(Duration.ofHours(1)));
+		assertThat(fastighetCache.get(123)).isPresent();
+		assertThat(fastighetCache.get(456)).isEmpty();
+
+		when(mockClock.instant()).thenReturn(NOW.plus(Duration.ofHours(24)));
+		assertThat(fastighetCache.get(123)).isEmpty();
+		assertThat(fastighetCache.size()).isZero();
+	}
+
+	@Test
+	void containsIsNotCounted() {
+		fastighetCache.put(123, new FastighetDto().fnr(123));
+		fastighetCache.put(456, null);
+
+		assertThat(fastighetCache.contains(123)).isTrue();
+		assertThat(fastighetCache.contains(456)).isTrue();
+		assertThat(fastighetCache.contains(789)).isFalse();
+
+		when(mockClock.instant()).thenReturn(NOW.plus(Duration.ofHours(1)));
+		assertThat(fastighetCache.contains(456)).isFalse();
+
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "hit").counter().count()).isZero();
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "miss").counter().count()).isZero();
+	}
+
+	@Test
+	void leastRecentlyUsedIsEvicted() {
+		fastighetCache.put(1, new FastighetDto().fnr(1));
+		fastighetCache.put(2, new FastighetDto().fnr(2));
+		fastighetCache.get(1);
+		fastighetCache.put(3, new FastighetDto().fnr(3));
+
+		assertThat(fastighetCache.size()).isEqualTo(2);
+		assertThat(fastighetCache.get(1)).isPresent();
+		assertThat(fastighetCache.get(2)).isEmpty();
+		assertThat(fastighetCache.get(3)).isPresent();
+	}
+
+	@Test
+	void disabled() {
+		fastighetCache = new FastighetCache(new FbIntegrationProperties.Cache(false, 2, Duration.ofHours(24), Duration.ofHours(1)), mockClock, new SimpleMeterRegistry());
+
+		fastighetCache.put(123, new FastighetDto().fnr(123));
+
+		assertThat(fastighetCache.get(123)).isEmpty();
+		assertThat(fastighetCache.contains(123)).isFalse();
+		assertThat(fastighetCache.size()).isZero();
+	}
+}
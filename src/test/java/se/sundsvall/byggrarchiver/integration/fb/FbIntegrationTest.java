@@ -15,11 +15,14 @@ import generated.se.sundsvall.arendeexport.ArendeFastighet;
 import generated.se.sundsvall.arendeexport.Fastighet;
 import generated.sokigo.fb.FastighetDto;
 import generated.sokigo.fb.ResponseDtoIEnumerableFastighetDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.zalando.problem.Problem;
@@ -33,9 +36,16 @@ class FbIntegrationTest {
 	@Mock
 	private FbClient mockFbClient;
 
-	@InjectMocks
+	private SimpleMeterRegistry meterRegistry;
+
 	private FbIntegration fbIntegration;
 
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		fbIntegration = createFbIntegration(true);
+	}
+
 	@Test
 	void getFastighet() throws Exception {
 		// Arrange
@@ -57,7 +67,7 @@ class FbIntegrationTest {
 		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(fastighetDto)));
 
 		// Act
-		final var result = fbIntegration.getFastighet(arendeFastighetList);
+		final var result = fbIntegration.getFastighet(arendeFastighetList, PreloadedProperties.none());
 
 		// Assert and verify
 		verify(mockFbClient).getPropertyInfoByFnr(List.of(123));
@@ -79,7 +89,7 @@ class FbIntegrationTest {
 		final var arendeFastighetList = List.of(arendeFastighet1, arendeFastighet2);
 
 		// Act
-		final var result = fbIntegration.getFastighet(arendeFastighetList);
+		final var result = fbIntegration.getFastighet(arendeFastighetList, PreloadedProperties.none());
 
 		// Assert and verify
 		verifyNoInteractions(mockFbClient);
@@ -158,4 +168,133 @@ class FbIntegrationTest {
 		verifyNoMoreInteractions(mockFbClient);
 	}
 
+	@Test
+	void preload() throws ApplicationException {
+		final var fnrs = IntStream.rangeClosed(1, FbIntegration.PRELOAD_CHUNK_SIZE + 1).boxed().toList();
+		// FB has a property for every fnr except the last one
+		when(mockFbClient.getPropertyInfoByFnr(anyList())).thenAnswer(invocation -> {
+			final List<Integer> fnrList = invocation.getArgument(0);
+			return new ResponseDtoIEnumerableFastighetDto().data(fnrList.stream()
+				.filter(fnr -> fnr <= FbIntegration.PRELOAD_CHUNK_SIZE)
+				.map(fnr -> new FastighetDto().fnr(fnr).uuid(UUID.randomUUID()))
+				.toList());
+		});
+
+		final var preloadedProperties = fbIntegration.preload(fnrs);
+
+		assertThat(preloadedProperties.get(1).getFnr()).isOne();
+		assertThat(preloadedProperties.get(FbIntegration.PRELOAD_CHUNK_SIZE).getFnr()).isEqualTo(FbIntegration.PRELOAD_CHUNK_SIZE);
+		assertThat(preloadedProperties.contains(FbIntegration.PRELOAD_CHUNK_SIZE + 1)).isTrue();
+		assertThat(preloadedProperties.get(FbIntegration.PRELOAD_CHUNK_SIZE + 1)).isNull();
+		// Cached for the pages after this one too
+		assertThat(fbIntegration.getPropertyInfoByFnr(FbIntegration.PRELOAD_CHUNK_SIZE + 1)).isNull();
+
+		// Looked up in two chunks, where the preload is not counted as lookups in the cache
+		verify(mockFbClient).getPropertyInfoByFnr(fnrs.subList(0, FbIntegration.PRELOAD_CHUNK_SIZE));
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(FbIntegration.PRELOAD_CHUNK_SIZE + 1));
+		verifyNoMoreInteractions(mockFbClient);
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "hit").counter().count()).isOne();
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "miss").counter().count()).isZero();
+	}
+
+	@Test
+	void preloadCachedFnrs() throws ApplicationException {
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(new FastighetDto().fnr(123))));
+		when(mockFbClient.getPropertyInfoByFnr(List.of(456))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of()));
+		fbIntegration.getPropertyInfoByFnr(123);
+
+		fbIntegration.preload(List.of(123, 456));
+
+		assertThat(fbIntegration.getPropertyInfoByFnr(123).getFnr()).isEqualTo(123);
+		assertThat(fbIntegration.getPropertyInfoByFnr(456)).isNull();
+
+		// Only the fnr that was not cached is preloaded
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(456));
+		verify(mockFbClient, times(2)).getPropertyInfoByFnr(anyList());
+	}
+
+	@Test
+	void preloadDuplicateFnrs() throws ApplicationException {
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(new FastighetDto().fnr(123))));
+
+		fbIntegration.preload(List.of(123, 123));
+
+		assertThat(fbIntegration.getPropertyInfoByFnr(123).getFnr()).isEqualTo(123);
+
+		verify(mockFbClient, times(1)).getPropertyInfoByFnr(anyList());
+	}
+
+	@Test
+	void preloadFailureFallsBackToSingleLookup() throws ApplicationException {
+		final var fastighetDto = new FastighetDto().fnr(123);
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123, 456))).thenThrow(Problem.valueOf(Status.INTERNAL_SERVER_ERROR));
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(fastighetDto)));
+
+		fbIntegration.preload(List.of(123, 456));
+
+		assertThat(fbIntegration.getPropertyInfoByFnr(123)).isEqualTo(fastighetDto);
+
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(123));
+	}
+
+	@Test
+	void preloadCacheDisabled() throws ApplicationException {
+		fbIntegration = createFbIntegration(false);
+		final var fastighetDto = new FastighetDto().fnr(123).kommun("Sundsvall").beteckning("Test 1:1").uuid(UUID.randomUUID());
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123, 456))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(fastighetDto)));
+
+		final var preloadedProperties = fbIntegration.preload(List.of(123, 456));
+
+		// Served by the preloaded properties of the page, without a request per fnr
+		final var fastighet = fbIntegration.getFastighet(List.of(arendeFastighet(123)), preloadedProperties);
+		final var noFastighet = fbIntegration.getFastighet(List.of(arendeFastighet(456)), preloadedProperties);
+
+		assertThat(fastighet.getFastighetsbeteckning()).isEqualTo("Sundsvall Test 1:1");
+		assertThat(noFastighet.getFastighetsbeteckning()).isNull();
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(123, 456));
+		verifyNoMoreInteractions(mockFbClient);
+	}
+
+	@Test
+	void getPropertyInfoByFnrCached() throws ApplicationException {
+		final var fastighetDto = new FastighetDto().fnr(123);
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(fastighetDto)));
+		when(mockFbClient.getPropertyInfoByFnr(List.of(456))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of()));
+
+		assertThat(fbIntegration.getPropertyInfoByFnr(123)).isEqualTo(fastighetDto);
+		assertThat(fbIntegration.getPropertyInfoByFnr(123)).isEqualTo(fastighetDto);
+		assertThat(fbIntegration.getPropertyInfoByFnr(456)).isNull();
+		assertThat(fbIntegration.getPropertyInfoByFnr(456)).isNull();
+
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(123));
+		verify(mockFbClient).getPropertyInfoByFnr(List.of(456));
+		verifyNoMoreInteractions(mockFbClient);
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "hit").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get(FastighetCache.CACHE_METRIC).tag("result", "miss").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get(FastighetCache.CACHE_SIZE_METRIC).gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	void getPropertyInfoByFnrCacheDisabled() throws ApplicationException {
+		fbIntegration = createFbIntegration(false);
+		when(mockFbClient.getPropertyInfoByFnr(List.of(123))).thenReturn(new ResponseDtoIEnumerableFastighetDto().data(List.of(new FastighetDto().fnr(123))));
+
+		fbIntegration.getPropertyInfoByFnr(123);
+		fbIntegration.getPropertyInfoByFnr(123);
+
+		verify(mockFbClient, times(2)).getPropertyInfoByFnr(List.of(123));
+	}
+
+	private static ArendeFastighet arendeFastighet(final int fnr) {
+		final var fastighet = new Fastighet();
+		fastighet.setFnr(fnr);
+		return new ArendeFastighet().withArHuvudObjekt(true).withFastighet(fastighet);
+	}
+
+	private FbIntegration createFbIntegration(final boolean cacheEnabled) {
+		final var properties = new FbIntegrationProperties("url", "username", "password", "database",
+			new FbIntegrationProperties.Cache(cacheEnabled, 100, Duration.ofHours(24), Duration.ofHours(1)));
+
+		return new FbIntegration(mockFbClient, properties, meterRegistry);
+	}
 }
@@ -8,7 +8,6 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
-import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
 
 import generated.se.sundsvall.messaging.DeliveryResult;
 import generated.se.sundsvall.messaging.EmailRequest;
@@ -72,11 +71,7 @@ class MessagingIntegrationTest {
 						.messageType(EMAIL)
 						.status(SENT))));
 
-		var archiveHistory = new ArchiveHistory();
-		archiveHistory.setArchiveStatus(COMPLETED);
-		var archiveHistories = List.of(archiveHistory);
-
-		messagingIntegration.sendStatusMail(archiveHistories, 1L, MUNICIPALITY_ID);
+		messagingIntegration.sendStatusMail(1, 2, 1L, MUNICIPALITY_ID);
 
 		verify(mockEmailProperties).status();
 		verifyNoMoreInteractions(mockEmailProperties);
@@ -3,16 +3,19 @@ package se.sundsvall.byggrarchiver.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.FASSIT2;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.PLFASE;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.TOMTPLBE;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomArchiveHistory;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomInt;
 import static se.sundsvall.byggrarchiver.util.Constants.F_2_BYGGLOV;
 import static se.sundsvall.byggrarchiver.util.Constants.HANTERA_BYGGLOV;
 
+import feign.codec.EncodeException;
 import generated.se.sundsvall.archive.ArchiveResponse;
 import generated.se.sundsvall.archive.ByggRArchiveRequest;
 import generated.se.sundsvall.arendeexport.Arende;
@@ -26,6 +29,8 @@ import generated.se.sundsvall.arendeexport.Fastighet;
 import generated.se.sundsvall.arendeexport.Handelse;
 import generated.se.sundsvall.arendeexport.HandelseHandling;
 import generated.se.sundsvall.bygglov.FastighetTyp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.NoSuchFileException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -39,6 +44,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.zalando.problem.Status;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
@@ -48,7 +54,10 @@ import se.sundsvall.byggrarchiver.integration.archive.ArchiveIntegration;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.integration.fb.FbIntegration;
+import se.sundsvall.byggrarchiver.integration.fb.PreloadedProperties;
 import se.sundsvall.byggrarchiver.integration.messaging.MessagingIntegration;
+import se.sundsvall.byggrarchiver.service.filetype.FileTypeDetector;
+import se.sundsvall.byggrarchiver.service.metadata.MetadataRenderer;
 import se.sundsvall.dept44.exception.ClientProblem;
 
 @ExtendWith(MockitoExtension.class)
@@ -71,6 +80,12 @@ class ArchiveAttachmentServiceTest {
 	@Mock
 	private FbIntegration fastighetService;
 
+	@Spy
+	private MetadataRenderer metadataRenderer = new MetadataRenderer(archivingProperties().build(), new SimpleMeterRegistry());
+
+	@Spy
+	private FileTypeDetector fileTypeDetector = new FileTypeDetector(new SimpleMeterRegistry());
+
 	@Captor
 	private ArgumentCaptor<ByggRArchiveRequest> byggRArchiveRequestCaptor;
 
@@ -115,14 +130,15 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(byggRArchiveRequestCaptor.capture(), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		final var result = archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		// Assert and verify
 		assertThat(result).isNotNull();
 		assertThat(result.getArchiveId()).isEqualTo(archiveResponse.getArchiveId());
 		assertThat(result.getArchiveStatus()).isEqualTo(ArchiveStatus.COMPLETED);
+		assertThat(result.getFileExtension()).isEqualTo("pdf");
 		assertThat(byggRArchiveRequestCaptor.getValue()).isNotNull();
 		assertThat(byggRArchiveRequestCaptor.getValue().getMetadata()).isNotNull();
 		assertThat(byggRArchiveRequestCaptor.getValue().getMetadata()).containsIgnoringWhitespaces("""
@@ -138,7 +154,7 @@ class ArchiveAttachmentServiceTest {
 
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
 	}
 
 	@Test
@@ -154,9 +170,9 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(byggRArchiveRequestCaptor.capture(), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		final var result = archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		// Assert and verify
 		assertThat(result).isNotNull();
@@ -171,7 +187,7 @@ class ArchiveAttachmentServiceTest {
 		assertThat(byggRArchiveRequestCaptor.getValue().getMetadata()).contains("<Klass>" + F_2_BYGGLOV + "</Klass>");
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
 	}
 
 	@Test
@@ -187,9 +203,9 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(byggRArchiveRequestCaptor.capture(), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		final var result = archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		// Assert and verify
 		assertThat(result).isNotNull();
@@ -204,7 +220,7 @@ class ArchiveAttachmentServiceTest {
 		assertThat(byggRArchiveRequestCaptor.getValue().getMetadata()).contains("<Klass>" + F_2_BYGGLOV + "</Klass>");
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
 	}
 
 	@ParameterizedTest
@@ -221,9 +237,9 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(byggRArchiveRequestCaptor.capture(), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		assertThat(byggRArchiveRequestCaptor.getAllValues()).allSatisfy(request -> assertThat(request.getMetadata()).containsAnyOf(
 			"Bilaga Namn=\"test.without.extension.docx\" Lank=\"Bilagor\\test.without.extension.docx\"",
@@ -231,7 +247,36 @@ class ArchiveAttachmentServiceTest {
 			"Bilaga Namn=\"test.with   .extension.DOCX\" Lank=\"Bilagor\\test.with   .extension.DOCX\""));
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
+	}
+
+	@Test
+	void archiveDocumentsOfCaseWithSameCaseMetadata() throws Exception {
+		// Arrange
+		final var arende = createArendeObject(List.of(AttachmentCategory.ANS, AttachmentCategory.FASSIT2));
+		final var handlings = arende.getHandelseLista().getHandelse().getFirst().getHandlingLista().getHandling();
+
+		final var archiveResponse = new ArchiveResponse();
+		archiveResponse.setArchiveId("123456");
+
+		final var fastighet = new FastighetTyp();
+		fastighet.setFastighetsbeteckning("Sundsvall Test 1:1");
+
+		when(archiveHistoryRepositoryMock.save(any(ArchiveHistory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		when(archiveIntegrationMock.archive(byggRArchiveRequestCaptor.capture(), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
+		when(fastighetService.getFastighet(any(), any())).thenReturn(fastighet);
+
+		final var caseMetadata = archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none());
+		for (final var handling : handlings) {
+			archiveAttachmentService.archiveAttachment(caseMetadata, handling, handling.getDokument(), createRandomArchiveHistory(), MUNICIPALITY_ID);
+		}
+
+		// Assert and verify
+		assertThat(caseMetadata.fastighet()).isSameAs(fastighet);
+		assertThat(byggRArchiveRequestCaptor.getAllValues()).hasSize(2)
+			.allSatisfy(request -> assertThat(request.getMetadata()).contains("<Fastighetsbeteckning>Sundsvall Test 1:1</Fastighetsbeteckning>"));
+		verify(fastighetService).getFastighet(any(), any());
+		verify(metadataRenderer).prepare(arende, fastighet);
 	}
 
 	@Test
@@ -248,9 +293,9 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID))).thenReturn(archiveResponse);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		final var result = archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		// Assert and verify
 		assertThat(result).isNotNull();
@@ -258,7 +303,7 @@ class ArchiveAttachmentServiceTest {
 
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
 	}
 
 	@Test
@@ -274,9 +319,9 @@ class ArchiveAttachmentServiceTest {
 
 		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
 		when(archiveIntegrationMock.archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID))).thenThrow(problem);
-		when(fastighetService.getFastighet(any())).thenReturn(new FastighetTyp());
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
 
-		final var result = archiveAttachmentService.archiveAttachment(arende, handling, document, archiveHistory, MUNICIPALITY_ID);
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
 
 		// Assert and verify
 		assertThat(result).isNotNull();
@@ -284,10 +329,35 @@ class ArchiveAttachmentServiceTest {
 
 		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
 		verify(archiveIntegrationMock).archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID));
-		verify(fastighetService).getFastighet(any());
+		verify(fastighetService).getFastighet(any(), any());
 		verify(messagingIntegrationMock).sendExtensionErrorEmail(archiveHistory, MUNICIPALITY_ID);
 	}
 
+	@Test
+	void archiveFailsWhenAttachmentCanNotBeRead() throws Exception {
+		// Arrange
+		final var arende = createArendeObject(List.of(AttachmentCategory.ANS));
+		final var handling = arende.getHandelseLista().getHandelse().getFirst().getHandlingLista().getHandling().getFirst();
+		final var document = handling.getDokument();
+
+		final var archiveHistory = createRandomArchiveHistory();
+
+		// The spooled file of the document is gone when the request is encoded
+		when(archiveHistoryRepositoryMock.save(archiveHistory)).thenReturn(archiveHistory);
+		when(archiveIntegrationMock.archive(any(ByggRArchiveRequest.class), eq(MUNICIPALITY_ID)))
+			.thenThrow(new EncodeException("Unable to encode the request to Archive", new NoSuchFileException("getdocument-1")));
+		when(fastighetService.getFastighet(any(), any())).thenReturn(new FastighetTyp());
+
+		final var result = archiveAttachmentService.archiveAttachment(archiveAttachmentService.createCaseMetadata(arende, PreloadedProperties.none()), handling, document, archiveHistory, MUNICIPALITY_ID);
+
+		// Assert and verify
+		assertThat(result).isNotNull();
+		assertThat(result.getArchiveStatus()).isEqualTo(ArchiveStatus.NOT_COMPLETED);
+
+		verify(archiveHistoryRepositoryMock).save(any(ArchiveHistory.class));
+		verify(messagingIntegrationMock, never()).sendExtensionErrorEmail(any(), any());
+	}
+
 	/**
 	 * Util method for creating arende-objects
 	 *
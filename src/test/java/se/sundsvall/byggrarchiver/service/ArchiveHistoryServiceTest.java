@@ -3,12 +3,16 @@ package se.sundsvall.byggrarchiver.service;
 import static java.lang.String.valueOf;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,7 +25,9 @@ import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.LUTE
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.PLFASE;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.RUE;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.TOMTPLBE;
+import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.MANUAL;
 import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.SCHEDULED;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomInt;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomLong;
 import static se.sundsvall.byggrarchiver.util.Constants.BYGGR_HANDELSETYP_ARKIV;
@@ -41,11 +47,14 @@ import generated.se.sundsvall.arendeexport.Fastighet;
 import generated.se.sundsvall.arendeexport.Handelse;
 import generated.se.sundsvall.arendeexport.HandelseHandling;
 import generated.se.sundsvall.bygglov.FastighetTyp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import org.hibernate.service.spi.ServiceException;
 import org.junit.jupiter.api.BeforeEach;
@@ -57,18 +66,41 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
 import se.sundsvall.byggrarchiver.configuration.LongTermArchiveProperties;
 import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository.ArchivedDocument;
 import se.sundsvall.byggrarchiver.integration.db.BatchHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.HighWaterMarkRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.ArchiveStatusCount;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.HighWaterMark;
 import se.sundsvall.byggrarchiver.integration.fb.FbIntegration;
 import se.sundsvall.byggrarchiver.integration.messaging.MessagingIntegration;
 import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+import se.sundsvall.byggrarchiver.service.executor.ArchiveTaskExecutor;
+import se.sundsvall.byggrarchiver.service.executor.ByteBudget;
+import se.sundsvall.byggrarchiver.service.filter.ArchivedDocumentFilter;
+import se.sundsvall.byggrarchiver.service.metadata.CaseMetadata;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPages;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPagesFactory;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner.TimeWindow;
+import se.sundsvall.byggrarchiver.service.paging.WindowStepper;
+import se.sundsvall.byggrarchiver.service.pipeline.ArchivePipeline;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgress;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgressListener;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgressRegistry;
+import se.sundsvall.byggrarchiver.service.progress.DocumentEvent;
+import se.sundsvall.byggrarchiver.service.progress.DocumentEvent.Stage;
+import se.sundsvall.byggrarchiver.service.progress.PageEvent;
 import se.sundsvall.byggrarchiver.testutils.BatchFilterMatcher;
 
 @ExtendWith(MockitoExtension.class)
@@ -99,6 +131,39 @@ class ArchiveHistoryServiceTest {
 	@Mock
 	private LongTermArchiveProperties mockLongTermArchiveProperties;
 
+	@Mock
+	private ArchivedDocumentFilter mockArchivedDocumentFilter;
+
+	@Spy
+	private ArchivingProperties archivingProperties = archivingProperties().build();
+
+	@Spy
+	private ArchiveTaskExecutor archiveTaskExecutor = new ArchiveTaskExecutor(archivingProperties);
+
+	@Spy
+	private ByteBudget byteBudget = new ByteBudget(archivingProperties, new SimpleMeterRegistry());
+
+	@Mock
+	private ArchivePipeline mockArchivePipeline;
+
+	@Mock
+	private ArendeBatchPartitioner mockArendeBatchPartitioner;
+
+	@Mock
+	private ArendeBatchPagesFactory mockArendeBatchPagesFactory;
+
+	@Mock
+	private HighWaterMarkRepository mockHighWaterMarkRepository;
+
+	@Spy
+	private BatchProgressRegistry batchProgressRegistry = new BatchProgressRegistry();
+
+	@Spy
+	private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Captor
+	private ArgumentCaptor<HighWaterMark> highWaterMarkCaptor;
+
 	@InjectMocks
 	private ArchiveHistoryService archiveHistoryService;
 
@@ -107,6 +172,17 @@ class ArchiveHistoryServiceTest {
 
 	@BeforeEach
 	void beforeEach() throws Exception {
+		// Partitioning
+		lenient()
+			.when(mockArendeBatchPartitioner.partition(any(LocalDateTime.class), any(LocalDateTime.class)))
+			.thenAnswer(invocation -> List.of(new TimeWindow(invocation.getArgument(0), invocation.getArgument(1))));
+		lenient()
+			.when(mockArendeBatchPagesFactory.create(any(TimeWindow.class)))
+			.thenAnswer(invocation -> {
+				final TimeWindow window = invocation.getArgument(0);
+				return new ArendeBatchPages(mockArendeExportIntegrationService::getUpdatedArenden, window.start(), window.end(), 0, WindowStepper.ONE_HOUR);
+			});
+
 		// ArendeExport
 		lenient()
 			.when(mockArendeExportIntegrationService.getUpdatedArenden(any(BatchFilter.class)))
@@ -127,8 +203,13 @@ class ArchiveHistoryServiceTest {
 		fastighetTyp.setObjektidentitet(UUID.randomUUID().toString());
 
 		lenient()
-			.when(mockFastighetService.getFastighet(any()))
-			.thenReturn(fastighetTyp);
+			.when(mockArchiveAttachmentService.createCaseMetadata(any(), any()))
+			.thenAnswer(invocation -> new CaseMetadata(invocation.getArgument(0), fastighetTyp, null, null));
+
+		// Filter of archived documents
+		lenient()
+			.when(mockArchivedDocumentFilter.mightBeArchived(any(), any()))
+			.thenReturn(true);
 
 		// Long-term archive
 		lenient()
@@ -406,42 +487,49 @@ class ArchiveHistoryServiceTest {
 		arendeBatch.setArenden(arrayOfArende);
 
 		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(any());
-		doReturn(Optional.empty()).when(mockArchiveHistoryRepository).getArchiveHistoryByDocumentIdAndCaseIdAndMunicipalityId(any(), any(), eq(MUNICIPALITY_ID));
+		doReturn(List.of()).when(mockArchiveHistoryRepository).getArchivedDocumentsByCaseIdInAndMunicipalityId(Set.of(arende.getDnr()), MUNICIPALITY_ID);
 
-		doReturn(List.of(ArchiveHistory.builder()
-			.withArchiveStatus(COMPLETED)
-			.build()))
-			.when(mockArchiveHistoryRepository).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), eq(MUNICIPALITY_ID));
+		doReturn(List.of(new ArchiveStatusCount(null, COMPLETED, 3L)))
+			.when(mockArchiveHistoryRepository).countArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), eq(MUNICIPALITY_ID));
 
 		final var batch1 = BatchHistory.builder()
 			.withId(randomLong())
 			.withArchiveStatus(NOT_COMPLETED)
 			.build();
-		doReturn(List.of(batch1)).when(mockBatchHistoryRepository).findBatchHistoriesByArchiveStatusAndMunicipalityId(NOT_COMPLETED, MUNICIPALITY_ID);
-
-		final var archiveHistory1 = ArchiveHistory.builder()
-			.withArchiveStatus(COMPLETED)
-			.withBatchHistory(batch1)
+		final var batch2 = BatchHistory.builder()
+			.withId(randomLong())
+			.withArchiveStatus(NOT_COMPLETED)
 			.build();
+		doReturn(List.of(batch1, batch2)).when(mockBatchHistoryRepository).findBatchHistoriesByArchiveStatusAndMunicipalityId(NOT_COMPLETED, MUNICIPALITY_ID);
 
-		final var archiveHistory2 = ArchiveHistory.builder()
+		doReturn(List.of(new ArchiveStatusCount(batch1.getId(), COMPLETED, 2L), new ArchiveStatusCount(batch2.getId(), COMPLETED, 1L), new ArchiveStatusCount(batch2.getId(), NOT_COMPLETED, 1L)))
+			.when(mockArchiveHistoryRepository).countArchiveHistoriesByBatchHistoryIdInAndMunicipalityId(List.of(batch1.getId(), batch2.getId()), MUNICIPALITY_ID);
+
+		final var archiveHistory1 = ArchiveHistory.builder()
 			.withArchiveStatus(COMPLETED)
 			.withBatchHistory(batch1)
 			.build();
 
-		doReturn(List.of(archiveHistory1, archiveHistory2)).when(mockArchiveHistoryRepository).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batch1.getId(), MUNICIPALITY_ID);
-
 		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
 			.thenReturn(archiveHistory1);
 
-		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, SCHEDULED), MUNICIPALITY_ID);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
+
+		archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
 
-		// verify deleteArchiveHistoriesByCaseIdAndArchiveStatus
-		verify(mockArchiveHistoryRepository, times(2)).deleteArchiveHistoriesByCaseIdAndArchiveStatus(arende.getDnr(), NOT_COMPLETED);
+		// verify deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus
+		verify(mockArchiveHistoryRepository, times(2)).deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(eq(Set.of(arende.getDnr())), eq(NOT_COMPLETED), eq(batchHistory.getId()), any(LocalDateTime.class));
 		verify(mockBatchHistoryRepository, times(2)).save(batchHistoryCaptor.capture());
 
 		final var batchHistory1 = batchHistoryCaptor.getAllValues().stream().filter(bh -> batch1.getId().equals(bh.getId())).findFirst().orElseThrow();
 		assertThat(batchHistory1.getArchiveStatus()).isEqualTo(COMPLETED);
+		// The batch with a not completed archive history stays not completed
+		assertThat(batch2.getArchiveStatus()).isEqualTo(NOT_COMPLETED);
+		// The archive histories of the old batches are counted at once, and never loaded
+		verify(mockArchiveHistoryRepository).countArchiveHistoriesByBatchHistoryIdInAndMunicipalityId(any(), any());
+		verify(mockArchiveHistoryRepository, never()).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), any());
+		verify(mockMessagingIntegration, never()).sendStatusMail(anyLong(), anyLong(), any(), any());
 	}
 
 	// Verify an empty list also works in updateStatusOfOldBatchHistories
@@ -461,16 +549,16 @@ class ArchiveHistoryServiceTest {
 		arendeBatch.setArenden(arrayOfArende);
 
 		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(any());
-		doReturn(Optional.empty()).when(mockArchiveHistoryRepository).getArchiveHistoryByDocumentIdAndCaseIdAndMunicipalityId(any(), any(), eq(MUNICIPALITY_ID));
+		doReturn(List.of()).when(mockArchiveHistoryRepository).getArchivedDocumentsByCaseIdInAndMunicipalityId(Set.of(arende.getDnr()), MUNICIPALITY_ID);
 
-		doReturn(new ArrayList<>()).when(mockArchiveHistoryRepository).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), eq(MUNICIPALITY_ID));
+		doReturn(new ArrayList<>()).when(mockArchiveHistoryRepository).countArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), eq(MUNICIPALITY_ID));
 
 		final var batch1 = BatchHistory.builder()
 			.withArchiveStatus(NOT_COMPLETED)
 			.withId(randomLong())
 			.build();
 		doReturn(List.of(batch1)).when(mockBatchHistoryRepository).findBatchHistoriesByArchiveStatusAndMunicipalityId(NOT_COMPLETED, MUNICIPALITY_ID);
-		doReturn(new ArrayList<>()).when(mockArchiveHistoryRepository).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batch1.getId(), MUNICIPALITY_ID);
+		doReturn(new ArrayList<>()).when(mockArchiveHistoryRepository).countArchiveHistoriesByBatchHistoryIdInAndMunicipalityId(List.of(batch1.getId()), MUNICIPALITY_ID);
 
 		final var archiveHistory = new ArchiveHistory();
 		archiveHistory.setArchiveStatus(COMPLETED);
@@ -479,16 +567,36 @@ class ArchiveHistoryServiceTest {
 		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
 			.thenReturn(archiveHistory);
 
-		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, SCHEDULED), MUNICIPALITY_ID);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
 
-		// verify deleteArchiveHistoriesByCaseIdAndArchiveStatus
-		verify(mockArchiveHistoryRepository, times(2)).deleteArchiveHistoriesByCaseIdAndArchiveStatus(arende.getDnr(), NOT_COMPLETED);
+		archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		// verify deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus
+		verify(mockArchiveHistoryRepository, times(2)).deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(eq(Set.of(arende.getDnr())), eq(NOT_COMPLETED), eq(batchHistory.getId()), any(LocalDateTime.class));
 		verify(mockBatchHistoryRepository, times(2)).save(batchHistoryCaptor.capture());
 
 		final var batchHistory1 = batchHistoryCaptor.getAllValues().stream().filter(bh -> batch1.getId().equals(bh.getId())).findFirst().orElseThrow();
 		assertThat(batchHistory1.getArchiveStatus()).isEqualTo(COMPLETED);
 	}
 
+	// Verify that a status mail with the number of archive histories by status is sent when a batch is not completed
+	@Test
+	void testStatusMailSentWhenBatchNotCompleted() {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
+
+		when(mockArchiveHistoryRepository.countArchiveHistoriesByBatchHistoryIdAndMunicipalityId(batchHistory.getId(), MUNICIPALITY_ID))
+			.thenReturn(List.of(new ArchiveStatusCount(batchHistory.getId(), COMPLETED, 5L), new ArchiveStatusCount(batchHistory.getId(), NOT_COMPLETED, 2L)));
+
+		final var result = archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		assertThat(result.getArchiveStatus()).isEqualTo(NOT_COMPLETED);
+		verify(mockMessagingIntegration).sendStatusMail(5, 2, batchHistory.getId(), MUNICIPALITY_ID);
+		verify(mockArchiveHistoryRepository, never()).getArchiveHistoriesByBatchHistoryIdAndMunicipalityId(any(), any());
+	}
+
 	// Run batch for attachmentCategory "GEO" and verify email was sent
 	@Test
 	void runBatchGeotekniskUndersokningMessageSentTrue() throws Exception {
@@ -522,6 +630,9 @@ class ArchiveHistoryServiceTest {
 		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, SCHEDULED), MUNICIPALITY_ID);
 
 		verifyCalls(2, 3, 3, 2);
+		// The metadata of the case is created once, and shared by its documents and the emails
+		verify(mockArchiveAttachmentService).createCaseMetadata(eq(arende), any());
+		verify(mockFastighetService, never()).getFastighet(any(), any());
 	}
 
 	// Run batch for attachmentCategory "GEO" and simulate the email was not sent.
@@ -562,6 +673,404 @@ class ArchiveHistoryServiceTest {
 		verifyCalls(2, 3, 3, 1);
 	}
 
+	@Test
+	void testCompletedBatchAdvancesHighWaterMark() {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var highWaterMark = HighWaterMark.builder().withMunicipalityId(MUNICIPALITY_ID).withProcessedUntil(yesterday.atStartOfDay()).build();
+		when(mockHighWaterMarkRepository.findById(MUNICIPALITY_ID)).thenReturn(Optional.of(highWaterMark));
+
+		archiveHistoryService.archiveAfter(yesterday.atStartOfDay(), yesterday, createBatchHistory(yesterday, yesterday, SCHEDULED), MUNICIPALITY_ID);
+
+		verify(mockHighWaterMarkRepository).save(highWaterMarkCaptor.capture());
+		assertThat(highWaterMarkCaptor.getValue().getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+		assertThat(highWaterMarkCaptor.getValue().getProcessedUntil()).isEqualTo(yesterday.atTime(23, 59, 59));
+	}
+
+	@Test
+	void testCompletedBatchWithGapDoesNotAdvanceHighWaterMark() {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var highWaterMark = HighWaterMark.builder().withMunicipalityId(MUNICIPALITY_ID).withProcessedUntil(yesterday.minusDays(5).atStartOfDay()).build();
+		when(mockHighWaterMarkRepository.findById(MUNICIPALITY_ID)).thenReturn(Optional.of(highWaterMark));
+
+		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, MANUAL), MUNICIPALITY_ID);
+
+		verify(mockHighWaterMarkRepository, never()).save(any());
+	}
+
+	@Test
+	void testFirstScheduledBatchSetsHighWaterMark() {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, SCHEDULED), MUNICIPALITY_ID);
+
+		verify(mockHighWaterMarkRepository).save(highWaterMarkCaptor.capture());
+		assertThat(highWaterMarkCaptor.getValue().getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+		assertThat(highWaterMarkCaptor.getValue().getProcessedUntil()).isEqualTo(yesterday.atTime(23, 59, 59));
+	}
+
+	// A client that sees the batch finish must read its final status
+	@Test
+	void testStatusSavedBeforeProgressFinished() {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
+
+		final var statusWhenFinished = new ArrayList<ArchiveStatus>();
+		doAnswer(invocation -> {
+			final var progress = (BatchProgress) invocation.callRealMethod();
+			progress.addListener(new BatchProgressListener() {
+
+				@Override
+				public void onFinished(final BatchProgress batchProgress) {
+					statusWhenFinished.add(batchHistory.getArchiveStatus());
+				}
+			});
+			return progress;
+		}).when(batchProgressRegistry).start(batchHistory.getId());
+
+		archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		assertThat(statusWhenFinished).containsExactly(COMPLETED);
+		final var inOrder = inOrder(mockBatchHistoryRepository, batchProgressRegistry);
+		inOrder.verify(mockBatchHistoryRepository).save(batchHistory);
+		inOrder.verify(batchProgressRegistry).finish(any(BatchProgress.class));
+	}
+
+	// A manual backfill of an old period must not set the first high-water mark, or the next scheduled batch would
+	// archive everything after the backfill again
+	@Test
+	void testManualBackfillDoesNotSetHighWaterMark() {
+		final var start = LocalDate.now().minusYears(1);
+		final var end = start.plusDays(6);
+
+		archiveHistoryService.archive(start, end, createBatchHistory(start, end, MANUAL), MUNICIPALITY_ID);
+
+		verify(mockHighWaterMarkRepository).findById(MUNICIPALITY_ID);
+		verify(mockHighWaterMarkRepository, never()).save(any());
+	}
+
+	@Test
+	void testCheckpointSavedAfterEachPage() {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
+
+		final var result = archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		// One hour at a time through an empty day, and the last page at the end of the day
+		verify(mockBatchHistoryRepository, times(25)).updateCheckpoint(eq(batchHistory.getId()), any(LocalDateTime.class));
+		verify(mockBatchHistoryRepository).updateCheckpoint(batchHistory.getId(), yesterday.atStartOfDay().plusHours(1));
+		assertThat(result.getCheckpoint()).isEqualTo(yesterday.atTime(23, 59, 59));
+	}
+
+	@Test
+	void testCheckpointNotSavedAfterFailedDocument() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, SCHEDULED);
+		batchHistory.setId(randomLong());
+
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS)));
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(12, 0));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		// The document in the first page fails, and the pages after it are empty
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		final var result = archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		verify(mockBatchHistoryRepository, never()).updateCheckpoint(any(), any());
+		assertThat(result.getCheckpoint()).isNull();
+	}
+
+	@Test
+	void testCheckpointNotSavedForPartitionedBatch() {
+		final var start = LocalDate.now().minusDays(2);
+		final var end = LocalDate.now().minusDays(1);
+
+		when(mockArendeBatchPartitioner.partition(any(LocalDateTime.class), any(LocalDateTime.class)))
+			.thenReturn(List.of(
+				new TimeWindow(start.atStartOfDay(), end.atStartOfDay()),
+				new TimeWindow(end.atStartOfDay(), end.atTime(23, 59, 59))));
+
+		archiveHistoryService.archive(start, end, createBatchHistory(start, end, SCHEDULED), MUNICIPALITY_ID);
+
+		verify(mockBatchHistoryRepository, never()).updateCheckpoint(any(), any());
+	}
+
+	@Test
+	void testProgressReported() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var batchHistory = createBatchHistory(yesterday, yesterday, MANUAL);
+		batchHistory.setId(randomLong());
+
+		final var arende = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(PLFASE, FASSIT2, TOMTPLBE));
+		arende.getHandelseLista().getHandelse().getFirst().getHandlingLista().getHandling()
+			.forEach(handling -> handling.getDokument().getFil().setFilBuffer(new byte[100]));
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(arende);
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(23, 0));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		// The first two documents are archived and the last one fails
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> {
+				final ArchiveHistory archiveHistory = invocation.getArgument(3);
+				archiveHistory.setArchiveStatus(COMPLETED);
+				return archiveHistory;
+			})
+			.thenAnswer(invocation -> {
+				final ArchiveHistory archiveHistory = invocation.getArgument(3);
+				archiveHistory.setArchiveStatus(COMPLETED);
+				return archiveHistory;
+			})
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		// Listen to the events of the batch as soon as it is started
+		final var pageEvents = new ArrayList<PageEvent>();
+		final var documentEvents = new ArrayList<DocumentEvent>();
+		final var finished = new ArrayList<BatchProgress>();
+		doAnswer(invocation -> {
+			final var progress = (BatchProgress) invocation.callRealMethod();
+			progress.addListener(new BatchProgressListener() {
+
+				@Override
+				public void onPage(final PageEvent event) {
+					pageEvents.add(event);
+				}
+
+				@Override
+				public void onDocument(final DocumentEvent event) {
+					documentEvents.add(event);
+				}
+
+				@Override
+				public void onFinished(final BatchProgress batchProgress) {
+					finished.add(batchProgress);
+				}
+			});
+			return progress;
+		}).when(batchProgressRegistry).start(batchHistory.getId());
+
+		archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		assertThat(batchProgressRegistry.find(batchHistory.getId())).hasValueSatisfying(progress -> {
+			assertThat(progress.isRunning()).isFalse();
+			assertThat(progress.getPagesScanned()).isEqualTo(3);
+			assertThat(progress.getDocumentsArchived()).isEqualTo(2);
+			assertThat(progress.getDocumentsFailed()).isEqualTo(1);
+			assertThat(progress.getBytesUploaded()).isEqualTo(200);
+			assertThat(finished).containsExactly(progress);
+		});
+
+		assertThat(pageEvents).hasSize(3).allSatisfy(event -> assertThat(event.batchHistoryId()).isEqualTo(batchHistory.getId()));
+		assertThat(pageEvents.getFirst().cases()).isOne();
+		assertThat(pageEvents.getFirst().documents()).isEqualTo(3);
+		assertThat(documentEvents).filteredOn(event -> event.stage() == Stage.FETCH).hasSize(3)
+			.allSatisfy(event -> assertThat(event.caseId()).isEqualTo(arende.getDnr()));
+		assertThat(documentEvents).filteredOn(event -> event.stage() == Stage.UPLOAD).hasSize(3)
+			.extracting(DocumentEvent::bytes).containsOnly(100L);
+
+		// Each document reserves bytes from the budget before it is fetched
+		verify(byteBudget, times(3)).reserve();
+	}
+
+	// Verify that the properties of all cases in a page are preloaded from FB
+	@Test
+	void testPropertiesPreloadedPerPage() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS, FASSIT2)));
+		arrayOfArende.getArende().add(createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(TOMTPLBE)));
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(23, 59, 59));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, MANUAL), MUNICIPALITY_ID);
+
+		// One fnr per case in the first page and an empty second page
+		verify(mockFastighetService).preload(List.of(123456, 123456));
+		verify(mockFastighetService).preload(List.of());
+	}
+
+	// Verify that the archived documents of all cases in a page are looked up at once, and that a document is archived once
+	@Test
+	void testArchivedDocumentsLookedUpPerPage() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		final var arende1 = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS, FASSIT2, TOMTPLBE));
+		final var arende2 = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS));
+		final var handlingList = arende1.getHandelseLista().getHandelse().getFirst().getHandlingLista().getHandling();
+		// The same document twice in the case
+		handlingList.add(handlingList.getLast());
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(arende1);
+		arrayOfArende.getArende().add(arende2);
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(23, 59, 59));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		final var archivedDocumentId = handlingList.getFirst().getDokument().getDokId();
+		when(mockArchiveHistoryRepository.getArchivedDocumentsByCaseIdInAndMunicipalityId(Set.of(arende1.getDnr(), arende2.getDnr()), MUNICIPALITY_ID))
+			.thenReturn(List.of(new ArchivedDocument(arende1.getDnr(), archivedDocumentId)));
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, MANUAL), MUNICIPALITY_ID);
+
+		// One lookup for the first page, and none for the empty second page
+		verify(mockArchiveHistoryRepository).getArchivedDocumentsByCaseIdInAndMunicipalityId(any(), any());
+		verify(mockArendeExportIntegrationService, never()).getDocument(archivedDocumentId);
+		verifyCalls(2, 3, 3, 0);
+	}
+
+	// Verify that the not completed archive histories of all closed cases in a page are deleted at once
+	@Test
+	void testNotCompletedArchiveHistoriesDeletedPerPage() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		final var arende1 = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS));
+		final var arende2 = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(FASSIT2));
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(arende1);
+		arrayOfArende.getArende().add(arende2);
+		arrayOfArende.getArende().add(createArendeObject(ONGOING, BYGGR_HANDELSETYP_ARKIV, List.of(TOMTPLBE)));
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(23, 59, 59));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		final var batchHistory = createBatchHistory(yesterday, yesterday, MANUAL);
+		batchHistory.setId(randomLong());
+
+		when(mockArchiveHistoryRepository.deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(eq(Set.of(arende1.getDnr(), arende2.getDnr())), eq(NOT_COMPLETED), eq(batchHistory.getId()), any(LocalDateTime.class))).thenReturn(3);
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		archiveHistoryService.archive(yesterday, yesterday, batchHistory, MUNICIPALITY_ID);
+
+		// One delete for the first page, and none for the empty second page
+		verify(mockArchiveHistoryRepository).deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(any(), any(), any(), any());
+		assertThat(meterRegistry.get(ArchiveHistoryService.DELETED_METRIC).counter().count()).isEqualTo(3);
+		verifyCalls(2, 2, 2, 0);
+	}
+
+	// Verify that the archived documents are not looked up when the filter finds that no document in the page is archived
+	@Test
+	void testArchivedDocumentsNotLookedUpWhenFilteredOut() throws Exception {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		final var arende = createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS, FASSIT2));
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(arende);
+		final var arendeBatch = new ArendeBatch();
+		arendeBatch.setBatchEnd(yesterday.atTime(23, 59, 59));
+		arendeBatch.setArenden(arrayOfArende);
+
+		doReturn(arendeBatch).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(yesterday.atStartOfDay())
+			.withUpperInclusiveBound(yesterday.atTime(23, 59, 59)))));
+
+		when(mockArchivedDocumentFilter.mightBeArchived(any(), any())).thenReturn(false);
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		archiveHistoryService.archive(yesterday, yesterday, createBatchHistory(yesterday, yesterday, MANUAL), MUNICIPALITY_ID);
+
+		verify(mockArchivedDocumentFilter).refresh();
+		verify(mockArchiveHistoryRepository, never()).getArchivedDocumentsByCaseIdInAndMunicipalityId(any(), any());
+		arende.getHandelseLista().getHandelse().getFirst().getHandlingLista().getHandling()
+			.forEach(handling -> verify(mockArchivedDocumentFilter).add(arende.getDnr(), handling.getDokument().getDokId()));
+		verifyCalls(2, 2, 2, 0);
+	}
+
+	// Partitioned scenario - Run batch for two days, harvested as one partition per day
+	@Test
+	void testBatchPartitioned() throws Exception {
+		final var start = LocalDate.now().minusDays(2);
+		final var end = LocalDate.now().minusDays(1);
+
+		when(mockArendeBatchPartitioner.partition(any(LocalDateTime.class), any(LocalDateTime.class)))
+			.thenReturn(List.of(
+				new TimeWindow(start.atStartOfDay(), end.atStartOfDay()),
+				new TimeWindow(end.atStartOfDay(), end.atTime(23, 59, 59))));
+
+		final var result = archiveHistoryService.archive(start, end, createBatchHistory(start, end, SCHEDULED), MUNICIPALITY_ID);
+
+		assertThat(result.getArchiveStatus()).isEqualTo(COMPLETED);
+
+		verify(mockArendeBatchPartitioner).partition(start.atStartOfDay(), end.atTime(23, 59, 59));
+		verify(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(start.atStartOfDay())
+			.withUpperInclusiveBound(end.atStartOfDay()))));
+		verify(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(end.atStartOfDay())
+			.withUpperInclusiveBound(end.atTime(23, 59, 59)))));
+		// Each partition steps one hour at a time through an empty day
+		verifyCalls(50, 0, 0, 0);
+	}
+
+	// Partitioned scenario - A case that is updated while the batch runs is found by both partitions, and its documents
+	// are archived once
+	@Test
+	void testBatchPartitionedCaseFoundTwice() throws Exception {
+		final var start = LocalDate.now().minusDays(2);
+		final var end = LocalDate.now().minusDays(1);
+
+		when(mockArendeBatchPartitioner.partition(any(LocalDateTime.class), any(LocalDateTime.class)))
+			.thenReturn(List.of(
+				new TimeWindow(start.atStartOfDay(), end.atStartOfDay()),
+				new TimeWindow(end.atStartOfDay(), end.atTime(23, 59, 59))));
+
+		final var arrayOfArende = new ArrayOfArende();
+		arrayOfArende.getArende().add(createArendeObject(BYGGR_STATUS_AVSLUTAT, BYGGR_HANDELSETYP_ARKIV, List.of(ANS, FASSIT2)));
+		doReturn(new ArendeBatch().withBatchEnd(start.atTime(1, 0)).withArenden(arrayOfArende)).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(start.atStartOfDay())
+			.withUpperInclusiveBound(start.atTime(1, 0)))));
+		doReturn(new ArendeBatch().withBatchEnd(end.atTime(1, 0)).withArenden(arrayOfArende)).when(mockArendeExportIntegrationService).getUpdatedArenden(argThat(new BatchFilterMatcher(new BatchFilter()
+			.withLowerExclusiveBound(end.atStartOfDay())
+			.withUpperInclusiveBound(end.atTime(1, 0)))));
+
+		final var batchHistory = createBatchHistory(start, end, SCHEDULED);
+		batchHistory.setId(randomLong());
+		when(mockArchiveAttachmentService.archiveAttachment(any(), any(), any(), any(), eq(MUNICIPALITY_ID)))
+			.thenAnswer(invocation -> invocation.getArgument(3));
+
+		final var runStarted = LocalDateTime.now();
+		archiveHistoryService.archive(start, end, batchHistory, MUNICIPALITY_ID);
+
+		// The not completed archive histories saved by this run are left to the partition that archives them
+		verify(mockArchiveHistoryRepository, times(2)).deleteArchiveHistoriesOfOtherRunsByCaseIdInAndArchiveStatus(any(), eq(NOT_COMPLETED), eq(batchHistory.getId()),
+			argThat(started -> !started.isBefore(runStarted.truncatedTo(ChronoUnit.MICROS))));
+		verifyCalls(50, 2, 2, 0);
+	}
+
 	private void verifyCalls(final int nrOfCallsToGetUpdatedArenden,
 		final int nrOfCallsToGetDocument,
 		final int nrOfCallsToArchiveAttachmentService,
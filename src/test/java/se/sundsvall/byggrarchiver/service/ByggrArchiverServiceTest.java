@@ -8,12 +8,15 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.zalando.problem.Status.BAD_REQUEST;
+import static org.zalando.problem.Status.CONFLICT;
 import static org.zalando.problem.Status.NOT_FOUND;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.NOT_COMPLETED;
@@ -22,6 +25,7 @@ import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.GEO;
 import static se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory.TOMTPLBE;
 import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.MANUAL;
 import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.SCHEDULED;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomInt;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.randomLong;
 
@@ -41,12 +45,14 @@ import generated.se.sundsvall.arendeexport.Fastighet;
 import generated.se.sundsvall.arendeexport.Handelse;
 import generated.se.sundsvall.arendeexport.HandelseHandling;
 import generated.sokigo.fb.FastighetDto;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -56,19 +62,26 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.zalando.problem.ThrowableProblem;
 import se.sundsvall.byggrarchiver.api.model.enums.AttachmentCategory;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
 import se.sundsvall.byggrarchiver.configuration.LongTermArchiveProperties;
 import se.sundsvall.byggrarchiver.integration.archive.ArchiveIntegration;
 import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
 import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
 import se.sundsvall.byggrarchiver.integration.db.BatchHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.HighWaterMarkRepository;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
+import se.sundsvall.byggrarchiver.integration.db.model.HighWaterMark;
 import se.sundsvall.byggrarchiver.integration.fb.FbIntegration;
 import se.sundsvall.byggrarchiver.integration.messaging.MessagingIntegration;
+import se.sundsvall.byggrarchiver.service.executor.BatchJobExecutor;
+import se.sundsvall.byggrarchiver.service.progress.BatchEventEmitter;
+import se.sundsvall.byggrarchiver.service.progress.BatchProgressRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class ByggrArchiverServiceTest {
@@ -90,6 +103,9 @@ class ByggrArchiverServiceTest {
 	@Mock
 	private BatchHistoryRepository mockBatchHistoryRepository;
 
+	@Mock
+	private HighWaterMarkRepository mockHighWaterMarkRepository;
+
 	@Mock
 	private FbIntegration mockFbIntegration;
 
@@ -99,9 +115,21 @@ class ByggrArchiverServiceTest {
 	@Mock
 	private LongTermArchiveProperties mockLongTermArchiveProperties;
 
+	@Mock
+	private BatchJobExecutor mockBatchJobExecutor;
+
+	@Spy
+	private BatchProgressRegistry batchProgressRegistry = new BatchProgressRegistry();
+
+	@Spy
+	private ArchivingProperties archivingProperties = archivingProperties().build();
+
 	@InjectMocks
 	private ByggrArchiverService byggrArchiverService;
 
+	@Captor
+	private ArgumentCaptor<Runnable> jobCaptor;
+
 	@Captor
 	private ArgumentCaptor<BatchHistory> batchHistoryCaptor;
 
@@ -151,7 +179,7 @@ class ByggrArchiverServiceTest {
 		// Run the first batch
 		byggrArchiverService.runBatch(yesterday, yesterday, SCHEDULED, MUNICIPALITY_ID);
 
-		when(mockBatchHistoryRepository.findAll()).thenReturn(List.of(batchHistory));
+		when(mockBatchHistoryRepository.findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(COMPLETED, MUNICIPALITY_ID)).thenReturn(Optional.of(batchHistory));
 
 		// Run second batch with the same date
 		final var secondBatchHistory = byggrArchiverService.runBatch(yesterday, yesterday, SCHEDULED, MUNICIPALITY_ID);
@@ -192,7 +220,7 @@ class ByggrArchiverServiceTest {
 		// Run the first batch
 		byggrArchiverService.runBatch(aLongTimeAgo, aLongTimeAgo, batchTrigger, MUNICIPALITY_ID);
 
-		when(mockBatchHistoryRepository.findAll()).thenReturn(List.of(batchHistory));
+		when(mockBatchHistoryRepository.findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(COMPLETED, MUNICIPALITY_ID)).thenReturn(Optional.of(batchHistory));
 
 		byggrArchiverService.runBatch(yesterday, yesterday, SCHEDULED, MUNICIPALITY_ID);
 
@@ -230,7 +258,7 @@ class ByggrArchiverServiceTest {
 	void testRunBatchScheduledWhenLatestBatchIsAfterCurrent() {
 		final var today = LocalDate.now();
 
-		when(mockBatchHistoryRepository.findAll()).thenReturn(List.of(BatchHistory.builder().withStart(today.plusDays(1)).withEnd(today.plusDays(1)).withArchiveStatus(COMPLETED).build()));
+		when(mockBatchHistoryRepository.findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(COMPLETED, MUNICIPALITY_ID)).thenReturn(Optional.of(BatchHistory.builder().withStart(today.plusDays(1)).withEnd(today.plusDays(1)).withArchiveStatus(COMPLETED).build()));
 
 		final var result = byggrArchiverService.runBatch(today, today, SCHEDULED, MUNICIPALITY_ID);
 
@@ -238,6 +266,53 @@ class ByggrArchiverServiceTest {
 		verifyNoInteractions(mockArchiveHistoryService);
 	}
 
+	@Test
+	void testRunScheduledBatchFromHighWaterMark() {
+		final var oneWeekBack = LocalDate.now().minusDays(7);
+		final var yesterday = LocalDate.now().minusDays(1);
+		final var processedUntil = LocalDate.now().minusDays(2).atTime(23, 59, 59);
+
+		when(mockHighWaterMarkRepository.findById(MUNICIPALITY_ID))
+			.thenReturn(Optional.of(HighWaterMark.builder().withMunicipalityId(MUNICIPALITY_ID).withProcessedUntil(processedUntil).build()));
+		when(mockArchiveHistoryService.archiveAfter(eq(processedUntil), eq(yesterday), batchHistoryCaptor.capture(), eq(MUNICIPALITY_ID)))
+			.thenReturn(BatchHistory.builder().withStart(processedUntil.toLocalDate()).withEnd(yesterday).withArchiveStatus(COMPLETED).build());
+
+		final var result = byggrArchiverService.runBatch(oneWeekBack, yesterday, SCHEDULED, MUNICIPALITY_ID);
+
+		assertThat(result.getArchiveStatus()).isEqualTo(COMPLETED);
+		assertThat(batchHistoryCaptor.getValue().getStart()).isEqualTo(processedUntil.toLocalDate());
+		assertThat(batchHistoryCaptor.getValue().getStartAfter()).isEqualTo(processedUntil);
+		assertThat(batchHistoryCaptor.getValue().getEnd()).isEqualTo(yesterday);
+		assertThat(batchHistoryCaptor.getValue().getBatchTrigger()).isEqualTo(SCHEDULED);
+		verify(mockArchiveHistoryService, never()).archive(any(), any(), any(), any());
+		verify(mockBatchHistoryRepository, never()).findFirstByArchiveStatusAndMunicipalityIdOrderByEndDesc(any(), any());
+	}
+
+	@Test
+	void testRunScheduledBatchWhenHighWaterMarkIsAfterEnd() {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		when(mockHighWaterMarkRepository.findById(MUNICIPALITY_ID))
+			.thenReturn(Optional.of(HighWaterMark.builder().withMunicipalityId(MUNICIPALITY_ID).withProcessedUntil(yesterday.atTime(23, 59, 59)).build()));
+
+		final var result = byggrArchiverService.runBatch(yesterday.minusDays(6), yesterday, SCHEDULED, MUNICIPALITY_ID);
+
+		assertThat(result).isNull();
+		verifyNoInteractions(mockArchiveHistoryService);
+	}
+
+	@Test
+	void testRunManualBatchIgnoresHighWaterMark() {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		when(mockArchiveHistoryService.archive(eq(yesterday), eq(yesterday), batchHistoryCaptor.capture(), eq(MUNICIPALITY_ID)))
+			.thenReturn(BatchHistory.builder().withStart(yesterday).withEnd(yesterday).withArchiveStatus(COMPLETED).build());
+
+		byggrArchiverService.runBatch(yesterday, yesterday, MANUAL, MUNICIPALITY_ID);
+
+		verifyNoInteractions(mockHighWaterMarkRepository);
+	}
+
 	// Run batch and simulate request to Archive failure.
 	// Rerun an earlier not_completed batch - GET batchhistory and verify it was completed
 	@Test
@@ -294,6 +369,217 @@ class ByggrArchiverServiceTest {
 		assertThat(batchHistoryCaptor.getValue().getEnd()).isEqualTo(end);
 	}
 
+	@Test
+	void rerunBatchFromCheckpoint() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+		final var end = LocalDate.now().minusDays(1);
+		final var checkpoint = LocalDate.now().minusDays(3).atTime(14, 30);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(end).withId(randomId).withCheckpoint(checkpoint).withArchiveStatus(NOT_COMPLETED).build()));
+
+		when(mockArchiveHistoryService.archiveAfter(eq(checkpoint), eq(end), batchHistoryCaptor.capture(), eq(MUNICIPALITY_ID)))
+			.thenReturn(BatchHistory.builder().withStart(start).withEnd(end).withId(randomId).withArchiveStatus(COMPLETED).build());
+
+		final var result = byggrArchiverService.reRunBatch(randomId, MUNICIPALITY_ID);
+
+		assertThat(result.getArchiveStatus()).isEqualTo(COMPLETED);
+		assertThat(batchHistoryCaptor.getValue().getId()).isEqualTo(randomId);
+		verify(mockArchiveHistoryService, never()).archive(any(), any(), any(), any());
+	}
+
+	@Test
+	void rerunBatchFromHighWaterMark() {
+		final var randomId = randomLong();
+		final var end = LocalDate.now().minusDays(1);
+		final var startAfter = LocalDate.now().minusDays(2).atTime(14, 30);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(startAfter.toLocalDate()).withStartAfter(startAfter).withEnd(end).withId(randomId)
+				.withBatchTrigger(SCHEDULED).withArchiveStatus(NOT_COMPLETED).build()));
+
+		when(mockArchiveHistoryService.archiveAfter(eq(startAfter), eq(end), batchHistoryCaptor.capture(), eq(MUNICIPALITY_ID)))
+			.thenReturn(BatchHistory.builder().withStart(startAfter.toLocalDate()).withEnd(end).withId(randomId).withArchiveStatus(COMPLETED).build());
+
+		final var result = byggrArchiverService.reRunBatch(randomId, MUNICIPALITY_ID);
+
+		// Not from the start of the day of the high-water mark
+		assertThat(result.getArchiveStatus()).isEqualTo(COMPLETED);
+		assertThat(batchHistoryCaptor.getValue().getId()).isEqualTo(randomId);
+		verify(mockArchiveHistoryService, never()).archive(any(), any(), any(), any());
+	}
+
+	@Test
+	void rerunBatchThatIsRunning() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withArchiveStatus(NOT_COMPLETED).build()));
+		batchProgressRegistry.start(randomId);
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> byggrArchiverService.reRunBatch(randomId, MUNICIPALITY_ID))
+			.satisfies(throwableProblem -> assertThat(throwableProblem.getStatus()).isEqualTo(CONFLICT));
+
+		verifyNoInteractions(mockArchiveHistoryService);
+	}
+
+	@Test
+	void startBatch() {
+		final var yesterday = LocalDate.now().minusDays(1);
+
+		final var result = byggrArchiverService.startBatch(yesterday, yesterday, MUNICIPALITY_ID);
+
+		verify(mockBatchHistoryRepository).save(batchHistoryCaptor.capture());
+		assertThat(result.getArchiveStatus()).isEqualTo(NOT_COMPLETED);
+		assertThat(result.getBatchTrigger()).isEqualTo(MANUAL);
+		assertThat(batchHistoryCaptor.getValue().getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+
+		// The archiving is not done until the job is run
+		verify(mockBatchJobExecutor).submit(any(), jobCaptor.capture());
+		verifyNoInteractions(mockArchiveHistoryService);
+
+		jobCaptor.getValue().run();
+
+		verify(mockArchiveHistoryService).archive(yesterday, yesterday, batchHistoryCaptor.getValue(), MUNICIPALITY_ID);
+	}
+
+	@Test
+	void startReRunBatch() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+		final var batchHistory = BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withArchiveStatus(NOT_COMPLETED).build();
+
+		when(mockBatchHistoryRepository.findById(randomId)).thenReturn(Optional.of(batchHistory));
+
+		final var result = byggrArchiverService.startReRunBatch(randomId, MUNICIPALITY_ID);
+
+		assertThat(result.getId()).isEqualTo(randomId);
+		verify(mockBatchJobExecutor).submit(eq(randomId), jobCaptor.capture());
+		verifyNoInteractions(mockArchiveHistoryService);
+
+		jobCaptor.getValue().run();
+
+		verify(mockArchiveHistoryService).archive(start, start, batchHistory, MUNICIPALITY_ID);
+	}
+
+	@Test
+	void startReRunBatchThatIsAlreadyStarted() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+		final var batchHistory = BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withArchiveStatus(NOT_COMPLETED).build();
+
+		when(mockBatchHistoryRepository.findById(randomId)).thenReturn(Optional.of(batchHistory));
+
+		byggrArchiverService.startReRunBatch(randomId, MUNICIPALITY_ID);
+
+		// Refused as soon as the first rerun is submitted, also before its job has started
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> byggrArchiverService.startReRunBatch(randomId, MUNICIPALITY_ID))
+			.satisfies(throwableProblem -> assertThat(throwableProblem.getStatus()).isEqualTo(CONFLICT));
+		verify(mockBatchJobExecutor).submit(eq(randomId), jobCaptor.capture());
+
+		jobCaptor.getValue().run();
+
+		assertThat(batchProgressRegistry.isRunning(randomId)).isFalse();
+	}
+
+	@Test
+	void startReRunBatchReleasesClaimWhenNotSubmitted() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+		final var batchHistory = BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withArchiveStatus(NOT_COMPLETED).build();
+
+		when(mockBatchHistoryRepository.findById(randomId)).thenReturn(Optional.of(batchHistory));
+		doThrow(new RejectedExecutionException("Shut down")).when(mockBatchJobExecutor).submit(eq(randomId), any());
+
+		assertThatExceptionOfType(RejectedExecutionException.class)
+			.isThrownBy(() -> byggrArchiverService.startReRunBatch(randomId, MUNICIPALITY_ID));
+
+		assertThat(batchProgressRegistry.isRunning(randomId)).isFalse();
+		verifyNoInteractions(mockArchiveHistoryService);
+	}
+
+	@Test
+	void getBatchHistoryWithProgress() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withMunicipalityId(MUNICIPALITY_ID).withArchiveStatus(NOT_COMPLETED).build()));
+		final var progress = batchProgressRegistry.start(randomId);
+		progress.pageScanned();
+		progress.documentArchived(1024);
+		progress.documentFailed();
+
+		final var result = byggrArchiverService.getBatchHistory(randomId, MUNICIPALITY_ID);
+
+		assertThat(result.getId()).isEqualTo(randomId);
+		assertThat(result.getProgress().getRunning()).isTrue();
+		assertThat(result.getProgress().getPagesScanned()).isOne();
+		assertThat(result.getProgress().getDocumentsArchived()).isOne();
+		assertThat(result.getProgress().getDocumentsFailed()).isOne();
+		assertThat(result.getProgress().getBytesUploaded()).isEqualTo(1024);
+	}
+
+	@Test
+	void getBatchHistoryWithoutProgress() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withMunicipalityId(MUNICIPALITY_ID).withArchiveStatus(COMPLETED).build()));
+
+		final var result = byggrArchiverService.getBatchHistory(randomId, MUNICIPALITY_ID);
+
+		assertThat(result.getArchiveStatus()).isEqualTo(COMPLETED);
+		assertThat(result.getProgress()).isNull();
+	}
+
+	@Test
+	void getBatchHistoryOfOtherMunicipality() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withMunicipalityId("2260").withArchiveStatus(COMPLETED).build()));
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> byggrArchiverService.getBatchHistory(randomId, MUNICIPALITY_ID))
+			.satisfies(throwableProblem -> assertThat(throwableProblem.getStatus()).isEqualTo(NOT_FOUND));
+	}
+
+	@Test
+	void streamBatchEvents() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withMunicipalityId(MUNICIPALITY_ID).withArchiveStatus(NOT_COMPLETED).build()));
+		batchProgressRegistry.start(randomId);
+
+		final var result = byggrArchiverService.streamBatchEvents(randomId, MUNICIPALITY_ID);
+
+		assertThat(result).isInstanceOf(BatchEventEmitter.class);
+		assertThat(result.getTimeout()).isEqualTo(Duration.ofHours(1).toMillis());
+	}
+
+	@Test
+	void streamBatchEventsOfOtherMunicipality() {
+		final var randomId = randomLong();
+		final var start = LocalDate.now().minusDays(7);
+
+		when(mockBatchHistoryRepository.findById(randomId))
+			.thenReturn(Optional.of(BatchHistory.builder().withStart(start).withEnd(start).withId(randomId).withMunicipalityId("2260").withArchiveStatus(NOT_COMPLETED).build()));
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> byggrArchiverService.streamBatchEvents(randomId, MUNICIPALITY_ID))
+			.satisfies(throwableProblem -> assertThat(throwableProblem.getStatus()).isEqualTo(NOT_FOUND));
+		verify(batchProgressRegistry, never()).find(randomId);
+	}
+
 	@Test
 	void rerunBatchThatDoesNotExist() {
 		final var randomId = randomLong();
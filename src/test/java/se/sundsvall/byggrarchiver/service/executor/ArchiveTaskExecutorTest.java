@@ -0,0 +1,88 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties.ExecutorType;
+
+class ArchiveTaskExecutorTest {
+
+	private static final String MUNICIPALITY_ID = "2281";
+
+	@Test
+	void executeSequentially() {
+		final var executor = createExecutor(false, ExecutorType.VIRTUAL, Map.of());
+		final var threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+		executor.execute(MUNICIPALITY_ID, IntStream.range(0, 5)
+			.<Runnable>mapToObj(i -> () -> threads.add(Thread.currentThread()))
+			.toList());
+
+		assertThat(threads).hasSize(5).containsOnly(Thread.currentThread());
+	}
+
+	@ParameterizedTest
+	@EnumSource(ExecutorType.class)
+	void executeConcurrentlyWithinMunicipalityLimit(final ExecutorType executorType) {
+		final var executor = createExecutor(true, executorType, Map.of(MUNICIPALITY_ID, 3));
+		final var inFlight = new AtomicInteger();
+		final var maxInFlight = new AtomicInteger();
+		final var finished = new AtomicInteger();
+
+		executor.execute(MUNICIPALITY_ID, IntStream.range(0, 20)
+			.<Runnable>mapToObj(i -> () -> {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				sleep();
+				inFlight.decrementAndGet();
+				finished.incrementAndGet();
+			})
+			.toList());
+
+		assertThat(finished).hasValue(20);
+		assertThat(maxInFlight.get()).isBetween(1, 3);
+
+		executor.shutdown();
+	}
+
+	@Test
+	void executeConcurrentlyRethrowsFailure() {
+		final var executor = createExecutor(true, ExecutorType.VIRTUAL, Map.of());
+		final List<Runnable> tasks = List.of(
+			ArchiveTaskExecutorTest::sleep,
+			() -> {
+				throw new IllegalArgumentException("Failure");
+			},
+			ArchiveTaskExecutorTest::sleep);
+
+		assertThatExceptionOfType(IllegalArgumentException.class)
+			.isThrownBy(() -> executor.execute(MUNICIPALITY_ID, tasks))
+			.withMessage("Failure");
+
+		executor.shutdown();
+	}
+
+	private static ArchiveTaskExecutor createExecutor(final boolean enabled, final ExecutorType executorType, final Map<String, Integer> municipalityLimits) {
+		return new ArchiveTaskExecutor(archivingProperties()
+			.withConcurrency(new ArchivingProperties.Concurrency(enabled, executorType, 4, 2, municipalityLimits))
+			.build());
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(10);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class BatchJobExecutorTest {
+
+	private final BatchJobExecutor executor = new BatchJobExecutor(archivingProperties().build());
+
+	@Test
+	void submitRunsJobInBackground() throws Exception {
+		final var thread = new AtomicReference<Thread>();
+		final var done = new CountDownLatch(1);
+
+		executor.submit(1L, () -> {
+			thread.set(Thread.currentThread());
+			done.countDown();
+		});
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+		assertThat(thread.get().getName()).startsWith("batch-job-");
+
+		executor.shutdown();
+	}
+
+	@Test
+	void failedJobDoesNotStopExecutor() throws Exception {
+		final var done = new CountDownLatch(1);
+
+		executor.submit(1L, () -> {
+			throw new IllegalStateException("Failure");
+		});
+		executor.submit(2L, done::countDown);
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+		executor.shutdown();
+	}
+}
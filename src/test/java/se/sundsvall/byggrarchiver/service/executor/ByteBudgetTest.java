@@ -0,0 +1,129 @@
+package se.sundsvall.byggrarchiver.service.executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+class ByteBudgetTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private ByteBudget byteBudget;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		byteBudget = new ByteBudget(createArchivingProperties(true), meterRegistry);
+	}
+
+	@Test
+	void reserveAndClose() throws Exception {
+		final var first = byteBudget.reserve();
+		final var second = byteBudget.reserve(40);
+
+		assertThat(byteBudget.used()).isEqualTo(50);
+		assertThat(meterRegistry.get(ByteBudget.USED_METRIC).gauge().value()).isEqualTo(50);
+		assertThat(meterRegistry.get(ByteBudget.MAX_METRIC).gauge().value()).isEqualTo(100);
+
+		first.close();
+		second.close();
+		// Closing again has no effect
+		second.close();
+
+		assertThat(byteBudget.used()).isZero();
+		assertThat(meterRegistry.get(ByteBudget.WAIT_METRIC).timer().count()).isEqualTo(2);
+	}
+
+	@Test
+	void reserveWaitsUntilBytesAreReleased() throws Exception {
+		final var first = byteBudget.reserve(95);
+
+		final var second = CompletableFuture.supplyAsync(this::reserveQuietly);
+		assertWaiting(second);
+
+		first.close();
+
+		assertThat(second.get(5, TimeUnit.SECONDS)).isNotNull();
+		assertThat(byteBudget.used()).isEqualTo(10);
+	}
+
+	@Test
+	void resizeDownReleasesWaiting() throws Exception {
+		final var first = byteBudget.reserve(95);
+
+		final var second = CompletableFuture.supplyAsync(this::reserveQuietly);
+		assertWaiting(second);
+
+		first.resize(50);
+
+		assertThat(second.get(5, TimeUnit.SECONDS)).isNotNull();
+		assertThat(byteBudget.used()).isEqualTo(60);
+	}
+
+	@Test
+	void resizeUpDoesNotWait() throws Exception {
+		final var reservation = byteBudget.reserve();
+
+		reservation.resize(250);
+
+		assertThat(byteBudget.used()).isEqualTo(250);
+
+		reservation.close();
+
+		assertThat(byteBudget.used()).isZero();
+	}
+
+	@Test
+	void reserveMoreThanBudgetWhenNothingElseIsReserved() throws Exception {
+		final var reservation = byteBudget.reserve(500);
+
+		assertThat(byteBudget.used()).isEqualTo(500);
+
+		reservation.close();
+	}
+
+	@Test
+	void disabled() throws Exception {
+		byteBudget = new ByteBudget(createArchivingProperties(false), meterRegistry);
+
+		final var first = byteBudget.reserve(500);
+		final var second = byteBudget.reserve(500);
+		first.resize(1000);
+		second.close();
+
+		assertThat(byteBudget.used()).isZero();
+		assertThat(meterRegistry.find(ByteBudget.USED_METRIC).gauge()).isNull();
+	}
+
+	private ByteBudget.Reservation reserveQuietly() {
+		try {
+			return byteBudget.reserve();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void assertWaiting(final CompletableFuture<ByteBudget.Reservation> reservation) throws Exception {
+		try {
+			reservation.get(200, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			// Expected, the reservation waits for the budget
+		}
+		assertThat(reservation).isNotDone();
+	}
+
+	private static ArchivingProperties createArchivingProperties(final boolean enabled) {
+		return archivingProperties()
+			.withByteBudget(new ArchivingProperties.ByteBudget(enabled, DataSize.ofBytes(100), DataSize.ofBytes(10)))
+			.build();
+	}
+}
@@ -0,0 +1,158 @@
+package se.sundsvall.byggrarchiver.service.filetype;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static se.sundsvall.byggrarchiver.service.filetype.FileTypeDetector.DETECTION_METRIC;
+
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.DokumentFil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
+
+class FileTypeDetectorTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private FileTypeDetector fileTypeDetector;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		fileTypeDetector = new FileTypeDetector(meterRegistry);
+	}
+
+	private static Stream<Arguments> signatures() {
+		return Stream.of(
+			Arguments.of("%PDF-1.7\n".getBytes(US_ASCII), "pdf"),
+			Arguments.of(new byte[] {
+				(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a, 0, 0, 0, 13
+			}, "png"),
+			Arguments.of(new byte[] {
+				(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 0, 16, 'J', 'F', 'I', 'F'
+			}, "jpg"),
+			Arguments.of("GIF89a".getBytes(US_ASCII), "gif"),
+			Arguments.of(new byte[] {
+				'I', 'I', 42, 0, 8, 0, 0, 0
+			}, "tif"),
+			Arguments.of(new byte[] {
+				'M', 'M', 0, 42, 0, 0, 0, 8
+			}, "tif"),
+			Arguments.of("AC1027\0\0\0\0\0".getBytes(US_ASCII), "dwg"),
+			Arguments.of("{\\rtf1\\ansi".getBytes(US_ASCII), "rtf"),
+			Arguments.of(zip("xl/workbook.xml"), "xlsx"),
+			Arguments.of(zip("ppt/presentation.xml"), "pptx"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("signatures")
+	void detectExtensionBySignature(final byte[] content, final String extension) throws Exception {
+		final var dokument = new Dokument().withFil(new DokumentFil().withFilBuffer(content));
+
+		fileTypeDetector.detectExtension(dokument);
+
+		assertThat(dokument.getFil().getFilAndelse()).isEqualTo(extension);
+		assertThat(meterRegistry.get(DETECTION_METRIC).tag("extension", extension).tag("source", "signature").counter().count()).isOne();
+	}
+
+	@Test
+	void detectExtensionOfDocx() throws Exception {
+		final var dokument = new Dokument().withFil(new DokumentFil()
+			.withFilBuffer(Files.readAllBytes(Paths.get("src/test/resources/File_Without_Extension"))));
+
+		fileTypeDetector.detectExtension(dokument);
+
+		assertThat(dokument.getFil().getFilAndelse()).isEqualTo("docx");
+		assertThat(meterRegistry.get(DETECTION_METRIC).tag("extension", "docx").tag("source", "signature").counter().count()).isOne();
+	}
+
+	@Test
+	void detectExtensionWithMagic() throws Exception {
+		// A bitmap has no signature of its own, and is left to jmimemagic
+		final var content = new byte[54];
+		content[0] = 'B';
+		content[1] = 'M';
+		content[2] = 54;
+		content[10] = 54;
+		content[14] = 40;
+		final var dokument = new Dokument().withFil(new DokumentFil().withFilBuffer(content));
+
+		fileTypeDetector.detectExtension(dokument);
+
+		assertThat(dokument.getFil().getFilAndelse()).isEqualTo("bmp");
+		assertThat(meterRegistry.get(DETECTION_METRIC).tag("extension", "bmp").tag("source", "magic").counter().count()).isOne();
+	}
+
+	@Test
+	void detectExtensionWhenUnknown() throws Exception {
+		final var dokument = new Dokument().withFil(new DokumentFil()
+			.withFilBuffer(Files.readAllBytes(Paths.get("src/test/resources/Error_File_Without_Extension"))));
+
+		assertThatExceptionOfType(ApplicationException.class)
+			.isThrownBy(() -> fileTypeDetector.detectExtension(dokument))
+			.withMessage("Could not guess extension from bytearray");
+
+		assertThat(dokument.getFil().getFilAndelse()).isNull();
+		assertThat(meterRegistry.get(DETECTION_METRIC).tag("extension", "unknown").tag("source", "none").counter().count()).isOne();
+	}
+
+	@Test
+	void detectExtensionWhenAlreadySet() throws Exception {
+		final var dokument = new Dokument().withFil(new DokumentFil()
+			.withFilBuffer("%PDF-1.7".getBytes(US_ASCII))
+			.withFilAndelse("docx"));
+
+		fileTypeDetector.detectExtension(dokument);
+
+		assertThat(dokument.getFil().getFilAndelse()).isEqualTo("docx");
+		assertThat(meterRegistry.find(DETECTION_METRIC).counters()).isEmpty();
+	}
+
+	@Test
+	void detectExtensionWithoutFile() throws Exception {
+		final var dokument = new Dokument();
+
+		fileTypeDetector.detectExtension(dokument);
+
+		assertThat(dokument.getFil()).isNull();
+		assertThat(meterRegistry.find(DETECTION_METRIC).counters()).isEmpty();
+	}
+
+	@Test
+	void guessExtension() throws Exception {
+		assertThat(FileTypeDetector.guessExtension(new DokumentFil().withFilBuffer("%PDF-1.4".getBytes(US_ASCII)))).isEqualTo("pdf");
+		assertThat(meterRegistry.find(DETECTION_METRIC).counters()).isEmpty();
+	}
+
+	@Test
+	void readHeader() throws Exception {
+		final var content = new byte[FileTypeDetector.HEADER_SIZE * 3];
+		Arrays.fill(content, (byte) 1);
+
+		assertThat(FileTypeDetector.readHeader(new DokumentFil().withFilBuffer(content))).hasSize(FileTypeDetector.HEADER_SIZE);
+		assertThat(FileTypeDetector.readHeader(new DokumentFil().withFilBuffer(new byte[10]))).hasSize(10);
+		assertThat(FileTypeDetector.readHeader(new DokumentFil())).isEmpty();
+	}
+
+	// The local file header of the first entry of a zip file
+	private static byte[] zip(final String entryName) {
+		final var name = entryName.getBytes(US_ASCII);
+		final var header = new byte[30 + name.length];
+		header[0] = 'P';
+		header[1] = 'K';
+		header[2] = 3;
+		header[3] = 4;
+		header[26] = (byte) name.length;
+		System.arraycopy(name, 0, header, 30, name.length);
+		return header;
+	}
+}
@@ -0,0 +1,143 @@
+package se.sundsvall.byggrarchiver.service.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository;
+import se.sundsvall.byggrarchiver.integration.db.ArchiveHistoryRepository.ArchivedDocument;
+
+@ExtendWith(MockitoExtension.class)
+class ArchivedDocumentFilterTest {
+
+	@Mock
+	private ArchiveHistoryRepository mockArchiveHistoryRepository;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private ArchivedDocumentFilter archivedDocumentFilter;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		archivedDocumentFilter = createArchivedDocumentFilter(true);
+	}
+
+	@Test
+	void refresh() {
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy())
+			.thenReturn(Stream.of(new ArchivedDocument("BYGG 2024-1", "1"), new ArchivedDocument("BYGG 2024-1", "2")));
+
+		// Every document may be archived until the filter is loaded
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-2", "3")).isTrue();
+
+		archivedDocumentFilter.refresh();
+
+		assertThat(archivedDocumentFilter.isLoaded()).isTrue();
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-1", "1")).isTrue();
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-1", "2")).isTrue();
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-2", "3")).isFalse();
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.DOCUMENTS_METRIC).gauge().value()).isEqualTo(2);
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.SIZE_METRIC).gauge().value()).isPositive();
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.FALSE_POSITIVE_PROBABILITY_METRIC).gauge().value()).isPositive();
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.LOOKUP_METRIC).tag("result", "positive").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.LOOKUP_METRIC).tag("result", "negative").counter().count()).isOne();
+	}
+
+	@Test
+	void refreshAgainLoadsRecentlySavedOnly() {
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy()).thenReturn(Stream.empty());
+		final var timestampCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsByTimestampGreaterThanEqual(timestampCaptor.capture()))
+			.thenReturn(Stream.of(new ArchivedDocument("BYGG 2024-1", "1")));
+
+		final var started = LocalDateTime.now();
+		archivedDocumentFilter.refresh();
+		archivedDocumentFilter.refresh();
+
+		// With the overlap before the first refresh
+		assertThat(timestampCaptor.getValue()).isBetween(started.minusMinutes(5).minusSeconds(1), started.minusMinutes(5).plusSeconds(1));
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-1", "1")).isTrue();
+	}
+
+	@Test
+	void refreshFails() {
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy()).thenThrow(new IllegalStateException("Database is down"));
+
+		archivedDocumentFilter.refresh();
+
+		assertThat(archivedDocumentFilter.isLoaded()).isFalse();
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-1", "1")).isTrue();
+	}
+
+	@Test
+	void add() {
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy()).thenReturn(Stream.empty());
+		archivedDocumentFilter.refresh();
+
+		archivedDocumentFilter.add("BYGG 2024-1", "1");
+
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-1", "1")).isTrue();
+	}
+
+	@Test
+	void falsePositives() {
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy()).thenReturn(Stream.empty());
+		archivedDocumentFilter.refresh();
+
+		archivedDocumentFilter.falsePositives(3);
+
+		assertThat(meterRegistry.get(ArchivedDocumentFilter.LOOKUP_METRIC).tag("result", "false_positive").counter().count()).isEqualTo(3);
+	}
+
+	@Test
+	void disabled() {
+		archivedDocumentFilter = createArchivedDocumentFilter(false);
+
+		archivedDocumentFilter.refresh();
+		archivedDocumentFilter.add("BYGG 2024-1", "1");
+
+		assertThat(archivedDocumentFilter.mightBeArchived("BYGG 2024-2", "3")).isTrue();
+		assertThat(meterRegistry.find(ArchivedDocumentFilter.SIZE_METRIC).gauge()).isNull();
+		verifyNoInteractions(mockArchiveHistoryRepository);
+	}
+
+	@Test
+	void refreshWithinTransaction() {
+		final var mockTransactionManager = mock(PlatformTransactionManager.class);
+		archivedDocumentFilter = new ArchivedDocumentFilter(createArchivingProperties(true), mockArchiveHistoryRepository, new TransactionTemplate(mockTransactionManager), meterRegistry);
+		when(mockArchiveHistoryRepository.streamArchivedDocumentsBy()).thenReturn(Stream.empty());
+
+		archivedDocumentFilter.refresh();
+
+		verify(mockTransactionManager).getTransaction(any());
+		verify(mockTransactionManager).commit(any());
+	}
+
+	private ArchivedDocumentFilter createArchivedDocumentFilter(final boolean enabled) {
+		return new ArchivedDocumentFilter(createArchivingProperties(enabled), mockArchiveHistoryRepository, new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry);
+	}
+
+	private static ArchivingProperties createArchivingProperties(final boolean enabled) {
+		return archivingProperties()
+			.withArchivedFilter(new ArchivingProperties.ArchivedFilter(enabled, 1000, 0.01, Duration.ofMinutes(5)))
+			.build();
+	}
+}
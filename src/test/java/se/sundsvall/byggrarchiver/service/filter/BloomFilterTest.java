@@ -0,0 +1,65 @@
+package se.sundsvall.byggrarchiver.service.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+	@Test
+	void putAndMightContain() {
+		final var bloomFilter = new BloomFilter(1000, 0.01);
+
+		IntStream.range(0, 1000).forEach(i -> bloomFilter.put("BYGG 2024-" + i, String.valueOf(i)));
+
+		// Documents that have been put are always found
+		assertThat(IntStream.range(0, 1000)).allMatch(i -> bloomFilter.mightContain("BYGG 2024-" + i, String.valueOf(i)));
+		assertThat(bloomFilter.insertions()).isBetween(990L, 1000L);
+	}
+
+	@Test
+	void falsePositiveProbability() {
+		final var bloomFilter = new BloomFilter(10_000, 0.01);
+		IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("BYGG 2024-" + i, String.valueOf(i)));
+
+		final var falsePositives = IntStream.range(10_000, 110_000)
+			.filter(i -> bloomFilter.mightContain("BYGG 2024-" + i, String.valueOf(i)))
+			.count();
+
+		assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+		assertThat(bloomFilter.expectedFalsePositiveProbability()).isCloseTo(0.01, within(0.002));
+	}
+
+	@Test
+	void pairsAreNotMixedUp() {
+		final var bloomFilter = new BloomFilter(100, 0.001);
+
+		bloomFilter.put("ab", "c");
+
+		assertThat(bloomFilter.mightContain("ab", "c")).isTrue();
+		assertThat(bloomFilter.mightContain("a", "bc")).isFalse();
+		assertThat(bloomFilter.mightContain("c", "ab")).isFalse();
+	}
+
+	@Test
+	void sameDocumentIsCountedOnce() {
+		final var bloomFilter = new BloomFilter(100, 0.01);
+
+		bloomFilter.put("BYGG 2024-1", "1");
+		bloomFilter.put("BYGG 2024-1", "1");
+
+		assertThat(bloomFilter.insertions()).isOne();
+	}
+
+	@Test
+	void size() {
+		final var bloomFilter = new BloomFilter(1_000_000, 0.01);
+
+		// About 9.6 bits and 7 hash functions per document for a probability of 1%
+		assertThat(bloomFilter.sizeInBytes()).isBetween(1_190_000L, 1_210_000L);
+		assertThat(bloomFilter.hashFunctions()).isEqualTo(7);
+		assertThat(bloomFilter.expectedFalsePositiveProbability()).isZero();
+	}
+}
@@ -1,5 +1,6 @@
 package se.sundsvall.byggrarchiver.service.mapper;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
@@ -10,6 +11,8 @@ import static se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger.SCHEDULED;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createBatchHistory;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomArchiveHistory;
 import static se.sundsvall.byggrarchiver.testutils.TestUtil.createRandomBatchHistory;
+import static se.sundsvall.byggrarchiver.util.Constants.F_2_BYGGLOV;
+import static se.sundsvall.byggrarchiver.util.Constants.HANTERA_BYGGLOV;
 
 import generated.se.sundsvall.arendeexport.AbstractArendeObjekt;
 import generated.se.sundsvall.arendeexport.Arende2;
@@ -30,6 +33,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.junit.jupiter.api.Test;
+import se.sundsvall.byggrarchiver.integration.archive.StreamedAttachment;
+import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.service.exceptions.ApplicationException;
 
 class ArchiverMapperTest {
@@ -217,6 +222,19 @@ class ArchiverMapperTest {
 		assertThat(ArchiverMapper.toIsoDate((LocalDateTime) null)).isNull();
 	}
 
+	@Test
+	void testToKlass() {
+		assertThat(ArchiverMapper.toKlass(LocalDate.of(2017, 1, 1))).isEqualTo(HANTERA_BYGGLOV);
+		assertThat(ArchiverMapper.toKlass(null)).isEqualTo(HANTERA_BYGGLOV);
+		assertThat(ArchiverMapper.toKlass(LocalDate.of(2016, 12, 31))).isEqualTo(F_2_BYGGLOV);
+	}
+
+	@Test
+	void testToNotering() {
+		assertThat(ArchiverMapper.toNotering(LocalDate.of(2016, 12, 31))).isEqualTo("2016");
+		assertThat(ArchiverMapper.toNotering(null)).isNull();
+	}
+
 	@Test
 	void testToAttachmentCategory() {
 		assertThat(ArchiverMapper.toAttachmentCategory(FAS.toString())).isEqualTo(FAS);
@@ -306,10 +324,41 @@ class ArchiverMapperTest {
 		// Assert
 		assertThat(byggRArchiveRequest.getAttachment().getExtension()).isEqualTo(".pdf");
 		assertThat(byggRArchiveRequest.getAttachment().getName()).isEqualTo("namn.pdf");
-		assertThat(byggRArchiveRequest.getAttachment().getFile()).isEqualTo("AQID");
+		assertThat(byggRArchiveRequest.getAttachment()).isInstanceOf(StreamedAttachment.class);
+		final var attachment = (StreamedAttachment) byggRArchiveRequest.getAttachment();
+		assertThat(attachment.getFile()).isNull();
+		assertThat(attachment.size()).isEqualTo(3);
+		assertThat(attachment.openStream()).hasBinaryContent(new byte[] {
+			1, 2, 3
+		});
 		assertThat(byggRArchiveRequest.getMetadata()).isEqualTo("metaData");
 	}
 
+	@Test
+	void testSetFileInformation() {
+		final var archiveHistory = new ArchiveHistory();
+		final var dokument = new Dokument().withFil(new DokumentFil()
+			.withFilBuffer("abc".getBytes(UTF_8))
+			.withFilAndelse(" PDF"));
+
+		ArchiverMapper.setFileInformation(archiveHistory, dokument);
+
+		assertThat(archiveHistory.getFileExtension()).isEqualTo("pdf");
+		assertThat(archiveHistory.getFileSize()).isEqualTo(3);
+		assertThat(archiveHistory.getContentHash()).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+	}
+
+	@Test
+	void testSetFileInformationWithoutFile() {
+		final var archiveHistory = new ArchiveHistory();
+
+		ArchiverMapper.setFileInformation(archiveHistory, new Dokument());
+
+		assertThat(archiveHistory.getFileExtension()).isNull();
+		assertThat(archiveHistory.getFileSize()).isNull();
+		assertThat(archiveHistory.getContentHash()).isNull();
+	}
+
 	@Test
 	void mapToArchiveHistoryResponse_withNullInput() {
 		assertThat(ArchiverMapper.mapToArchiveHistoryResponse(null)).isNull();
@@ -324,6 +373,9 @@ class ArchiverMapperTest {
 		assertThat(archiveHistoryResponse.getCaseId()).isEqualTo(archiveHistory.getCaseId());
 		assertThat(archiveHistoryResponse.getDocumentName()).isEqualTo(archiveHistory.getDocumentName());
 		assertThat(archiveHistoryResponse.getDocumentType()).isEqualTo(archiveHistory.getDocumentType());
+		assertThat(archiveHistoryResponse.getFileExtension()).isEqualTo(archiveHistory.getFileExtension());
+		assertThat(archiveHistoryResponse.getFileSize()).isEqualTo(archiveHistory.getFileSize());
+		assertThat(archiveHistoryResponse.getContentHash()).isEqualTo(archiveHistory.getContentHash());
 		assertThat(archiveHistoryResponse.getArchiveId()).isEqualTo(archiveHistory.getArchiveId());
 		assertThat(archiveHistoryResponse.getArchiveUrl()).isEqualTo(archiveHistory.getArchiveUrl());
 		assertThat(archiveHistoryResponse.getArchiveStatus()).isEqualTo(archiveHistory.getArchiveStatus());
@@ -339,11 +391,13 @@ class ArchiverMapperTest {
 	@Test
 	void mapToBatchHistoryResponse() {
 		final var batchHistory = createRandomBatchHistory();
+		batchHistory.setStartAfter(batchHistory.getStart().atTime(14, 30));
 		final var batchHistoryResponse = ArchiverMapper.mapToBatchHistoryResponse(batchHistory);
 
 		assertThat(batchHistoryResponse.getId()).isEqualTo(batchHistory.getId());
 		assertThat(batchHistoryResponse.getStart()).isEqualTo(batchHistory.getStart());
 		assertThat(batchHistoryResponse.getEnd()).isEqualTo(batchHistory.getEnd());
+		assertThat(batchHistoryResponse.getStartAfter()).isEqualTo(batchHistory.getStartAfter());
 		assertThat(batchHistoryResponse.getArchiveStatus()).isEqualTo(batchHistory.getArchiveStatus());
 		assertThat(batchHistoryResponse.getBatchTrigger()).isEqualTo(batchHistory.getBatchTrigger());
 		assertThat(batchHistoryResponse.getTimestamp()).isEqualTo(batchHistory.getTimestamp());
@@ -0,0 +1,38 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArkivbildarStruktur;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class ArkivbildarEraTest {
+
+	@Test
+	void of() {
+		assertThat(ArkivbildarEra.of(LocalDate.of(1974, 1, 1))).isEqualTo(ArkivbildarEra.BEFORE_1993);
+		assertThat(ArkivbildarEra.of(LocalDate.of(1992, 12, 31))).isEqualTo(ArkivbildarEra.BEFORE_1993);
+		assertThat(ArkivbildarEra.of(LocalDate.of(1993, 1, 1))).isEqualTo(ArkivbildarEra.BEFORE_2017);
+		assertThat(ArkivbildarEra.of(LocalDate.of(2016, 12, 31))).isEqualTo(ArkivbildarEra.BEFORE_2017);
+		assertThat(ArkivbildarEra.of(LocalDate.of(2017, 1, 1))).isEqualTo(ArkivbildarEra.FROM_2017);
+		assertThat(ArkivbildarEra.of(null)).isEqualTo(ArkivbildarEra.FROM_2017);
+	}
+
+	@Test
+	void arkivbildarStrukturIsShared() {
+		final var ankomstDatum = LocalDate.of(2005, 6, 1);
+
+		assertThat(ArkivbildarEra.of(ankomstDatum).arkivbildarStruktur())
+			.isSameAs(ArkivbildarEra.of(LocalDate.of(1993, 1, 1)).arkivbildarStruktur())
+			.usingRecursiveComparison().isEqualTo(toArkivbildarStruktur(ankomstDatum));
+	}
+
+	@Test
+	void fragment() {
+		assertThat(ArkivbildarEra.BEFORE_1993.fragment()).isEqualTo("<ArkivbildarStruktur><Arkivbildare><Namn>Sundsvalls kommun</Namn><VerksamhetstidFran>1974</VerksamhetstidFran>"
+			+ "<Arkivbildare><Namn>Byggnadsnämnden</Namn><VerksamhetstidFran>1974</VerksamhetstidFran><VerksamhetstidTill>1992</VerksamhetstidTill></Arkivbildare>"
+			+ "</Arkivbildare></ArkivbildarStruktur>");
+		assertThat(ArkivbildarEra.BEFORE_2017.fragment()).contains("<Namn>Stadsbyggnadsnämnden</Namn><VerksamhetstidFran>1993</VerksamhetstidFran><VerksamhetstidTill>2017</VerksamhetstidTill>");
+		assertThat(ArkivbildarEra.FROM_2017.fragment()).contains("<Namn>Stadsbyggnadsnämnden</Namn><VerksamhetstidFran>2017</VerksamhetstidFran></Arkivbildare>");
+	}
+}
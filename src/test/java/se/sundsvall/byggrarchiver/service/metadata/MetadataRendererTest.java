@@ -0,0 +1,201 @@
+package se.sundsvall.byggrarchiver.service.metadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toArkivbildarStruktur;
+import static se.sundsvall.byggrarchiver.service.mapper.ArchiverMapper.toLeveransobjektTyp;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import generated.se.sundsvall.arendeexport.Arende2;
+import generated.se.sundsvall.arendeexport.Dokument;
+import generated.se.sundsvall.arendeexport.DokumentFil;
+import generated.se.sundsvall.arendeexport.Handling;
+import generated.se.sundsvall.bygglov.FastighetTyp;
+import generated.se.sundsvall.bygglov.LeveransobjektTyp;
+import generated.se.sundsvall.bygglov.ObjectFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.xml.bind.JAXBContext;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+class MetadataRendererTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private MetadataRenderer metadataRenderer;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		metadataRenderer = new MetadataRenderer(createArchivingProperties(ArchivingProperties.MetadataRendererType.JAXB, 2), meterRegistry);
+	}
+
+	@Test
+	void render() throws Exception {
+		final var arende = createArende(LocalDate.of(2024, 1, 1), "Nybyggnad av garage");
+		final var fastighet = createFastighet();
+		final var handling = createHandling("ANS");
+		final var document = createDocument("Ansökan");
+
+		final var result = render(metadataRenderer, arende, fastighet, handling, document);
+
+		assertThat(result).isEqualTo(marshal(toLeveransobjektTyp(arende, fastighet, toArkivbildarStruktur(arende.getAnkomstDatum()), handling, document)));
+		assertThat(meterRegistry.get(MetadataRenderer.MARSHAL_METRIC).tag("renderer", "jaxb").timer().count()).isOne();
+	}
+
+	@Test
+	void renderReusesMarshaller() throws Exception {
+		final var first = render(metadataRenderer, createArende(LocalDate.of(2023, 1, 1), "Bygglov"), null, createHandling("ANS"), createDocument("Ansökan"));
+		final var second = render(metadataRenderer, createArende(LocalDate.of(2024, 1, 1), "Bygglov"), null, createHandling("ANS"), createDocument("Ansökan"));
+
+		// The buffer is emptied between the documents
+		assertThat(first).contains("<Notering>2023</Notering>").doesNotContain("<Notering>2024</Notering>");
+		assertThat(second).contains("<Notering>2024</Notering>").doesNotContain("<Notering>2023</Notering>");
+		assertThat(metadataRenderer.pooledMarshallers()).isOne();
+	}
+
+	@Test
+	void renderLargeMetadataDoesNotKeepBuffer() throws Exception {
+		final var beskrivning = "x".repeat(MetadataRenderer.MAX_REUSED_BUFFER_SIZE);
+
+		assertThat(render(metadataRenderer, createArende(LocalDate.of(2024, 1, 1), beskrivning), null, createHandling("ANS"), createDocument("Ansökan"))).contains(beskrivning);
+		assertThat(metadataRenderer.pooledMarshallers()).isZero();
+	}
+
+	@Test
+	void renderConcurrently() throws Exception {
+		final var tasks = new ArrayList<Callable<String>>();
+		IntStream.range(0, 20).forEach(i -> tasks.add(() -> render(metadataRenderer, createArende(LocalDate.of(2000 + i, 1, 1), "Bygglov"), null, createHandling("ANS"), createDocument("Ansökan"))));
+
+		try (final var executorService = Executors.newFixedThreadPool(8)) {
+			final var results = executorService.invokeAll(tasks);
+
+			for (var i = 0; i < results.size(); i++) {
+				final Future<String> result = results.get(i);
+				assertThat(result.get()).contains("<Notering>" + (2000 + i) + "</Notering>");
+			}
+		}
+
+		// Idle marshallers are kept up to the size of the pool
+		assertThat(metadataRenderer.pooledMarshallers()).isLessThanOrEqualTo(2);
+		assertThat(meterRegistry.get(MetadataRenderer.MARSHAL_METRIC).timer().count()).isEqualTo(20);
+	}
+
+	@ParameterizedTest
+	@MethodSource("renderStreamingArguments")
+	void renderStreamingIsSameAsJaxb(final Arende2 arende, final FastighetTyp fastighet, final Handling handling, final Dokument document) throws Exception {
+		final var streamingRenderer = new MetadataRenderer(createArchivingProperties(ArchivingProperties.MetadataRendererType.STREAMING, 2), meterRegistry);
+
+		final var result = render(streamingRenderer, arende, fastighet, handling, document);
+
+		assertThat(result)
+			.isEqualTo(render(metadataRenderer, arende, fastighet, handling, document))
+			.isEqualTo(marshal(toLeveransobjektTyp(arende, fastighet, toArkivbildarStruktur(arende.getAnkomstDatum()), handling, document)));
+		assertThat(streamingRenderer.pooledMarshallers()).isZero();
+		assertThat(meterRegistry.get(MetadataRenderer.MARSHAL_METRIC).tag("renderer", "streaming").timer().count()).isOne();
+	}
+
+	@Test
+	void renderStreamingReusesCaseMetadata() throws Exception {
+		final var streamingRenderer = new MetadataRenderer(createArchivingProperties(ArchivingProperties.MetadataRendererType.STREAMING, 2), meterRegistry);
+		final var arende = createArende(LocalDate.of(2024, 1, 1), "Nybyggnad av garage");
+		final var fastighet = createFastighet();
+
+		final var caseMetadata = streamingRenderer.prepare(arende, fastighet);
+		final var first = streamingRenderer.render(caseMetadata, createHandling("ANS"), createDocument("Ansökan"));
+		final var second = streamingRenderer.render(caseMetadata, createHandling("FAS"), createDocument("Fasadritning"));
+
+		assertThat(caseMetadata.fragment()).startsWith("<?xml").endsWith("<ArkivobjektListaHandlingar>");
+		assertThat(first).startsWith(caseMetadata.fragment()).isEqualTo(render(metadataRenderer, arende, fastighet, createHandling("ANS"), createDocument("Ansökan")));
+		assertThat(second).startsWith(caseMetadata.fragment()).isEqualTo(render(metadataRenderer, arende, fastighet, createHandling("FAS"), createDocument("Fasadritning")));
+	}
+
+	@Test
+	void prepareWithJaxb() {
+		final var arende = createArende(LocalDate.of(1985, 6, 1), "Bygglov");
+		final var fastighet = createFastighet();
+
+		final var caseMetadata = metadataRenderer.prepare(arende, fastighet);
+
+		assertThat(caseMetadata.arende()).isSameAs(arende);
+		assertThat(caseMetadata.fastighet()).isSameAs(fastighet);
+		assertThat(caseMetadata.arkivbildarEra()).isEqualTo(ArkivbildarEra.BEFORE_1993);
+		assertThat(caseMetadata.fragment()).isNull();
+	}
+
+	private static Stream<Arguments> renderStreamingArguments() {
+		return Stream.of(
+			Arguments.of(createArende(LocalDate.of(2024, 1, 1), "Nybyggnad av garage"), createFastighet(), createHandling("ANS"), createDocument("Ansökan")),
+			Arguments.of(createArende(LocalDate.of(2005, 6, 1), "Tillbyggnad"), createFastighet(), createHandling("FAS"), createDocument("Fasadritning.pdf")),
+			Arguments.of(createArende(LocalDate.of(1985, 6, 1), "Ändrad användning"), null, createHandling(null), createDocument("Ritning")),
+			// A case without arrival date, and a property that was not found in FB
+			Arguments.of(createArende(null, "Bygglov"), new FastighetTyp(), createHandling("UNKNOWN"), createDocument("Bilaga")),
+			// Case and document without optional values
+			Arguments.of(new Arende2().withDnr("BYGG 2024-000123"), null, new Handling(), new Dokument().withNamn("Bilaga").withFil(new DokumentFil().withFilAndelse("pdf"))),
+			// Characters that are escaped
+			Arguments.of(createArende(LocalDate.of(2024, 1, 1), "Garage & carport <30 kvm> \"Förråd\"\r\nrad två\ttabb"), createFastighet(), createHandling("ANS"),
+				createDocument("Ansökan").withBeskrivning("\"Ritning\" & <fasad>\r\nrad två")),
+			// An empty value is written with a start and an end tag
+			Arguments.of(createArende(LocalDate.of(2024, 1, 1), ""), createFastighet(), createHandling("ANS"), createDocument("Ansökan").withBeskrivning("")));
+	}
+
+	private static Arende2 createArende(final LocalDate ankomstDatum, final String beskrivning) {
+		return new Arende2()
+			.withDnr("BYGG 2024-000123")
+			.withArendetyp("BL")
+			.withAnkomstDatum(ankomstDatum)
+			.withRegistreradDatum(LocalDate.of(2024, 1, 2))
+			.withSlutDatum(LocalDate.of(2024, 3, 1))
+			.withBeskrivning(beskrivning);
+	}
+
+	private static FastighetTyp createFastighet() {
+		final var fastighet = new FastighetTyp();
+		fastighet.setFastighetsbeteckning("SUNDSVALL BALDER 5");
+		fastighet.setObjektidentitet("909a6a80-d1a9-90ec-e040-ed8f66444c3f");
+		fastighet.setTrakt("BALDER");
+		return fastighet;
+	}
+
+	private static Handling createHandling(final String typ) {
+		return new Handling().withTyp(typ);
+	}
+
+	private static Dokument createDocument(final String namn) {
+		return new Dokument()
+			.withDokId("123456")
+			.withNamn(namn)
+			.withBeskrivning("Beskrivning av " + namn)
+			.withSkapadDatum(LocalDateTime.of(2024, 1, 15, 10, 30))
+			.withFil(new DokumentFil().withFilAndelse("PDF"));
+	}
+
+	private static String render(final MetadataRenderer renderer, final Arende2 arende, final FastighetTyp fastighet, final Handling handling, final Dokument document) throws Exception {
+		return renderer.render(renderer.prepare(arende, fastighet), handling, document);
+	}
+
+	// Marshals the way metadata was created before the renderer, with a new context for each document
+	private static String marshal(final LeveransobjektTyp leveransobjekt) throws Exception {
+		final var stringWriter = new StringWriter();
+		JAXBContext.newInstance(LeveransobjektTyp.class).createMarshaller().marshal(new ObjectFactory().createLeveransobjekt(leveransobjekt), stringWriter);
+		return stringWriter.toString();
+	}
+
+	private static ArchivingProperties createArchivingProperties(final ArchivingProperties.MetadataRendererType renderer, final int marshallerPoolSize) {
+		return archivingProperties()
+			.withMetadata(new ArchivingProperties.Metadata(renderer, marshallerPoolSize))
+			.build();
+	}
+}
@@ -0,0 +1,111 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import generated.se.sundsvall.arendeexport.Arende;
+import generated.se.sundsvall.arendeexport.ArendeBatch;
+import generated.se.sundsvall.arendeexport.ArrayOfArende;
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+
+class AdaptiveWindowStepperTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	private static final LocalDateTime END = START.plusDays(30);
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private List<BatchFilter> probes;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		probes = new ArrayList<>();
+	}
+
+	@Test
+	void widenOverEmptyRanges() {
+		final var stepper = createStepper(filter -> 0);
+
+		assertThat(stepper.stepOverEmptyPage(START, END)).isEqualTo(START.plusHours(1));
+		assertThat(stepper.stepOverEmptyPage(START.plusHours(1), END)).isEqualTo(START.plusHours(3));
+		assertThat(stepper.stepOverEmptyPage(START.plusHours(3), END)).isEqualTo(START.plusHours(7));
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(8));
+
+		// The first step is taken without asking
+		assertThat(probes).hasSize(2);
+		assertThat(meterRegistry.get(ArendeBatchPagesFactory.WINDOW_STEP_METRIC).summary().totalAmount()).isEqualTo(Duration.ofHours(7).toSeconds());
+		assertThat(meterRegistry.get(ArendeBatchPagesFactory.WINDOW_PROBE_METRIC).tag("result", "empty").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void stepIsLimitedByMaxStepAndUpperBound() {
+		final var stepper = createStepper(filter -> 0);
+
+		var lowerBound = START;
+		for (int i = 0; i < 10; i++) {
+			lowerBound = stepper.stepOverEmptyPage(lowerBound, END);
+		}
+
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofDays(1));
+		assertThat(stepper.stepOverEmptyPage(END.minusHours(2), END)).isEqualTo(END);
+	}
+
+	@Test
+	void shrinkWhenRangeHasCases() {
+		// Cases exist from six hours after start
+		final var stepper = createStepper(filter -> filter.getUpperInclusiveBound().isAfter(START.plusHours(6)) ? 1 : 0);
+
+		stepper.stepOverEmptyPage(START.minusHours(3), END);
+		stepper.stepOverEmptyPage(START.minusHours(2), END);
+		stepper.stepOverEmptyPage(START, END);
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(8));
+
+		// A step of eight hours has cases in it, but four hours is empty
+		assertThat(stepper.stepOverEmptyPage(START.plusHours(1), END)).isEqualTo(START.plusHours(5));
+		assertThat(meterRegistry.get(ArendeBatchPagesFactory.WINDOW_PROBE_METRIC).tag("result", "not-empty").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void resetOnLargePage() {
+		final var stepper = createStepper(filter -> 0);
+		IntStream.range(0, 4).forEach(i -> stepper.stepOverEmptyPage(START, END));
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(16));
+
+		stepper.pageRead(createArendeBatch(1));
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(8));
+
+		stepper.pageRead(createArendeBatch(0));
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(8));
+
+		stepper.pageRead(createArendeBatch(5));
+		assertThat(stepper.getStep()).isEqualTo(Duration.ofHours(1));
+	}
+
+	private AdaptiveWindowStepper createStepper(final ToIntFunction<BatchFilter> counter) {
+		return new AdaptiveWindowStepper(filter -> {
+			probes.add(filter);
+			return counter.applyAsInt(filter);
+		},
+			new ArchivingProperties.AdaptiveWindow(true, Duration.ofHours(1), Duration.ofDays(1), 5),
+			meterRegistry.summary(ArendeBatchPagesFactory.WINDOW_STEP_METRIC),
+			meterRegistry.counter(ArendeBatchPagesFactory.WINDOW_PROBE_METRIC, "result", "empty"),
+			meterRegistry.counter(ArendeBatchPagesFactory.WINDOW_PROBE_METRIC, "result", "not-empty"));
+	}
+
+	private static ArendeBatch createArendeBatch(final int size) {
+		final var arrayOfArende = new ArrayOfArende();
+		IntStream.range(0, size).forEach(i -> arrayOfArende.getArende().add(new Arende()));
+		return new ArendeBatch().withArenden(arrayOfArende);
+	}
+}
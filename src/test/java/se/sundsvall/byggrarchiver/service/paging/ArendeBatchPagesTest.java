@@ -0,0 +1,118 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import generated.se.sundsvall.arendeexport.ArendeBatch;
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ArendeBatchPagesTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	private static final LocalDateTime END = START.plusDays(1);
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		0, 1, 3
+	})
+	void readAllPages(final int prefetchDepth) {
+		final var filters = Collections.synchronizedList(new ArrayList<BatchFilter>());
+		// Every page covers six hours
+		final Function<BatchFilter, ArendeBatch> reader = filter -> {
+			filters.add(filter);
+			return new ArendeBatch()
+				.withBatchStart(filter.getLowerExclusiveBound())
+				.withBatchEnd(filter.getLowerExclusiveBound().plusHours(6));
+		};
+
+		final var batches = readAll(reader, prefetchDepth);
+
+		assertThat(batches).hasSize(5);
+		assertThat(filters).hasSize(5).extracting(BatchFilter::getLowerExclusiveBound).containsExactly(
+			START, START.plusHours(6), START.plusHours(12), START.plusHours(18), END);
+		assertThat(filters).extracting(BatchFilter::getUpperInclusiveBound).containsOnly(END);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		0, 2
+	})
+	void readPagesWithoutBatchEnd(final int prefetchDepth) {
+		final var filters = Collections.synchronizedList(new ArrayList<BatchFilter>());
+		final Function<BatchFilter, ArendeBatch> reader = filter -> {
+			filters.add(filter);
+			return new ArendeBatch();
+		};
+
+		final var batches = readAll(reader, prefetchDepth);
+
+		// Steps one hour at a time when ByggR doesn't say where the page ended
+		assertThat(batches).hasSize(25);
+		assertThat(filters).extracting(BatchFilter::getLowerExclusiveBound).startsWith(START, START.plusHours(1)).endsWith(END);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		0, 2
+	})
+	void checkpointFollowsReturnedPages(final int prefetchDepth) {
+		// The first page ends after six hours, the second page is empty and the third page ends after the window
+		final Function<BatchFilter, ArendeBatch> reader = filter -> {
+			if (filter.getLowerExclusiveBound().isEqual(START)) {
+				return new ArendeBatch().withBatchEnd(START.plusHours(6));
+			}
+			if (filter.getLowerExclusiveBound().isEqual(START.plusHours(6))) {
+				return new ArendeBatch();
+			}
+			return new ArendeBatch().withBatchEnd(END.plusHours(1));
+		};
+
+		try (final var pages = new ArendeBatchPages(reader, START, END, prefetchDepth, WindowStepper.ONE_HOUR)) {
+			assertThat(pages.checkpoint()).isNull();
+
+			pages.next();
+			assertThat(pages.checkpoint()).isEqualTo(START.plusHours(6));
+
+			pages.next();
+			assertThat(pages.checkpoint()).isEqualTo(START.plusHours(6));
+
+			pages.next();
+			assertThat(pages.checkpoint()).isEqualTo(END);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		0, 2
+	})
+	void readFailureIsRethrown(final int prefetchDepth) {
+		final Function<BatchFilter, ArendeBatch> reader = filter -> {
+			throw new IllegalStateException("Failure");
+		};
+
+		try (final var pages = new ArendeBatchPages(reader, START, END, prefetchDepth, WindowStepper.ONE_HOUR)) {
+			assertThatExceptionOfType(IllegalStateException.class)
+				.isThrownBy(pages::next)
+				.withMessage("Failure");
+		}
+	}
+
+	private static List<ArendeBatch> readAll(final Function<BatchFilter, ArendeBatch> reader, final int prefetchDepth) {
+		final var batches = new ArrayList<ArendeBatch>();
+		try (final var pages = new ArendeBatchPages(reader, START, END, prefetchDepth, WindowStepper.ONE_HOUR)) {
+			for (var arendeBatch = pages.next(); arendeBatch != null; arendeBatch = pages.next()) {
+				batches.add(arendeBatch);
+			}
+			assertThat(pages.next()).isNull();
+		}
+		return batches;
+	}
+}
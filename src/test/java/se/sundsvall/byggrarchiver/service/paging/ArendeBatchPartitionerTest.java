@@ -0,0 +1,82 @@
+package se.sundsvall.byggrarchiver.service.paging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import generated.se.sundsvall.arendeexport.BatchFilter;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.integration.arendeexport.ArendeExportIntegration;
+import se.sundsvall.byggrarchiver.service.paging.ArendeBatchPartitioner.TimeWindow;
+
+@ExtendWith(MockitoExtension.class)
+class ArendeBatchPartitionerTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+	@Mock
+	private ArendeExportIntegration mockArendeExportIntegration;
+
+	@Test
+	void partitionDisabled() {
+		final var partitioner = createPartitioner(false, 4, 10);
+
+		final var partitions = partitioner.partition(START, START.plusDays(30));
+
+		assertThat(partitions).containsExactly(new TimeWindow(START, START.plusDays(30)));
+		verifyNoInteractions(mockArendeExportIntegration);
+	}
+
+	@Test
+	void partitionShortWindow() {
+		final var partitioner = createPartitioner(true, 4, 10);
+
+		final var partitions = partitioner.partition(START, START.plusDays(7));
+
+		assertThat(partitions).containsExactly(new TimeWindow(START, START.plusDays(7)));
+		verifyNoInteractions(mockArendeExportIntegration);
+	}
+
+	@Test
+	void partitionByNumberOfCases() {
+		final var partitioner = createPartitioner(true, 4, 10);
+		// One updated case per day in the first 30 days, none in the last 10 days
+		when(mockArendeExportIntegration.getUpdatedArendenCount(any(BatchFilter.class))).thenAnswer(invocation -> {
+			final BatchFilter filter = invocation.getArgument(0);
+			final var from = filter.getLowerExclusiveBound();
+			final var to = filter.getUpperInclusiveBound().isAfter(START.plusDays(30)) ? START.plusDays(30) : filter.getUpperInclusiveBound();
+			return from.isBefore(to) ? (int) Duration.between(from, to).toDays() : 0;
+		});
+
+		final var partitions = partitioner.partition(START, START.plusDays(40));
+
+		assertThat(partitions).containsExactly(
+			new TimeWindow(START, START.plusDays(10)),
+			new TimeWindow(START.plusDays(10), START.plusDays(20)),
+			new TimeWindow(START.plusDays(20), START.plusDays(40)));
+	}
+
+	@Test
+	void partitionWithoutCases() {
+		final var partitioner = createPartitioner(true, 4, 10);
+		when(mockArendeExportIntegration.getUpdatedArendenCount(any(BatchFilter.class))).thenReturn(0);
+
+		final var partitions = partitioner.partition(START, START.plusDays(40));
+
+		assertThat(partitions).containsExactly(new TimeWindow(START, START.plusDays(40)));
+	}
+
+	private ArendeBatchPartitioner createPartitioner(final boolean enabled, final int maxPartitions, final int casesPerPartition) {
+		return new ArendeBatchPartitioner(mockArendeExportIntegration, archivingProperties()
+			.withPartitioning(new ArchivingProperties.Partitioning(enabled, Duration.ofDays(7), maxPartitions, casesPerPartition))
+			.build());
+	}
+}
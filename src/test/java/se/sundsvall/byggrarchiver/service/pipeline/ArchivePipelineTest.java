@@ -0,0 +1,165 @@
+package se.sundsvall.byggrarchiver.service.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static se.sundsvall.byggrarchiver.testutils.TestUtil.archivingProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
+import se.sundsvall.byggrarchiver.service.executor.ByteBudget;
+
+class ArchivePipelineTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private ArchivePipeline archivePipeline;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		archivePipeline = new ArchivePipeline(archivingProperties()
+			.withPipeline(new ArchivingProperties.Pipeline(true, 3, 2, 3, 2))
+			.build(), meterRegistry);
+	}
+
+	@Test
+	void isEnabled() {
+		assertThat(archivePipeline.isEnabled()).isTrue();
+	}
+
+	@Test
+	void process() {
+		final Set<String> uploaded = Collections.synchronizedSet(new HashSet<>());
+
+		archivePipeline.process(IntStream.range(0, 50).boxed().toList(),
+			i -> i * 2,
+			i -> "doc-" + i,
+			uploaded::add);
+
+		assertThat(uploaded).hasSize(50).contains("doc-0", "doc-98");
+		assertThat(meterRegistry.get(ArchivePipeline.STAGE_METRIC).tag("stage", "upload").timer().count()).isEqualTo(50);
+		assertThat(meterRegistry.get(ArchivePipeline.QUEUE_DEPTH_METRIC).gauges())
+			.hasSize(3)
+			.allSatisfy(gauge -> assertThat(gauge.value()).isZero());
+	}
+
+	@Test
+	void processDropsNullResults() {
+		final Set<Integer> uploaded = Collections.synchronizedSet(new HashSet<>());
+
+		archivePipeline.process(IntStream.range(0, 10).boxed().toList(),
+			i -> (i % 2 == 0) ? i : null,
+			i -> (i == 4) ? null : i,
+			uploaded::add);
+
+		assertThat(uploaded).containsExactlyInAnyOrder(0, 2, 6, 8);
+	}
+
+	@Test
+	void processRethrowsFailure() {
+		final List<Integer> input = IntStream.range(0, 20).boxed().toList();
+
+		assertThatExceptionOfType(IllegalArgumentException.class)
+			.isThrownBy(() -> archivePipeline.process(input,
+				i -> i,
+				i -> {
+					if (i == 5) {
+						throw new IllegalArgumentException("Failure");
+					}
+					return i;
+				},
+				i -> {}))
+			.withMessage("Failure");
+	}
+
+	@Test
+	void processReleasesItemsLeftOnFailure(@TempDir final Path directory) {
+		final var byteBudget = new ByteBudget(archivingProperties()
+			.withByteBudget(new ArchivingProperties.ByteBudget(true, DataSize.ofBytes(1000), DataSize.ofBytes(10)))
+			.build(), meterRegistry);
+		final List<Integer> input = IntStream.range(0, 50).boxed().toList();
+
+		// Uploads are slow, so that the queues are full and fetches are waiting to hand over when the upload fails
+		assertThatExceptionOfType(IllegalArgumentException.class)
+			.isThrownBy(() -> archivePipeline.process(input,
+				i -> new Item(i, reserve(byteBudget), createFile(directory)),
+				item -> item,
+				item -> {
+					try (item) {
+						sleep();
+						if (item.number() == 10) {
+							throw new IllegalArgumentException("Failure");
+						}
+					}
+				},
+				Item::close,
+				Item::close))
+			.withMessage("Failure");
+
+		assertThat(directory).isEmptyDirectory();
+		assertThat(meterRegistry.get("archiver.byte.budget.used").gauge().value()).isZero();
+		assertThat(meterRegistry.get(ArchivePipeline.QUEUE_DEPTH_METRIC).gauges())
+			.allSatisfy(gauge -> assertThat(gauge.value()).isZero());
+	}
+
+	@Test
+	void processEmptyInput() {
+		archivePipeline.process(List.<Integer>of(), i -> i, i -> i, i -> {
+			throw new IllegalStateException("Should not be called");
+		});
+
+		assertThat(meterRegistry.get(ArchivePipeline.STAGE_METRIC).timers())
+			.allSatisfy(timer -> assertThat(timer.count()).isZero());
+	}
+
+	private static ByteBudget.Reservation reserve(final ByteBudget byteBudget) {
+		try {
+			return byteBudget.reserve();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Path createFile(final Path directory) {
+		try {
+			return Files.createTempFile(directory, "item-", null);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(20);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private record Item(int number, ByteBudget.Reservation reservation, Path file) implements AutoCloseable {
+
+		@Override
+		public void close() {
+			reservation.close();
+			try {
+				Files.deleteIfExists(file);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import static java.util.stream.Collectors.joining;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus.COMPLETED;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BatchEventEmitterTest {
+
+	private static final PageEvent PAGE_EVENT = new PageEvent(1L, LocalDateTime.now().minusHours(1), LocalDateTime.now(), 2, 3, 100);
+
+	private static final DocumentEvent DOCUMENT_EVENT = new DocumentEvent(1L, "BYGG 2024-000001", "123", DocumentEvent.Stage.UPLOAD, 50, 1024, COMPLETED);
+
+	private final BatchProgressRegistry registry = new BatchProgressRegistry();
+
+	private final List<String> sentEvents = new ArrayList<>();
+
+	// Sends the events on the thread that archives, to keep the tests simple
+	private final BatchEventEmitter emitter = new BatchEventEmitter(Duration.ofMinutes(1), Runnable::run) {
+
+		@Override
+		public void send(final SseEventBuilder builder) {
+			sentEvents.add(builder.build().stream()
+				.map(data -> String.valueOf(data.getData()))
+				.collect(joining()));
+		}
+	};
+
+	@Test
+	void streamEventsOfRunningBatch() {
+		final var progress = registry.start(1L);
+		emitter.listenTo(progress);
+
+		progress.pageArchived(PAGE_EVENT);
+		progress.documentStagePassed(DOCUMENT_EVENT);
+		registry.finish(progress);
+		// Not sent, since the stream is completed
+		progress.pageArchived(PAGE_EVENT);
+
+		assertThat(emitter.getTimeout()).isEqualTo(Duration.ofMinutes(1).toMillis());
+		assertThat(sentEvents).hasSize(3);
+		assertThat(sentEvents.get(0)).startsWith("event:page\n").contains(PAGE_EVENT.toString());
+		assertThat(sentEvents.get(1)).startsWith("event:document\n").contains(DOCUMENT_EVENT.toString());
+		assertThat(sentEvents.get(2)).startsWith("event:finished\n").contains("running=false");
+	}
+
+	@Test
+	void streamEventsOfFinishedBatch() {
+		final var progress = registry.start(1L);
+		registry.finish(progress);
+
+		emitter.listenTo(progress);
+
+		assertThat(sentEvents).singleElement().asString().startsWith("event:finished\n");
+	}
+
+	@Test
+	void failingSendDoesNotStopBatch() {
+		final var failingEmitter = new BatchEventEmitter(Duration.ofMinutes(1), Runnable::run) {
+
+			@Override
+			public void send(final SseEventBuilder builder) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		final var progress = registry.start(1L);
+		failingEmitter.listenTo(progress);
+
+		assertThatNoException().isThrownBy(() -> {
+			progress.pageArchived(PAGE_EVENT);
+			registry.finish(progress);
+		});
+	}
+
+	@Test
+	void slowClientDoesNotBlockBatch() throws Exception {
+		final var clientBlocked = new CountDownLatch(1);
+		final var finishedSent = new CountDownLatch(1);
+		final var slowEvents = new CopyOnWriteArrayList<String>();
+		final var slowEmitter = new BatchEventEmitter(Duration.ofMinutes(1)) {
+
+			@Override
+			public void send(final SseEventBuilder builder) throws IOException {
+				try {
+					clientBlocked.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+				final var event = builder.build().stream()
+					.map(data -> String.valueOf(data.getData()))
+					.collect(joining());
+				slowEvents.add(event);
+				if (event.startsWith("event:finished\n")) {
+					finishedSent.countDown();
+				}
+			}
+		};
+		final var progress = registry.start(1L);
+		slowEmitter.listenTo(progress);
+
+		// Returns at once, although the client does not take any events
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			for (var i = 0; i < (BatchEventEmitter.QUEUE_CAPACITY * 2); i++) {
+				progress.pageArchived(PAGE_EVENT);
+			}
+			registry.finish(progress);
+		});
+
+		clientBlocked.countDown();
+		assertThat(finishedSent.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// The event being sent when the client blocked, the queued events, and the finished event
+		assertThat(slowEmitter.getDroppedEvents()).isPositive();
+		assertThat(slowEvents).hasSize((int) ((BatchEventEmitter.QUEUE_CAPACITY * 2) - slowEmitter.getDroppedEvents()) + 1);
+		assertThat(slowEvents.getLast()).startsWith("event:finished\n");
+	}
+}
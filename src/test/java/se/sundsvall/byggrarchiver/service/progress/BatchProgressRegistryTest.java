@@ -0,0 +1,99 @@
+package se.sundsvall.byggrarchiver.service.progress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class BatchProgressRegistryTest {
+
+	private final BatchProgressRegistry registry = new BatchProgressRegistry();
+
+	@Test
+	void startAndFinish() {
+		final var progress = registry.start(1L);
+		progress.pageScanned();
+		progress.documentArchived(10);
+		progress.documentArchived(0);
+		progress.documentFailed();
+
+		assertThat(registry.isRunning(1L)).isTrue();
+		assertThat(registry.find(1L)).containsSame(progress);
+
+		registry.finish(progress);
+
+		assertThat(registry.isRunning(1L)).isFalse();
+		assertThat(registry.find(1L)).hasValueSatisfying(finished -> {
+			assertThat(finished.getBatchHistoryId()).isEqualTo(1L);
+			assertThat(finished.getPagesScanned()).isOne();
+			assertThat(finished.getDocumentsArchived()).isEqualTo(2);
+			assertThat(finished.getDocumentsFailed()).isOne();
+			assertThat(finished.getBytesUploaded()).isEqualTo(10);
+		});
+	}
+
+	@Test
+	void startAgainReplacesEarlierRun() {
+		final var first = registry.start(1L);
+		first.pageScanned();
+		registry.finish(first);
+
+		final var second = registry.start(1L);
+
+		assertThat(registry.find(1L)).containsSame(second);
+		assertThat(second.getPagesScanned()).isZero();
+	}
+
+	@Test
+	void claimAndStart() {
+		final var claimed = registry.claim(1L);
+
+		assertThat(claimed).isPresent();
+		assertThat(registry.isRunning(1L)).isTrue();
+		assertThat(registry.claim(1L)).isEmpty();
+
+		// The batch takes over the claimed progress when it starts
+		final var progress = registry.start(1L);
+
+		assertThat(claimed).containsSame(progress);
+		assertThat(registry.claim(1L)).isEmpty();
+
+		registry.finish(progress);
+		// Finished again by the one who claimed the batch
+		registry.finish(progress);
+
+		assertThat(registry.isRunning(1L)).isFalse();
+		assertThat(registry.claim(1L)).isPresent();
+	}
+
+	@Test
+	void finishReleasesClaimOfBatchNeverStarted() {
+		final var claimed = registry.claim(1L).orElseThrow();
+
+		registry.finish(claimed);
+
+		assertThat(registry.isRunning(1L)).isFalse();
+		// A later start does not take over the released claim
+		assertThat(registry.start(1L)).isNotSameAs(claimed);
+	}
+
+	@Test
+	void progressWithoutIdIsNotKept() {
+		final var progress = registry.start(null);
+		progress.pageScanned();
+
+		assertThat(registry.find(null)).isEmpty();
+		assertThat(registry.isRunning(null)).isFalse();
+	}
+
+	@Test
+	void onlyRecentFinishedBatchesAreKept() {
+		final var running = registry.start(0L);
+		LongStream.rangeClosed(1, BatchProgressRegistry.MAX_FINISHED_BATCHES + 10)
+			.forEach(id -> registry.finish(registry.start(id)));
+
+		// A running batch is never dropped, even if it is the oldest one
+		assertThat(registry.find(0L)).containsSame(running);
+		assertThat(registry.find(BatchProgressRegistry.MAX_FINISHED_BATCHES + 10L)).isPresent();
+	}
+}
@@ -14,11 +14,6 @@ import se.sundsvall.byggrarchiver.util.Util;
 
 class UtilTest {
 
-	@Test
-	void testByteArrayToBase64() {
-		assertThat(Util.byteArrayToBase64(null)).isNull();
-	}
-
 	@Test
 	void testGetExtensionFromByteArray() throws IOException, ApplicationException {
 		var file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("File_Without_Extension")).getFile());
@@ -1,12 +1,16 @@
 package se.sundsvall.byggrarchiver.testutils;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.util.unit.DataSize;
 import se.sundsvall.byggrarchiver.api.model.BatchHistoryResponse;
 import se.sundsvall.byggrarchiver.api.model.enums.ArchiveStatus;
 import se.sundsvall.byggrarchiver.api.model.enums.BatchTrigger;
+import se.sundsvall.byggrarchiver.configuration.ArchivingProperties;
 import se.sundsvall.byggrarchiver.integration.db.model.ArchiveHistory;
 import se.sundsvall.byggrarchiver.integration.db.model.BatchHistory;
 
@@ -23,6 +27,9 @@ public final class TestUtil {
 			.withDocumentId(UUID.randomUUID().toString())
 			.withDocumentName(UUID.randomUUID().toString().substring(0, 21))
 			.withDocumentType(UUID.randomUUID().toString().substring(0, 21))
+			.withFileExtension("pdf")
+			.withFileSize(randomLong())
+			.withContentHash(UUID.randomUUID().toString())
 			.withCaseId(UUID.randomUUID().toString())
 			.withTimestamp(LocalDateTime.now())
 			.build();
@@ -78,4 +85,84 @@ public final class TestUtil {
 			.withArchiveStatus(archiveStatus).build();
 	}
 
+	/**
+	 * Creates a builder of archiving properties where every feature is disabled, for tests to enable only the settings
+	 * they are about.
+	 */
+	public static ArchivingPropertiesBuilder archivingProperties() {
+		return new ArchivingPropertiesBuilder();
+	}
+
+	public static final class ArchivingPropertiesBuilder {
+
+		private ArchivingProperties.Concurrency concurrency = new ArchivingProperties.Concurrency(false, ArchivingProperties.ExecutorType.VIRTUAL, 1, 1, Map.of());
+
+		private ArchivingProperties.Pipeline pipeline = new ArchivingProperties.Pipeline(false, 1, 1, 1, 1);
+
+		private ArchivingProperties.Prefetch prefetch = new ArchivingProperties.Prefetch(0);
+
+		private ArchivingProperties.Partitioning partitioning = new ArchivingProperties.Partitioning(false, Duration.ofDays(7), 1, 1);
+
+		private ArchivingProperties.AdaptiveWindow adaptiveWindow = new ArchivingProperties.AdaptiveWindow(false, Duration.ofHours(1), Duration.ofDays(7), 100);
+
+		private ArchivingProperties.Jobs jobs = new ArchivingProperties.Jobs(1, Duration.ofHours(1));
+
+		private ArchivingProperties.Metadata metadata = new ArchivingProperties.Metadata(ArchivingProperties.MetadataRendererType.JAXB, 1);
+
+		private ArchivingProperties.ArchivedFilter archivedFilter = new ArchivingProperties.ArchivedFilter(false, 1, 0.01, Duration.ofMinutes(5));
+
+		private ArchivingProperties.ByteBudget byteBudget = new ArchivingProperties.ByteBudget(false, DataSize.ofGigabytes(1), DataSize.ofMegabytes(16));
+
+		private ArchivingPropertiesBuilder() {}
+
+		public ArchivingPropertiesBuilder withConcurrency(final ArchivingProperties.Concurrency concurrency) {
+			this.concurrency = concurrency;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withPipeline(final ArchivingProperties.Pipeline pipeline) {
+			this.pipeline = pipeline;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withPrefetch(final ArchivingProperties.Prefetch prefetch) {
+			this.prefetch = prefetch;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withPartitioning(final ArchivingProperties.Partitioning partitioning) {
+			this.partitioning = partitioning;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withAdaptiveWindow(final ArchivingProperties.AdaptiveWindow adaptiveWindow) {
+			this.adaptiveWindow = adaptiveWindow;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withJobs(final ArchivingProperties.Jobs jobs) {
+			this.jobs = jobs;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withMetadata(final ArchivingProperties.Metadata metadata) {
+			this.metadata = metadata;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withArchivedFilter(final ArchivingProperties.ArchivedFilter archivedFilter) {
+			this.archivedFilter = archivedFilter;
+			return this;
+		}
+
+		public ArchivingPropertiesBuilder withByteBudget(final ArchivingProperties.ByteBudget byteBudget) {
+			this.byteBudget = byteBudget;
+			return this;
+		}
+
+		public ArchivingProperties build() {
+			return new ArchivingProperties(concurrency, pipeline, prefetch, partitioning, adaptiveWindow, jobs, metadata, archivedFilter, byteBudget);
+		}
+	}
+
 }
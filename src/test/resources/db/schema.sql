@@ -1,13 +1,16 @@
 
     create table archive_history (
         batch_history_id bigint not null,
+        file_size bigint,
         timestamp datetime(6) not null,
         archive_id varchar(255),
         archive_url varchar(255),
         case_id varchar(255) not null,
+        content_hash varchar(255),
         document_id varchar(255) not null,
         document_name varchar(255),
         document_type varchar(255),
+        file_extension varchar(255),
         municipality_id varchar(255),
         archive_status varchar(255) not null,
         primary key (case_id, document_id)
@@ -17,6 +20,8 @@
         end date not null,
         start date not null,
         id bigint not null auto_increment,
+        checkpoint datetime(6),
+        start_after datetime(6),
         timestamp datetime(6) not null,
         municipality_id varchar(255),
         archive_status varchar(255) not null,
@@ -24,12 +29,22 @@
         primary key (id)
     ) engine=InnoDB;
 
+    create table high_water_mark (
+        processed_until datetime(6) not null,
+        timestamp datetime(6) not null,
+        municipality_id varchar(255) not null,
+        primary key (municipality_id)
+    ) engine=InnoDB;
+
     create index archive_history_municipality_id_idx 
        on archive_history (municipality_id);
 
     create index archive_history_archive_status_idx 
        on archive_history (archive_status);
 
+    create index archive_history_timestamp_idx 
+       on archive_history (timestamp);
+
     create index batch_history_municipality_id_idx 
        on batch_history (municipality_id);
 